@@ -0,0 +1,96 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.cloudsmith.geppetto.forge.v2.model.Dependency;
+import org.cloudsmith.geppetto.forge.v2.model.Metadata;
+import org.cloudsmith.geppetto.forge.v2.model.Release;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Validate#resolveDependencies} against a {@link StubMetadataRepository}. Half of the
+ * dependencies of each module appoint other modules in the workspace and the other half appoint
+ * modules that must be resolved by the repository.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DependencyResolutionBenchmark {
+	@Param({ "100", "300" })
+	int moduleCount;
+
+	@Param({ "6" })
+	int dependenciesPerModule;
+
+	private final StubMetadataRepository repository = new StubMetadataRepository();
+
+	private List<Metadata> metadatas;
+
+	private Validate validate;
+
+	@Benchmark
+	public Set<Release> resolveDependencies() throws IOException {
+		return validate.resolveDependencies(
+			repository, metadatas, new HashSet<Dependency>(), new NullProgressMonitor());
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		File root = SyntheticModules.createTempDir("resolution");
+		validate = new Validate();
+		validate.setModulesRoot(root);
+		validate.setServiceURL("http://localhost:4567/");
+		metadatas = new ArrayList<Metadata>(moduleCount);
+		try {
+			for(int idx = 0; idx < moduleCount; ++idx) {
+				String[] dependencies = new String[dependenciesPerModule];
+				for(int dep = 0; dep < dependenciesPerModule; ++dep) {
+					// Even dependencies are in the workspace, odd ones are external
+					int target = dep % 2 == 0
+							? (idx + dep + 1) % moduleCount
+							: moduleCount + (idx * dependenciesPerModule + dep) % (moduleCount * 2);
+					dependencies[dep] = SyntheticModules.OWNER + '/' + SyntheticModules.moduleName(target);
+				}
+				File moduleDir = SyntheticModules.writeModule(
+					root, SyntheticModules.moduleName(idx), true, dependencies, 1, 0, 0);
+				metadatas.add(validate.getModuleMetadata(moduleDir, new Diagnostic()));
+			}
+		}
+		finally {
+			SyntheticModules.delete(root);
+		}
+	}
+}
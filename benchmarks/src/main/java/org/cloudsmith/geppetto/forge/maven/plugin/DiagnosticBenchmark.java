@@ -0,0 +1,79 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.util.concurrent.TimeUnit;
+
+import org.cloudsmith.geppetto.validation.DiagnosticType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures construction of {@link Diagnostic} trees and rendering of their error text.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DiagnosticBenchmark {
+	@Param({ "1000", "100000" })
+	int diagnosticCount;
+
+	@Param({ "50" })
+	int filesPerModule;
+
+	private Diagnostic tree;
+
+	@Benchmark
+	public Diagnostic buildTree() {
+		Diagnostic root = new Diagnostic();
+		for(int idx = 0; idx < diagnosticCount; ++idx) {
+			Diagnostic diag = new Diagnostic(idx % 3 == 0
+					? Diagnostic.ERROR
+					: Diagnostic.WARNING, DiagnosticType.GEPPETTO, "Unknown resource type: 'type_" + idx + "'");
+			// Paths repeat in the same way as they do for real validations
+			diag.setResourcePath(SyntheticModules.moduleName(idx / filesPerModule) + "/manifests/class_" +
+					idx % filesPerModule + ".pp");
+			diag.setLocation(idx % 200 + 1, idx * 17, 6);
+			root.addChild(diag);
+		}
+		return root;
+	}
+
+	@Benchmark
+	public String cappedErrorText() {
+		return tree.getErrorText(100);
+	}
+
+	@Benchmark
+	public String errorText() {
+		return tree.getErrorText();
+	}
+
+	@Setup
+	public void setUp() {
+		tree = buildTree();
+	}
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link AbstractForgeMojo#findModuleRoots()} on synthetic trees.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DiscoveryBenchmark {
+	@Param({ "100", "1000" })
+	int moduleCount;
+
+	@Param({ "10" })
+	int manifestsPerModule;
+
+	private File root;
+
+	private Validate validate;
+
+	@Benchmark
+	public List<File> findModuleRoots() {
+		return validate.findModuleRoots();
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		root = SyntheticModules.createTempDir("discovery");
+		for(int idx = 0; idx < moduleCount; ++idx)
+			SyntheticModules.writeModule(
+				root, SyntheticModules.moduleName(idx), (idx & 1) == 0, new String[0], manifestsPerModule, 0, 0);
+		validate = new Validate();
+		validate.setModulesRoot(root);
+	}
+
+	@TearDown
+	public void tearDown() {
+		SyntheticModules.delete(root);
+	}
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.cloudsmith.geppetto.forge.v2.model.Metadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link AbstractForgeMojo#getModuleMetadata(File, Diagnostic)} for a module described by a
+ * <tt>Modulefile</tt> and by a <tt>metadata.json</tt> file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MetadataBenchmark {
+	@Param({ "Modulefile", "metadata.json" })
+	String format;
+
+	@Param({ "5" })
+	int dependencyCount;
+
+	private File root;
+
+	private File moduleDir;
+
+	private Validate validate;
+
+	@Benchmark
+	public Metadata getModuleMetadata() throws IOException {
+		return validate.getModuleMetadata(moduleDir, new Diagnostic());
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		root = SyntheticModules.createTempDir("metadata");
+		String[] dependencies = new String[dependencyCount];
+		for(int idx = 0; idx < dependencyCount; ++idx)
+			dependencies[idx] = SyntheticModules.OWNER + '/' + SyntheticModules.moduleName(idx + 1);
+		moduleDir = SyntheticModules.writeModule(
+			root, SyntheticModules.moduleName(0), "metadata.json".equals(format), dependencies, 1, 0, 0);
+		validate = new Validate();
+		validate.setModulesRoot(root);
+		validate.setServiceURL("http://localhost:4567/");
+	}
+
+	@TearDown
+	public void tearDown() {
+		SyntheticModules.delete(root);
+	}
+}
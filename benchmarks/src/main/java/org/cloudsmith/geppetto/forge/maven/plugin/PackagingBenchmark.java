@@ -0,0 +1,83 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.cloudsmith.geppetto.forge.ForgeFactory;
+import org.cloudsmith.geppetto.forge.ForgeService;
+import org.cloudsmith.geppetto.forge.IncompleteException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the packing of a module archive by {@link Publish#buildForge(ForgeService, File, File, String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PackagingBenchmark {
+	@Param({ "10", "500" })
+	int fileCount;
+
+	@Param({ "4096" })
+	int fileSize;
+
+	private File root;
+
+	private File moduleDir;
+
+	private File destination;
+
+	private Publish publish;
+
+	private ForgeService forgeService;
+
+	@Benchmark
+	public File buildForge() throws IOException, IncompleteException {
+		return publish.buildForge(forgeService, moduleDir, destination, new String[2]);
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		root = SyntheticModules.createTempDir("packaging");
+		moduleDir = SyntheticModules.writeModule(
+			root, SyntheticModules.moduleName(0), true, new String[0], 10, fileCount, fileSize);
+		destination = new File(root, "builtModules");
+		destination.mkdirs();
+		publish = new Publish();
+		publish.setModulesRoot(root);
+		forgeService = ForgeFactory.eINSTANCE.createForgeService();
+	}
+
+	@TearDown
+	public void tearDown() {
+		SyntheticModules.delete(root);
+	}
+}
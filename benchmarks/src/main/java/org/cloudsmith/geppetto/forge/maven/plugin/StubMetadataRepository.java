@@ -0,0 +1,39 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.cloudsmith.geppetto.forge.v2.MetadataRepository;
+import org.cloudsmith.geppetto.forge.v2.model.Dependency;
+import org.cloudsmith.geppetto.forge.v2.model.QName;
+import org.cloudsmith.geppetto.forge.v2.model.Release;
+
+/**
+ * A repository that answers without any remote calls. Nothing is ever found so all dependencies that
+ * reach it are reported as unresolved.
+ */
+class StubMetadataRepository implements MetadataRepository {
+	@Override
+	public Set<Release> deepResolve(Dependency dependency, Set<Dependency> unresolvedCollector) {
+		unresolvedCollector.add(dependency);
+		return Collections.emptySet();
+	}
+
+	@Override
+	public Release resolve(QName name, String version) {
+		return null;
+	}
+}
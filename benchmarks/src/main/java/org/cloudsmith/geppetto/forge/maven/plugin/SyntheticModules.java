@@ -0,0 +1,126 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Creates fixed synthetic module trees for the benchmarks. The content only depends on the given
+ * parameters so that results are comparable between runs.
+ */
+final class SyntheticModules {
+	static final String OWNER = "bench";
+
+	static File createTempDir(String prefix) throws IOException {
+		File dir = File.createTempFile(prefix, "");
+		if(!(dir.delete() && dir.mkdir()))
+			throw new IOException("Unable to create directory " + dir);
+		return dir;
+	}
+
+	static void delete(File file) {
+		File[] children = file.listFiles();
+		if(children != null)
+			for(File child : children)
+				delete(child);
+		file.delete();
+	}
+
+	static String moduleName(int idx) {
+		return String.format("module_%05d", idx);
+	}
+
+	private static void write(File file, String content) throws IOException {
+		Writer out = new OutputStreamWriter(new FileOutputStream(file), AbstractForgeMojo.UTF_8);
+		try {
+			out.write(content);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes a module with the given number of manifests and an optional number of extra files of
+	 * the given size.
+	 * 
+	 * @return The module directory
+	 */
+	static File writeModule(File parent, String name, boolean json, String[] dependencies, int manifests,
+			int extraFiles, int extraFileSize) throws IOException {
+		File moduleDir = new File(parent, name);
+		File manifestsDir = new File(moduleDir, "manifests");
+		File filesDir = new File(moduleDir, "files");
+		if(!(manifestsDir.mkdirs() && filesDir.mkdirs()))
+			throw new IOException("Unable to create directory " + moduleDir);
+
+		StringBuilder bld = new StringBuilder();
+		if(json) {
+			bld.append("{\n  \"name\": \"").append(OWNER).append('-').append(name).append("\",\n");
+			bld.append("  \"version\": \"1.0.0\",\n  \"author\": \"").append(OWNER).append("\",\n");
+			bld.append("  \"license\": \"\",\n  \"project_page\": \"\",\n  \"source\": \"\",\n");
+			bld.append("  \"summary\": \"\",\n  \"description\": \"\",\n  \"dependencies\": [");
+			for(int idx = 0; idx < dependencies.length; ++idx) {
+				if(idx > 0)
+					bld.append(',');
+				bld.append("\n    { \"name\": \"").append(dependencies[idx]);
+				bld.append("\", \"version_requirement\": \">=1.0.0\" }");
+			}
+			bld.append("\n  ]\n}\n");
+			write(new File(moduleDir, "metadata.json"), bld.toString());
+		}
+		else {
+			bld.append("name '").append(OWNER).append('-').append(name).append("'\nversion '1.0.0'\n\n");
+			bld.append("author '").append(OWNER).append("'\nlicense ''\nproject_page ''\nsource ''\n");
+			bld.append("summary ''\ndescription ''\n");
+			for(String dependency : dependencies)
+				bld.append("dependency '").append(dependency).append("', '>=1.0.0'\n");
+			write(new File(moduleDir, "Modulefile"), bld.toString());
+		}
+
+		for(int idx = 0; idx < manifests; ++idx) {
+			String className = idx == 0
+					? name
+					: name + "::class_" + idx;
+			write(new File(manifestsDir, idx == 0
+					? "init.pp"
+					: "class_" + idx + ".pp"), "class " + className + " {\n  file { '/tmp/" + className +
+					"':\n    ensure => present,\n  }\n}\n");
+		}
+
+		if(extraFiles > 0) {
+			byte[] content = new byte[extraFileSize];
+			Arrays.fill(content, (byte) 'x');
+			for(int idx = 0; idx < extraFiles; ++idx) {
+				OutputStream out = new FileOutputStream(new File(filesDir, "file_" + idx + ".txt"));
+				try {
+					out.write(content);
+				}
+				finally {
+					out.close();
+				}
+			}
+		}
+		return moduleDir;
+	}
+
+	private SyntheticModules() {
+	}
+}
@@ -16,11 +16,21 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
-import java.util.regex.Pattern;
+import java.util.Set;
 
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -32,13 +42,14 @@ import org.cloudsmith.geppetto.forge.ForgeService;
 import org.cloudsmith.geppetto.forge.impl.MetadataImpl;
 import org.cloudsmith.geppetto.forge.util.JsonUtils;
 import org.cloudsmith.geppetto.forge.v2.Forge;
+import org.cloudsmith.geppetto.forge.v2.MetadataRepository;
 import org.cloudsmith.geppetto.forge.v2.client.ForgePreferences;
 import org.cloudsmith.geppetto.forge.v2.client.ForgePreferencesBean;
+import org.cloudsmith.geppetto.forge.v2.model.Dependency;
 import org.cloudsmith.geppetto.forge.v2.model.Metadata;
 import org.cloudsmith.geppetto.forge.v2.model.QName;
+import org.cloudsmith.geppetto.forge.v2.service.ReleaseService;
 import org.cloudsmith.geppetto.validation.DiagnosticType;
-import org.eclipse.core.runtime.IPath;
-import org.eclipse.core.runtime.Path;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,21 +62,64 @@ import com.google.gson.JsonParseException;
 public abstract class AbstractForgeMojo extends AbstractMojo {
 	static final String BUILD_DIR = ".geppetto";
 
-	static final Pattern DEFAULT_EXCLUDES_PATTERN;
+	static final ExcludeMatcher DEFAULT_EXCLUDES;
 
 	static final String IMPORTED_MODULES_ROOT = "importedModules";
 
+	static final int INITIAL_CONCURRENCY = 4;
+
+	static final String REPORTS_DIR = "reports";
+
+	static final String PERFORMANCE_DIR = "performance";
+
 	static final Charset UTF_8 = Charset.forName("UTF-8");
 
 	static {
-		int top = MetadataImpl.DEFAULT_EXCLUDES.length;
-		String[] excludes = new String[top + 1];
-		System.arraycopy(MetadataImpl.DEFAULT_EXCLUDES, 0, excludes, 0, top);
-		excludes[top] = BUILD_DIR;
-		DEFAULT_EXCLUDES_PATTERN = MetadataImpl.compileExcludePattern(excludes);
+		List<String> defaults = new ArrayList<String>(Arrays.asList(MetadataImpl.DEFAULT_EXCLUDES));
+		defaults.add(BUILD_DIR);
+		DEFAULT_EXCLUDES = new ExcludeMatcher(defaults);
+	}
+
+	/**
+	 * Finds the dependencies that modules have on each other.
+	 * 
+	 * @param modules
+	 *            The modules and their metadata
+	 * @return The modules that each module depends on. Modules that depend on none of the given
+	 *         modules have no entry
+	 */
+	static <T> Map<T, List<T>> getModuleDependencies(Map<T, Metadata> modules) {
+		Map<QName, List<T>> byName = new HashMap<QName, List<T>>();
+		for(Map.Entry<T, Metadata> entry : modules.entrySet()) {
+			QName name = entry.getValue().getName();
+			List<T> named = byName.get(name);
+			if(named == null) {
+				named = new ArrayList<T>(1);
+				byName.put(name, named);
+			}
+			named.add(entry.getKey());
+		}
+
+		Map<T, List<T>> dependencies = new IdentityHashMap<T, List<T>>();
+		for(Map.Entry<T, Metadata> entry : modules.entrySet()) {
+			List<Dependency> deps = entry.getValue().getDependencies();
+			if(deps == null || deps.isEmpty())
+				continue;
+			List<T> moduleDeps = new ArrayList<T>(deps.size());
+			for(Dependency dep : deps) {
+				List<T> named = byName.get(dep.getName());
+				if(named != null)
+					for(T other : named)
+						if(other != entry.getKey() && dep.matches(modules.get(other)))
+							moduleDeps.add(other);
+			}
+			if(!moduleDeps.isEmpty())
+				dependencies.put(entry.getKey(), moduleDeps);
+		}
+		return dependencies;
 	}
 
-	private static boolean isNull(String field) {
+	static boolean isNull(String field) {
 		if(field == null)
 			return true;
 
@@ -105,12 +159,60 @@ public abstract class AbstractForgeMojo extends AbstractMojo {
 	 */
 	private String clientSecret;
 
+	/**
+	 * Set to <tt>false</tt> to obtain a new OAuth token for each execution instead of reusing tokens that were
+	 * obtained for the same credentials earlier in the same JVM.
+	 */
+	@Parameter(property = "forge.oauth.cacheToken", defaultValue = "true")
+	private boolean cacheOAuthToken = true;
+
+	/**
+	 * The number of consecutive transient failures after which calls to the Forge are suspended. Zero disables the
+	 * circuit breaker.
+	 */
+	@Parameter(property = "forge.circuitBreaker.threshold", defaultValue = "5")
+	private int circuitBreakerThreshold = 5;
+
+	/**
+	 * The time in milliseconds that calls to the Forge are suspended before a trial call is allowed.
+	 */
+	@Parameter(property = "forge.circuitBreaker.resetTime", defaultValue = "30000")
+	private long circuitBreakerResetTime = 30000;
+
+	/**
+	 * Additional names of files and directories that are skipped when modules are discovered and packed, such as
+	 * <tt>spec</tt> or <tt>*.orig</tt>. The wildcards <tt>*</tt> and <tt>?</tt> are supported. The names are added to
+	 * the default excludes, such as <tt>.git</tt> and <tt>*~</tt>.
+	 */
+	@Parameter(property = "forge.excludes")
+	private String[] excludes;
+
 	/**
 	 * The login name. Not required when the OAuth token is provided.
 	 */
 	@Parameter(property = "forge.login")
 	private String login;
 
+	/**
+	 * The upper bound of concurrent requests to the Forge. The actual limit adapts to the latency of the Forge and is
+	 * lowered when the Forge responds with 429 or 503.
+	 */
+	@Parameter(property = "forge.concurrency.max", defaultValue = "16")
+	private int maxConcurrentRequests = 16;
+
+	/**
+	 * The maximum number of times a failed Forge call is retried. Only transient failures are retried.
+	 */
+	@Parameter(property = "forge.retry.maxRetries", defaultValue = "3")
+	private int maxRetries = 3;
+
+	/**
+	 * The maximum number of error lines to include in the message of the exception that fails the build. All errors are
+	 * still logged. A value &lt;= 0 means no limit.
+	 */
+	@Parameter(property = "forge.maxErrorLines", defaultValue = "100")
+	private int maxErrorLines = 100;
+
 	/**
 	 * The OAuth token to use for authentication. If it is provided, then the
 	 * login and password does not have to be provided.
@@ -118,26 +220,130 @@ public abstract class AbstractForgeMojo extends AbstractMojo {
 	@Parameter(property = "forge.auth.token")
 	private String oauthToken;
 
+	/**
+	 * The maximum number of runs to keep in the performance history file.
+	 */
+	@Parameter(property = "forge.performance.historySize", defaultValue = "100")
+	private int performanceHistorySize = 100;
+
 	/**
 	 * The password. Not required when the OAuth token is provided.
 	 */
 	@Parameter(property = "forge.password")
 	private String password;
 
+	/**
+	 * The number of requests that may be sent to the Forge in a burst before the rate limit applies.
+	 */
+	@Parameter(property = "forge.rateLimit.burst", defaultValue = "20")
+	private int requestBurst = 20;
+
+	/**
+	 * The sustained number of requests per second that may be sent to the Forge. Zero or less means no limit.
+	 */
+	@Parameter(property = "forge.rateLimit.requestsPerSecond", defaultValue = "20")
+	private double requestsPerSecond = 20;
+
+	/**
+	 * The delay in milliseconds before the first retry of a failed Forge call. The delay doubles for each retry.
+	 */
+	@Parameter(property = "forge.retry.initialDelay", defaultValue = "500")
+	private long retryInitialDelay = 500;
+
+	/**
+	 * The fraction, between 0 and 1, of each retry delay that is randomized.
+	 */
+	@Parameter(property = "forge.retry.jitter", defaultValue = "0.5")
+	private double retryJitter = 0.5;
+
+	/**
+	 * The upper bound in milliseconds of the delay between retries.
+	 */
+	@Parameter(property = "forge.retry.maxDelay", defaultValue = "30000")
+	private long retryMaxDelay = 30000;
+
+	/**
+	 * HTTP status codes that are considered transient. Calls that fail with other status codes are not retried.
+	 */
+	@Parameter(property = "forge.retry.statusCodes")
+	private int[] retryStatusCodes = { 408, 429, 500, 502, 503, 504 };
+
+	/**
+	 * Formats of machine readable reports to write into the <tt>reports</tt> folder of the build directory. Valid
+	 * values are <tt>JSON</tt>, <tt>SARIF</tt>, and <tt>JUNIT</tt>. No reports are written by default.
+	 */
+	@Parameter(property = "forge.report.formats")
+	private ReportFormat[] reportFormats;
+
+	/**
+	 * A git ref, such as the base commit of a pull request. When set, only the modules that contain
+	 * files that changed since the ref, and the modules in the repository that depend on them, are
+	 * linted and published. All modules are processed when the changes cannot be determined.
+	 */
+	@Parameter(property = "forge.sinceRef")
+	private String sinceRef;
+
+	/**
+	 * A directory where OAuth tokens are stored between builds, encrypted with a key derived from the credentials.
+	 * Tokens are only cached in memory when this is not set.
+	 */
+	@Parameter(property = "forge.oauth.tokenCacheDir")
+	private File tokenCacheDir;
+
+	/**
+	 * Set to <tt>false</tt> to make concurrent calls to the Forge on platform threads even when the JVM supports
+	 * virtual threads (Java 21 and later). With virtual threads, <tt>forge.concurrency.max</tt> can be raised to
+	 * hundreds without reserving a platform thread per call.
+	 */
+	@Parameter(property = "forge.virtualThreads", defaultValue = "true")
+	private boolean virtualThreads = true;
+
+	/**
+	 * Set to <tt>false</tt> to prevent that a performance report is written into the <tt>performance</tt> folder of
+	 * the build directory. The report covers phase durations, time per module, heap and GC usage, and Forge latency.
+	 * A compact version is also appended to a bounded history file in the same folder.
+	 */
+	@Parameter(property = "forge.performance.report", defaultValue = "true")
+	private boolean writePerformanceReport = true;
+
 	/**
 	 * The service URL of the Puppet Forge server
 	 */
 	@Parameter(property = "forge.serviceURL", required = true)
 	private String serviceURL;
 
-	private ForgePreferencesBean forgePreferences;
+	private final Object accessTokenLock = new Object();
 
-	private transient File buildDir;
+	private transient OAuthTokenCache.Credentials accessTokenCredentials;
+
+	private transient boolean accessTokenFailed;
+
+	private transient ForgePreferencesBean forgePreferences;
 
 	private transient Forge forge;
 
+	private transient String forgeToken;
+
+	private transient MetadataRepository metadataRepository;
+
+	private transient ReleaseService releaseService;
+
+	private transient File buildDir;
+
+	private transient ForgeCallExecutor callExecutor;
+
+	private transient ExcludeMatcher excludeMatcher;
+
+	private transient RelativePathResolver relativePathResolver;
+
 	private transient Logger log;
 
+	private transient MetricsRegistry metrics;
+
+	private final Map<File, Metadata> preloadedMetadata = new HashMap<File, Metadata>();
+
+	private final Map<File, Diagnostic> preloadedMetadataDiagnostics = new HashMap<File, Diagnostic>();
+
 	public AbstractForgeMojo() {
 		try {
 			Properties props = readForgeProperties();
@@ -150,14 +356,55 @@ public abstract class AbstractForgeMojo extends AbstractMojo {
 		}
 	}
 
+	private synchronized void addCallSummary(Diagnostic diagnostic) {
+		if(callExecutor != null) {
+			Diagnostic retrySummary = callExecutor.createSummary(DiagnosticType.PUBLISHER);
+			if(retrySummary != null)
+				diagnostic.addChild(retrySummary);
+		}
+	}
+
+	/**
+	 * Copies the configuration of another execution. All parameters that this execution has in
+	 * common with <code>other</code> are copied. Used when goals are run by the validation daemon.
+	 * 
+	 * @param other
+	 *            The execution to copy the configuration from
+	 */
+	void configureFrom(AbstractForgeMojo other) {
+		for(Class<?> c = getClass(); c != AbstractMojo.class; c = c.getSuperclass()) {
+			if(!c.isInstance(other))
+				continue;
+			for(Field field : c.getDeclaredFields()) {
+				int modifiers = field.getModifiers();
+				if(Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) || Modifier.isTransient(modifiers))
+					continue;
+				field.setAccessible(true);
+				try {
+					field.set(this, field.get(other));
+				}
+				catch(IllegalAccessException e) {
+					throw new IllegalStateException("Unable to copy parameter " + field.getName(), e);
+				}
+			}
+		}
+		setLog(other.getLog());
+		setLogger(other.getLogger());
+	}
+
 	public void execute() throws MojoExecutionException, MojoFailureException {
 		Diagnostic diagnostic = new Diagnostic();
+		long start = System.nanoTime();
+		PerformanceReport performanceReport = writePerformanceReport
+				? new PerformanceReport()
+				: null;
 		try {
 			if(modulesRoot == null)
 				throw new MojoExecutionException("Missing required configuration parameter: 'modulesRoot'");
 			if(serviceURL == null)
 				throw new MojoExecutionException("Missing required configuration parameter: 'serviceURL'");
 			invoke(diagnostic);
+			addCallSummary(diagnostic);
 		}
 		catch(JsonParseException e) {
 			throw new MojoFailureException(getActionName() + " failed: Invalid Json: " + e.getMessage(), e);
@@ -169,12 +416,18 @@ public abstract class AbstractForgeMojo extends AbstractMojo {
 		catch(Exception e) {
 			throw new MojoFailureException(getActionName() + " failed: " + e.getMessage(), e);
 		}
-		logDiagnostic(null, diagnostic);
+		finally {
+			getLogger().info(getMetrics().getSummary(System.nanoTime() - start));
+			if(performanceReport != null && modulesRoot != null)
+				writePerformanceReport(performanceReport);
+		}
+		writeReports(diagnostic);
+		DiagnosticRenderer.log(getLogger(), diagnostic);
 		if(diagnostic.getSeverity() == Diagnostic.ERROR)
-			throw new MojoFailureException(diagnostic.getErrorText());
+			throw new MojoFailureException(diagnostic.getErrorText(maxErrorLines));
 	}
 
-	private boolean findModuleFiles(File[] files, List<File> moduleFiles) {
+	private boolean findModuleFiles(File[] files, ExcludeMatcher excludes, List<File> moduleFiles) {
 		if(files != null) {
 			int idx = files.length;
 			while(--idx >= 0) {
@@ -187,10 +440,10 @@ public abstract class AbstractForgeMojo extends AbstractMojo {
 			while(--idx >= 0) {
 				File file = files[idx];
 				String name = file.getName();
-				if(DEFAULT_EXCLUDES_PATTERN.matcher(name).matches())
+				if(excludes.matches(name))
 					continue;
 
-				if(findModuleFiles(file.listFiles(), moduleFiles)) {
+				if(findModuleFiles(file.listFiles(), excludes, moduleFiles)) {
 					getLog().debug("Found module in " + file.getAbsolutePath());
 					moduleFiles.add(file);
 				}
@@ -203,15 +456,51 @@ public abstract class AbstractForgeMojo extends AbstractMojo {
 		// Scan for valid directories containing "Modulefile" files.
 
 		getLog().debug("Scanning " + modulesRoot.getAbsolutePath() + " for Modulefile files");
+		MetricsRegistry.Timer timer = getMetrics().start(MetricsRegistry.DISCOVERY);
 		List<File> moduleRoots = new ArrayList<File>();
-		if(findModuleFiles(modulesRoot.listFiles(), moduleRoots)) {
-			// The repository is a module in itself
-			getLog().debug("Found module in " + modulesRoot.getAbsolutePath());
-			moduleRoots.add(modulesRoot);
+		try {
+			if(findModuleFiles(modulesRoot.listFiles(), getExcludes(), moduleRoots)) {
+				// The repository is a module in itself
+				getLog().debug("Found module in " + modulesRoot.getAbsolutePath());
+				moduleRoots.add(modulesRoot);
+			}
+		}
+		finally {
+			timer.stop().addCount(moduleRoots.size());
 		}
 		return moduleRoots;
 	}
 
+	/**
+	 * Creates a scope for the concurrent Forge calls of a phase. At most as many tasks run at the same time as the
+	 * Forge connection permits calls.
+	 * 
+	 * @param phase
+	 *            The name of the phase
+	 * @return The scope. The caller must close it
+	 */
+	protected ForgeTaskScope createTaskScope(String phase) {
+		return createTaskScope(phase, maxConcurrentRequests);
+	}
+
+	/**
+	 * Creates a scope for the concurrent Forge calls of a phase.
+	 * 
+	 * @param phase
+	 *            The name of the phase
+	 * @param parallelism
+	 *            The number of tasks that may run at the same time
+	 * @return The scope. The caller must close it
+	 */
+	protected ForgeTaskScope createTaskScope(String phase, int parallelism) {
+		ForgeTaskScope scope = new ForgeTaskScope(phase, parallelism, virtualThreads);
+		if(getLog().isDebugEnabled())
+			getLog().debug("Running " + phase + " tasks on " + (scope.isVirtual()
+					? "virtual"
+					: "platform") + " threads");
+		return scope;
+	}
+
 	protected abstract String getActionName();
 
 	protected synchronized File getBuildDir() {
@@ -220,27 +509,101 @@ public abstract class AbstractForgeMojo extends AbstractMojo {
 		return buildDir;
 	}
 
-	protected synchronized Forge getForge() {
-		if(forge == null)
-			forge = new Forge(getForgePreferences());
-		return forge;
+	/**
+	 * @return The executor to use for all calls to the Forge. It retries, rate limits, and adapts
+	 *         the concurrency of the calls
+	 */
+	protected synchronized ForgeCallExecutor getCallExecutor() {
+		if(callExecutor == null) {
+			AdaptiveConcurrencyLimiter concurrencyLimiter = new AdaptiveConcurrencyLimiter(
+				Math.min(INITIAL_CONCURRENCY, maxConcurrentRequests), 1, maxConcurrentRequests);
+			// Transfer times depend on the size of the modules and say nothing about congestion
+			concurrencyLimiter.ignoreLatency(MetricsRegistry.DOWNLOAD);
+			concurrencyLimiter.ignoreLatency(MetricsRegistry.UPLOAD);
+			callExecutor = new ForgeCallExecutor(
+				new RetryPolicy(maxRetries, retryInitialDelay, retryMaxDelay, retryJitter, retryStatusCodes),
+				new CircuitBreaker(circuitBreakerThreshold, circuitBreakerResetTime), new TokenBucket(
+					requestsPerSecond, requestBurst), concurrencyLimiter);
+			callExecutor.setLatencyRecorder(getMetrics().getRemoteLatencies());
+		}
+		return callExecutor;
+	}
+
+	/**
+	 * @return The matcher for the names of files and directories that are skipped when modules are discovered and
+	 *         packed
+	 */
+	protected synchronized ExcludeMatcher getExcludes() {
+		if(excludeMatcher == null)
+			excludeMatcher = excludes == null
+					? DEFAULT_EXCLUDES
+					: DEFAULT_EXCLUDES.with(Arrays.asList(excludes));
+		return excludeMatcher;
 	}
 
-	protected synchronized ForgePreferences getForgePreferences() {
-		if(forgePreferences == null) {
-			forgePreferences = new ForgePreferencesBean();
-			if(!serviceURL.endsWith("/"))
-				serviceURL += "/";
-			forgePreferences.setBaseURL(serviceURL + "v2/");
-			forgePreferences.setOAuthURL(serviceURL + "oauth/token");
-			forgePreferences.setOAuthAccessToken(oauthToken);
-			forgePreferences.setOAuthClientId(clientID);
-			forgePreferences.setOAuthClientSecret(clientSecret);
-			forgePreferences.setLogin(login);
-			forgePreferences.setPassword(password);
-			forgePreferences.setOAuthScopes("");
+	/**
+	 * @return The Forge client of this execution. A new client is created when the OAuth token has
+	 *         been refreshed
+	 */
+	protected Forge getForge() {
+		ForgePreferences preferences = getForgePreferences();
+		String token = preferences.getOAuthAccessToken();
+		synchronized(this) {
+			if(forge == null || !(token == null
+					? forgeToken == null
+					: token.equals(forgeToken))) {
+				forge = new Forge(preferences);
+				forgeToken = token;
+				metadataRepository = null;
+				releaseService = null;
+			}
+			return forge;
 		}
-		return forgePreferences;
+	}
+
+	protected ForgePreferences getForgePreferences() {
+		ForgePreferencesBean preferences;
+		synchronized(this) {
+			if(forgePreferences == null) {
+				forgePreferences = new ForgePreferencesBean();
+				if(!serviceURL.endsWith("/"))
+					serviceURL += "/";
+				forgePreferences.setBaseURL(serviceURL + "v2/");
+				forgePreferences.setOAuthURL(serviceURL + "oauth/token");
+				forgePreferences.setOAuthAccessToken(oauthToken);
+				forgePreferences.setOAuthClientId(clientID);
+				forgePreferences.setOAuthClientSecret(clientSecret);
+				forgePreferences.setLogin(login);
+				forgePreferences.setPassword(password);
+				forgePreferences.setOAuthScopes("");
+			}
+			preferences = forgePreferences;
+		}
+		if(cacheOAuthToken && isNull(oauthToken) && !(isNull(login) || isNull(password)))
+			resolveAccessToken(preferences);
+		return preferences;
+	}
+
+	protected HttpTransport getHttpTransport() {
+		return HttpTransport.DEFAULT;
+	}
+
+	protected MetadataRepository getMetadataRepository() {
+		Forge current = getForge();
+		synchronized(this) {
+			if(metadataRepository == null || current != forge)
+				metadataRepository = current.createMetadataRepository();
+			return metadataRepository;
+		}
+	}
+
+	/**
+	 * @return The registry that collects performance metrics for this execution
+	 */
+	protected synchronized MetricsRegistry getMetrics() {
+		if(metrics == null)
+			metrics = new MetricsRegistry();
+		return metrics;
 	}
 
 	protected Logger getLogger() {
@@ -250,6 +613,52 @@ public abstract class AbstractForgeMojo extends AbstractMojo {
 	}
 
 	protected Metadata getModuleMetadata(File moduleDirectory, Diagnostic diag) throws IOException {
+		MetricsRegistry.Timer timer = getMetrics().start(MetricsRegistry.METADATA);
+		try {
+			Metadata md;
+			Diagnostic mdDiag;
+			synchronized(this) {
+				md = preloadedMetadata.remove(moduleDirectory);
+				mdDiag = preloadedMetadataDiagnostics.remove(moduleDirectory);
+			}
+			if(md == null)
+				return loadModuleMetadata(moduleDirectory, diag);
+			// Loaded when the affected modules were selected
+			diag.addChildren(mdDiag.getChildren());
+			return md;
+		}
+		finally {
+			timer.stop().addCount(1);
+			getMetrics().addModuleTime(getRelativePath(moduleDirectory), timer.getElapsedNanos());
+		}
+	}
+
+	protected File getModulesRoot() {
+		return modulesRoot;
+	}
+
+	protected ReleaseService getReleaseService() {
+		Forge current = getForge();
+		synchronized(this) {
+			if(releaseService == null || current != forge)
+				releaseService = current.createReleaseService();
+			return releaseService;
+		}
+	}
+
+	protected String getRelativePath(File file) {
+		return getRelativePathResolver().getRelativePath(file);
+	}
+
+	private synchronized RelativePathResolver getRelativePathResolver() {
+		if(relativePathResolver == null)
+			relativePathResolver = new RelativePathResolver(modulesRoot, StringPool.SHARED);
+		return relativePathResolver;
+	}
+
+	protected abstract void invoke(Diagnostic result) throws Exception;
+
+	private Metadata loadModuleMetadata(File moduleDirectory, Diagnostic diag) throws IOException {
 		StringWriter writer = new StringWriter();
 		try {
 			ForgeService forgeService = ForgeFactory.eINSTANCE.createForgeService();
@@ -298,54 +707,207 @@ public abstract class AbstractForgeMojo extends AbstractMojo {
 		return md;
 	}
 
-	protected File getModulesRoot() {
-		return modulesRoot;
+	/**
+	 * Takes the current OAuth token from the token cache. This is done each time the preferences are
+	 * used, so a token that the cache has refreshed takes effect mid-run and the cache sees that the
+	 * token is still in use. It is a lookup in memory unless the cache has no valid token. A failure
+	 * is remembered for the rest of the execution, in which case the Forge client logs in by itself.
+	 * Only a dedicated lock is held while the token is requested.
+	 */
+	private void resolveAccessToken(ForgePreferencesBean preferences) {
+		synchronized(accessTokenLock) {
+			if(accessTokenFailed)
+				return;
+			if(accessTokenCredentials == null)
+				accessTokenCredentials = new OAuthTokenCache.Credentials(
+					preferences.getOAuthURL(), clientID, clientSecret, login, password);
+			try {
+				preferences.setOAuthAccessToken(OAuthTokenCache.SHARED.getAccessToken(
+					accessTokenCredentials, getHttpTransport(), tokenCacheDir));
+			}
+			catch(IOException e) {
+				// Let the Forge client log in by itself
+				accessTokenFailed = true;
+				getLog().debug("Unable to obtain a cached OAuth token: " + e.getMessage());
+			}
+		}
 	}
 
-	protected String getRelativePath(File file) {
-		IPath rootPath = Path.fromOSString(modulesRoot.getAbsolutePath());
-		IPath path = Path.fromOSString(file.getAbsolutePath());
-		IPath relative = path.makeRelativeTo(rootPath);
-		return relative.toPortableString();
+	/**
+	 * Runs the goal without reporting. Unlike {@link #execute()}, the diagnostic is returned
+	 * instead of being logged and no exception is thrown when it contains errors. Metrics and
+	 * call statistics are reset so that each run reports only its own.
+	 * 
+	 * @return The diagnostic produced by the goal
+	 * @throws Exception
+	 *             if the goal could not be performed
+	 */
+	Diagnostic run() throws Exception {
+		synchronized(this) {
+			metrics = null;
+			callExecutor = null;
+			forgePreferences = null;
+			forge = null;
+			preloadedMetadata.clear();
+			preloadedMetadataDiagnostics.clear();
+		}
+		synchronized(accessTokenLock) {
+			accessTokenCredentials = null;
+			accessTokenFailed = false;
+		}
+		Diagnostic diagnostic = new Diagnostic();
+		invoke(diagnostic);
+		addCallSummary(diagnostic);
+		return diagnostic;
 	}
 
-	protected abstract void invoke(Diagnostic result) throws Exception;
+	/**
+	 * Narrows the given module roots to the ones affected by changes since {@link #sinceRef}, i.e.
+	 * the modules that contain changed files and the modules that depend on them, directly or
+	 * indirectly.
+	 * 
+	 * @param moduleRoots
+	 *            All module roots
+	 * @return The affected module roots in their original order, or <code>moduleRoots</code> if
+	 *         no ref is set or the changes cannot be determined
+	 */
+	protected List<File> selectAffectedModuleRoots(List<File> moduleRoots) throws IOException {
+		if(isNull(sinceRef))
+			return moduleRoots;
 
-	private void logDiagnostic(String indent, Diagnostic diag) {
-		if(diag == null)
-			return;
+		GitChangeSet changes;
+		try {
+			changes = GitChangeSet.read(modulesRoot, sinceRef.trim());
+		}
+		catch(IOException e) {
+			getLog().warn("Unable to determine the changes since " + sinceRef + ". All modules will be processed: " +
+					e.getMessage());
+			return moduleRoots;
+		}
 
-		String msg = diag.getMessage();
-		if(indent != null)
-			msg = indent + msg;
-
-		if(msg != null) {
-			msg = diag.getType().name() + ": " + msg;
-			switch(diag.getSeverity()) {
-				case Diagnostic.DEBUG:
-					getLogger().debug(msg);
-					break;
-				case Diagnostic.WARNING:
-					getLogger().warn(msg);
-					break;
-				case Diagnostic.FATAL:
-				case Diagnostic.ERROR:
-					getLogger().error(msg);
-					break;
-				default:
-					getLogger().info(msg);
+		Map<String, File> byPath = new LinkedHashMap<String, File>();
+		for(File moduleRoot : moduleRoots)
+			byPath.put(getRelativePath(moduleRoot), moduleRoot);
+		Set<String> changed = changes.getChangedModules(byPath.keySet());
+		if(changed.isEmpty())
+			return Collections.emptyList();
+
+		// Modules that depend on a changed module are affected too. The metadata is kept for the
+		// goal, which reads it again with its diagnostics
+		Map<File, Metadata> metadata = new LinkedHashMap<File, Metadata>();
+		Map<File, Diagnostic> metadataDiagnostics = new HashMap<File, Diagnostic>();
+		MetricsRegistry.Timer timer = getMetrics().start(MetricsRegistry.DISCOVERY);
+		try {
+			for(File moduleRoot : moduleRoots) {
+				Diagnostic mdDiag = new Diagnostic();
+				metadata.put(moduleRoot, loadModuleMetadata(moduleRoot, mdDiag));
+				metadataDiagnostics.put(moduleRoot, mdDiag);
+			}
+		}
+		catch(Exception e) {
+			getLog().warn("Unable to read the metadata of all modules. All modules will be processed: " +
+					e.getMessage());
+			return moduleRoots;
+		}
+		finally {
+			timer.stop();
+		}
+		synchronized(this) {
+			preloadedMetadata.putAll(metadata);
+			preloadedMetadataDiagnostics.putAll(metadataDiagnostics);
+		}
+		Map<File, List<File>> dependents = new HashMap<File, List<File>>();
+		for(Map.Entry<File, List<File>> entry : getModuleDependencies(metadata).entrySet())
+			for(File dep : entry.getValue()) {
+				List<File> depDependents = dependents.get(dep);
+				if(depDependents == null) {
+					depDependents = new ArrayList<File>();
+					dependents.put(dep, depDependents);
+				}
+				depDependents.add(entry.getKey());
 			}
-			if(indent == null)
-				indent = "  ";
-			else
-				indent = indent + "  ";
+
+		Set<File> affected = new HashSet<File>();
+		LinkedList<File> queue = new LinkedList<File>();
+		for(String path : changed)
+			queue.add(byPath.get(path));
+		while(!queue.isEmpty()) {
+			File moduleRoot = queue.removeFirst();
+			if(!affected.add(moduleRoot))
+				continue;
+			List<File> moduleDependents = dependents.get(moduleRoot);
+			if(moduleDependents != null)
+				queue.addAll(moduleDependents);
 		}
 
-		for(Diagnostic child : diag.getChildren())
-			logDiagnostic(indent, child);
+		List<File> result = new ArrayList<File>(affected.size());
+		for(File moduleRoot : moduleRoots)
+			if(affected.contains(moduleRoot))
+				result.add(moduleRoot);
+		getLog().info(
+			result.size() + " of " + moduleRoots.size() + " modules are affected by changes since " + sinceRef +
+					" (" + changed.size() + " changed)");
+		return result;
 	}
 
 	public void setLogger(Logger log) {
 		this.log = log;
 	}
+
+	/**
+	 * Sets the modules root when the mojo is used outside of Maven, i.e. from benchmarks and tests.
+	 * 
+	 * @param modulesRoot
+	 *            The directory to scan for modules
+	 */
+	void setModulesRoot(File modulesRoot) {
+		this.modulesRoot = modulesRoot;
+		this.buildDir = null;
+		this.relativePathResolver = null;
+	}
+
+	/**
+	 * Sets the service URL when the mojo is used outside of Maven, i.e. from benchmarks and tests.
+	 * 
+	 * @param serviceURL
+	 *            The service URL of the Puppet Forge server
+	 */
+	void setServiceURL(String serviceURL) {
+		this.serviceURL = serviceURL;
+	}
+
+	private void writePerformanceReport(PerformanceReport performanceReport) {
+		File performanceDir = new File(getBuildDir(), PERFORMANCE_DIR);
+		try {
+			performanceReport.write(
+				performanceDir, getActionName(), PerformanceReport.readGitRevision(modulesRoot), getMetrics(),
+				performanceHistorySize);
+		}
+		catch(IOException e) {
+			getLogger().warn("Unable to write performance report to " + performanceDir.getAbsolutePath(), e);
+		}
+	}
+
+	private void writeReports(Diagnostic diagnostic) {
+		if(reportFormats == null || reportFormats.length == 0)
+			return;
+
+		File reportsDir = new File(getBuildDir(), REPORTS_DIR);
+		if(!(reportsDir.mkdirs() || reportsDir.isDirectory())) {
+			getLogger().warn("Unable to create directory " + reportsDir.getAbsolutePath());
+			return;
+		}
+
+		String reportName = getActionName().toLowerCase();
+		for(ReportFormat format : reportFormats) {
+			File reportFile = new File(reportsDir, reportName + '.' + format.getFileExtension());
+			try {
+				format.createWriter().write(diagnostic, getActionName(), reportFile);
+				getLogger().debug("Wrote " + format + " report to " + reportFile.getAbsolutePath());
+			}
+			catch(IOException e) {
+				getLogger().warn("Unable to write " + format + " report to " + reportFile.getAbsolutePath(), e);
+			}
+		}
+	}
 }
@@ -0,0 +1,148 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Limits the number of concurrent requests to the Forge and adapts the limit to how the Forge
+ * responds (additive increase, multiplicative decrease). Each request that completes without signs of
+ * congestion raises the limit by a fraction so that it grows by one per round of requests. A request
+ * that is throttled by the Forge, or that takes much longer than the average of its operation, halves
+ * the limit. The limit is halved at most once per average request time so that one burst of slow
+ * responses only counts once. Operations whose time depends on the amount of data they transfer,
+ * such as uploads and downloads, can be {@link #ignoreLatency(String) excluded} from the latency
+ * signal, in which case only throttling lowers the limit.
+ */
+public class AdaptiveConcurrencyLimiter {
+	private static final double LATENCY_TOLERANCE = 3.0;
+
+	private static final double AVERAGE_WEIGHT = 0.05;
+
+	private final int minLimit;
+
+	private final int maxLimit;
+
+	private double limit;
+
+	private int inFlight;
+
+	private final Map<String, Double> averageLatencies = new HashMap<String, Double>();
+
+	private final Set<String> latencyIgnored = new HashSet<String>();
+
+	private long lastDecrease;
+
+	private int decreaseCount;
+
+	/**
+	 * @param initialLimit
+	 *            The limit to start with
+	 * @param minLimit
+	 *            The lowest limit
+	 * @param maxLimit
+	 *            The highest limit
+	 */
+	public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+		this.minLimit = Math.max(1, minLimit);
+		this.maxLimit = Math.max(this.minLimit, maxLimit);
+		this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+	}
+
+	/**
+	 * Waits until the number of requests in flight is below the current limit and registers a new
+	 * request. Each successful call must be followed by a call to {@link #release(String, long, boolean)}.
+	 *
+	 * @throws InterruptedIOException
+	 *             if the thread is interrupted while waiting
+	 */
+	public synchronized void acquire() throws InterruptedIOException {
+		try {
+			while(inFlight >= (int) limit)
+				wait();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the concurrency limiter");
+		}
+		++inFlight;
+	}
+
+	/**
+	 * @return The number of times the limit has been decreased
+	 */
+	public synchronized int getDecreaseCount() {
+		return decreaseCount;
+	}
+
+	/**
+	 * @return The current limit
+	 */
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+
+	/**
+	 * Excludes an operation from the latency signal. Requests of the operation still count against
+	 * the limit and lower it when they are throttled.
+	 *
+	 * @param operation
+	 *            The operation, i.e. one that transfers an amount of data that varies between requests
+	 */
+	public synchronized void ignoreLatency(String operation) {
+		latencyIgnored.add(operation);
+	}
+
+	/**
+	 * Registers the completion of a request and adjusts the limit.
+	 *
+	 * @param operation
+	 *            The operation performed by the request. Latencies are only compared between requests of
+	 *            the same operation
+	 * @param latencyNanos
+	 *            The time the request took
+	 * @param throttled
+	 *            <code>true</code> if the Forge responded that it is overloaded
+	 */
+	public synchronized void release(String operation, long latencyNanos, boolean throttled) {
+		--inFlight;
+		boolean congested = throttled;
+		// Throttled requests of an ignored operation lower the limit at most once per request time
+		double averageLatency = latencyNanos;
+		if(!latencyIgnored.contains(operation)) {
+			Double previous = averageLatencies.get(operation);
+			congested |= previous != null && latencyNanos > previous.doubleValue() * LATENCY_TOLERANCE;
+			averageLatency = previous == null
+					? latencyNanos
+					: previous.doubleValue() + (latencyNanos - previous.doubleValue()) * AVERAGE_WEIGHT;
+			averageLatencies.put(operation, Double.valueOf(averageLatency));
+		}
+
+		if(congested) {
+			long now = System.nanoTime();
+			if(decreaseCount == 0 || now - lastDecrease >= averageLatency) {
+				limit = Math.max(minLimit, limit / 2);
+				lastDecrease = now;
+				++decreaseCount;
+			}
+		}
+		else
+			limit = Math.min(maxLimit, limit + 1.0 / limit);
+		notifyAll();
+	}
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.io.IOException;
+
+/**
+ * Stops calls to the Forge after a number of consecutive transient failures. While the circuit is
+ * open, calls fail immediately. When the reset time has passed, one trial call is let through and
+ * the circuit closes again if it succeeds.
+ */
+public class CircuitBreaker {
+	/**
+	 * Thrown when a call is rejected because the circuit is open
+	 */
+	public static class OpenException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		public OpenException(String message) {
+			super(message);
+		}
+	}
+
+	private final int failureThreshold;
+
+	private final long resetNanos;
+
+	private int consecutiveFailures;
+
+	private long openedAt;
+
+	private boolean open;
+
+	private boolean trialInProgress;
+
+	private int openCount;
+
+	private int rejectedCount;
+
+	/**
+	 * @param failureThreshold
+	 *            The number of consecutive failures that opens the circuit. Zero or less disables the
+	 *            breaker
+	 * @param resetMillis
+	 *            The time in milliseconds that the circuit stays open before a trial call is allowed
+	 */
+	public CircuitBreaker(int failureThreshold, long resetMillis) {
+		this.failureThreshold = failureThreshold;
+		this.resetNanos = Math.max(0, resetMillis) * 1000000L;
+	}
+
+	/**
+	 * Asks for permission to perform a call. The outcome of the call must be recorded with
+	 * {@link #recordSuccess()} or {@link #recordFailure()}. A trial call that is not made must be
+	 * given up with {@link #cancelTrial()}.
+	 *
+	 * @return <code>true</code> if the call is the trial call of an open circuit
+	 * @throws OpenException
+	 *             if the circuit is open
+	 */
+	public synchronized boolean acquire() throws OpenException {
+		if(!open)
+			return false;
+
+		if(!trialInProgress && System.nanoTime() - openedAt >= resetNanos) {
+			trialInProgress = true;
+			return true;
+		}
+		++rejectedCount;
+		throw new OpenException("The Forge is unavailable after " + consecutiveFailures +
+				" consecutive failures. Calls are suspended");
+	}
+
+	/**
+	 * Gives up a trial call that was granted by {@link #acquire()} but never made, so that the next
+	 * call may be the trial.
+	 */
+	public synchronized void cancelTrial() {
+		trialInProgress = false;
+	}
+
+	/**
+	 * @return The number of times the circuit has been opened
+	 */
+	public synchronized int getOpenCount() {
+		return openCount;
+	}
+
+	/**
+	 * @return The number of calls that were rejected because the circuit was open
+	 */
+	public synchronized int getRejectedCount() {
+		return rejectedCount;
+	}
+
+	public synchronized boolean isOpen() {
+		return open;
+	}
+
+	/**
+	 * Records a transient failure. This opens the circuit when the threshold is reached or when a
+	 * trial call fails.
+	 */
+	public synchronized void recordFailure() {
+		++consecutiveFailures;
+		if(failureThreshold <= 0)
+			return;
+
+		if(trialInProgress || !open && consecutiveFailures >= failureThreshold) {
+			if(!open)
+				++openCount;
+			open = true;
+			trialInProgress = false;
+			openedAt = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Records a call that got an answer from the Forge. This closes the circuit.
+	 */
+	public synchronized void recordSuccess() {
+		consecutiveFailures = 0;
+		open = false;
+		trialInProgress = false;
+	}
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Orders the nodes of a dependency graph in levels. The nodes of a level depend only on nodes in
+ * earlier levels, so all nodes of one level can be processed in parallel once the earlier levels
+ * are done. Nodes that take part in a cycle, or that depend on one, cannot be ordered and are
+ * placed together in a last level.
+ * 
+ * @param <T>
+ *            The type of the nodes. Nodes are compared on identity
+ */
+public class DependencyLevels<T> {
+	private final Map<T, Set<T>> dependencies = new IdentityHashMap<T, Set<T>>();
+
+	private final Map<T, Set<T>> dependents = new IdentityHashMap<T, Set<T>>();
+
+	private final List<List<T>> levels = new ArrayList<List<T>>();
+
+	private final List<T> unordered = new ArrayList<T>();
+
+	/**
+	 * @param nodes
+	 *            The nodes in their preferred order. The order is kept within each level
+	 * @param dependencies
+	 *            The direct dependencies of each node. Dependencies that are not among
+	 *            <code>nodes</code> are ignored
+	 */
+	public DependencyLevels(Collection<T> nodes, Map<T, ? extends Collection<T>> dependencies) {
+		for(T node : nodes) {
+			this.dependencies.put(node, new LinkedHashSet<T>());
+			this.dependents.put(node, new LinkedHashSet<T>());
+		}
+		for(T node : nodes) {
+			Collection<T> deps = dependencies.get(node);
+			if(deps == null)
+				continue;
+			for(T dep : deps)
+				if(dep != node && this.dependencies.containsKey(dep)) {
+					this.dependencies.get(node).add(dep);
+					this.dependents.get(dep).add(node);
+				}
+		}
+
+		Map<T, Integer> remaining = new IdentityHashMap<T, Integer>();
+		List<T> level = new ArrayList<T>();
+		for(T node : nodes) {
+			int count = this.dependencies.get(node).size();
+			if(count == 0)
+				level.add(node);
+			else
+				remaining.put(node, Integer.valueOf(count));
+		}
+
+		while(!level.isEmpty()) {
+			levels.add(level);
+			Set<T> next = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+			for(T node : level)
+				for(T dependent : this.dependents.get(node)) {
+					int count = remaining.get(dependent).intValue() - 1;
+					if(count == 0) {
+						remaining.remove(dependent);
+						next.add(dependent);
+					}
+					else
+						remaining.put(dependent, Integer.valueOf(count));
+				}
+
+			// Keep the preferred order within the level
+			List<T> ordered = new ArrayList<T>(next.size());
+			for(T node : nodes)
+				if(next.contains(node))
+					ordered.add(node);
+			level = ordered;
+		}
+
+		for(T node : nodes)
+			if(remaining.containsKey(node))
+				unordered.add(node);
+		if(!unordered.isEmpty())
+			levels.add(unordered);
+	}
+
+	/**
+	 * @param node
+	 *            The node
+	 * @return The direct dependencies of the node
+	 */
+	public Set<T> getDependencies(T node) {
+		Set<T> deps = dependencies.get(node);
+		return deps == null
+				? Collections.<T> emptySet()
+				: Collections.unmodifiableSet(deps);
+	}
+
+	/**
+	 * @return The levels. Each level depends only on earlier levels, except for the last level
+	 *         which holds the {@link #getUnordered() unordered} nodes when there are any
+	 */
+	public List<List<T>> getLevels() {
+		return Collections.unmodifiableList(levels);
+	}
+
+	/**
+	 * @return The nodes that take part in or depend on a cycle, in their preferred order
+	 */
+	public List<T> getUnordered() {
+		return Collections.unmodifiableList(unordered);
+	}
+}
@@ -17,14 +17,35 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.cloudsmith.geppetto.validation.DiagnosticType;
 
 public class Diagnostic extends MessageWithSeverity {
 
-	private static final long serialVersionUID = -1645151837353215387L;
+	private static final long serialVersionUID = -1645151837353215388L;
+
+	/**
+	 * Line value used when the diagnostic has no location at all
+	 */
+	private static final int NO_LOCATION = Integer.MIN_VALUE;
+
+	private static int parseInt(String str, int start, int end) {
+		int value = 0;
+		for(int idx = start; idx < end; ++idx)
+			value = value * 10 + (str.charAt(idx) - '0');
+		return value;
+	}
+
+	private static int skipDigits(String str, int start) {
+		int top = str.length();
+		while(start < top) {
+			char c = str.charAt(start);
+			if(c < '0' || c > '9')
+				break;
+			++start;
+		}
+		return start;
+	}
 
 	private int httpCode = 0;
 
@@ -32,6 +53,15 @@ public class Diagnostic extends MessageWithSeverity {
 
 	private String resourcePath;
 
+	private int line = NO_LOCATION;
+
+	private int offset = -1;
+
+	private int length = -1;
+
+	/**
+	 * Only set when a location label was given that doesn't conform to the LINE(OFFSET,LENGTH) form
+	 */
 	private String locationLabel;
 
 	private String issue;
@@ -40,8 +70,6 @@ public class Diagnostic extends MessageWithSeverity {
 
 	private int type;
 
-	private static final Pattern lineNumberPattern = Pattern.compile("^(\\d+).*");
-
 	public Diagnostic() {
 	}
 
@@ -81,9 +109,19 @@ public class Diagnostic extends MessageWithSeverity {
 	}
 
 	public String getErrorText() {
-		StringBuilder bld = new StringBuilder();
-		toString(ERROR, bld, 0);
-		return bld.toString();
+		return getErrorText(0);
+	}
+
+	/**
+	 * Returns the text of all diagnostics with severity {@link #ERROR} or higher.
+	 * 
+	 * @param maxLines
+	 *            The maximum number of lines to include or &lt;= 0 for no limit. When exceeded, the
+	 *            text ends with a line stating the number of omitted diagnostics.
+	 * @return The error text
+	 */
+	public String getErrorText(int maxLines) {
+		return DiagnosticRenderer.getText(this, ERROR, maxLines);
 	}
 
 	public int getHttpCode() {
@@ -106,23 +144,43 @@ public class Diagnostic extends MessageWithSeverity {
 		return issue;
 	}
 
+	/**
+	 * @return The length of the text that the diagnostic concerns or -1 if not known
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * @return The line number of the diagnostic or 0 if not known
+	 */
 	public int getLine() {
-		if(locationLabel != null) {
-			Matcher m = lineNumberPattern.matcher(locationLabel);
-			if(m.matches())
-				return Integer.parseInt(m.group(1));
-		}
-		return 0;
+		return line > 0
+				? line
+				: 0;
 	}
 
 	/**
 	 * The location in a resource formatted as LINE(OFFSET,LENGTH), or if LINE is -1 using '-'. If offset is >= 0 the () section
-	 * is included, the ", length" part is only produced if length >= 0
+	 * is included, the ", length" part is only produced if length >= 0. The label is formatted each time this method is
+	 * called.
 	 * 
-	 * @return the locationLabel
+	 * @return the locationLabel or <code>null</code> if the diagnostic has no location
 	 */
 	public String getLocationLabel() {
-		return locationLabel;
+		if(locationLabel != null || line == NO_LOCATION)
+			return locationLabel;
+
+		StringBuilder bld = new StringBuilder(16);
+		appendLocationLabel(bld);
+		return bld.toString();
+	}
+
+	/**
+	 * @return The offset of the text that the diagnostic concerns or -1 if not known
+	 */
+	public int getOffset() {
+		return offset;
 	}
 
 	/**
@@ -180,19 +238,94 @@ public class Diagnostic extends MessageWithSeverity {
 	}
 
 	/**
+	 * Sets the location of this diagnostic.
+	 * 
+	 * @param line
+	 *            The line number. A value &lt;= 0 means that the line is unknown
+	 * @param offset
+	 *            The offset or -1 if not known
+	 * @param length
+	 *            The length or -1 if not known
+	 */
+	public void setLocation(int line, int offset, int length) {
+		this.line = line;
+		this.offset = offset;
+		this.length = length;
+		this.locationLabel = null;
+	}
+
+	/**
+	 * Sets the location from a label formatted as described in {@link #getLocationLabel()}. Labels in
+	 * other forms are retained as is.
+	 * 
 	 * @param locationLabel
 	 *            the locationLabel to set
 	 */
 	public void setLocationLabel(String locationLabel) {
+		this.line = NO_LOCATION;
+		this.offset = -1;
+		this.length = -1;
+		this.locationLabel = null;
+		if(locationLabel == null)
+			return;
+
+		int top = locationLabel.length();
+		int idx;
+		int lineValue;
+		if(top > 0 && locationLabel.charAt(0) == '-') {
+			idx = 1;
+			lineValue = -1;
+		}
+		else {
+			idx = skipDigits(locationLabel, 0);
+			if(idx == 0) {
+				this.locationLabel = locationLabel;
+				return;
+			}
+			lineValue = parseInt(locationLabel, 0, idx);
+		}
+
+		// Line is always retained since getLine() should be able to report it
+		this.line = lineValue;
+		if(idx == top)
+			return;
+
+		int offsetValue = -1;
+		int lengthValue = -1;
+		if(locationLabel.charAt(idx) == '(') {
+			int start = idx + 1;
+			idx = skipDigits(locationLabel, start);
+			if(idx > start && idx < top) {
+				offsetValue = parseInt(locationLabel, start, idx);
+				if(locationLabel.charAt(idx) == ',') {
+					start = idx + 1;
+					idx = skipDigits(locationLabel, start);
+					if(idx > start)
+						lengthValue = parseInt(locationLabel, start, idx);
+					else
+						offsetValue = -1;
+				}
+				if(offsetValue >= 0 && idx + 1 == top && locationLabel.charAt(idx) == ')') {
+					this.offset = offsetValue;
+					this.length = lengthValue;
+					return;
+				}
+			}
+		}
+
+		// Not in a form that we recognize.
 		this.locationLabel = locationLabel;
 	}
 
 	/**
+	 * The path is kept in the {@link StringPool#SHARED shared string pool} since the same path is
+	 * typically reported by a large number of diagnostics.
+	 * 
 	 * @param resourcePath
 	 *            the resourcePath to set
 	 */
 	public void setResourcePath(String resourcePath) {
-		this.resourcePath = resourcePath;
+		this.resourcePath = StringPool.SHARED.intern(resourcePath);
 	}
 
 	/**
@@ -200,65 +333,71 @@ public class Diagnostic extends MessageWithSeverity {
 	 *            the source to set
 	 */
 	public void setSource(String source) {
-		this.source = source;
+		this.source = StringPool.SHARED.intern(source);
 	}
 
 	public void setType(DiagnosticType type) {
 		this.type = type.ordinal();
 	}
 
-	private void toString(int severity, StringBuilder bld, int indent) {
-		if(getSeverity() < severity)
-			// Severity is transitive, so nothing to add here
+	private void appendLocationLabel(StringBuilder bld) {
+		if(locationLabel != null) {
+			bld.append(locationLabel);
 			return;
+		}
 
-		for(int idx = 0; idx < indent; ++idx)
-			bld.append(' ');
-
-		if(getMessage() == null && resourcePath == null && locationLabel == null) {
-			if(children == null) {
-				bld.append(getSeverityString());
-				return;
+		if(line > 0)
+			bld.append(line);
+		else
+			bld.append('-');
+
+		if(offset >= 0) {
+			bld.append('(');
+			bld.append(offset);
+			if(length >= 0) {
+				bld.append(',');
+				bld.append(length);
 			}
+			bld.append(')');
 		}
-		else {
-			bld.append(getSeverityString());
-			bld.append(':');
+	}
 
-			if(resourcePath != null) {
-				bld.append(resourcePath);
-				bld.append(':');
-			}
-			if(locationLabel != null) {
-				bld.append(locationLabel);
-				bld.append(':');
-			}
-			if(getMessage() != null) {
-				bld.append(getMessage());
-				bld.append(':');
-			}
+	private boolean hasLocation() {
+		return locationLabel != null || line != NO_LOCATION;
+	}
 
-			bld.setLength(bld.length() - 1);
-			if(children != null) {
-				bld.append('\n');
-				indent += 4;
-			}
+	/**
+	 * Appends the text of this diagnostic, without indentation or children, to the given builder.
+	 * The text is formatted as SEVERITY:RESOURCE_PATH:LOCATION:MESSAGE where absent parts are omitted.
+	 * 
+	 * @param bld
+	 *            The receiver of the text
+	 */
+	void appendText(StringBuilder bld) {
+		bld.append(getSeverityString());
+		if(resourcePath != null) {
+			bld.append(':');
+			bld.append(resourcePath);
 		}
-
-		if(children != null) {
-			int top = children.size();
-			int idx = 0;
-			for(;;) {
-				children.get(idx).toString(severity, bld, indent);
-				if(++idx >= top)
-					break;
-				bld.append('\n');
-			}
+		if(hasLocation()) {
+			bld.append(':');
+			appendLocationLabel(bld);
+		}
+		if(getMessage() != null) {
+			bld.append(':');
+			bld.append(getMessage());
 		}
 	}
 
+	/**
+	 * @return <code>true</code> if this diagnostic has a message, a resource path, or a location
+	 */
+	boolean hasText() {
+		return getMessage() != null || resourcePath != null || hasLocation();
+	}
+
 	@Override
 	public void toString(StringBuilder bld, int indent) {
-		toString(INFO, bld, indent);
+		DiagnosticRenderer.appendText(this, INFO, bld, indent, 0);
 	}
 }
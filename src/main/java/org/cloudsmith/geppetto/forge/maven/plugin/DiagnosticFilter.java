@@ -0,0 +1,149 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.cloudsmith.geppetto.validation.DiagnosticType;
+
+/**
+ * Decides what diagnostics to collect based on their severity and type. The filter is consulted
+ * before a diagnostic is converted so that rejected diagnostics are never allocated. The
+ * number of rejected diagnostics is counted per severity.
+ */
+public class DiagnosticFilter {
+	private final int minSeverity;
+
+	private final Set<DiagnosticType> includedTypes;
+
+	private final Set<DiagnosticType> excludedTypes;
+
+	private final int[] suppressed = new int[Diagnostic.FATAL + 1];
+
+	/**
+	 * Creates a new filter
+	 * 
+	 * @param minSeverity
+	 *            The minimum severity of accepted diagnostics
+	 * @param includedTypes
+	 *            The types to accept or <code>null</code> or empty to accept all types
+	 * @param excludedTypes
+	 *            The types to reject. Can be <code>null</code>
+	 */
+	public DiagnosticFilter(int minSeverity, DiagnosticType[] includedTypes, DiagnosticType[] excludedTypes) {
+		this.minSeverity = minSeverity;
+		this.includedTypes = toSet(includedTypes);
+		this.excludedTypes = toSet(excludedTypes);
+	}
+
+	private static Set<DiagnosticType> toSet(DiagnosticType[] types) {
+		if(types == null || types.length == 0)
+			return null;
+
+		Set<DiagnosticType> set = EnumSet.noneOf(DiagnosticType.class);
+		for(DiagnosticType type : types)
+			set.add(type);
+		return set;
+	}
+
+	/**
+	 * Checks if a diagnostic with the given severity and type should be collected. A diagnostic that
+	 * is not accepted is counted as suppressed.
+	 * 
+	 * @param severity
+	 *            The severity of the diagnostic
+	 * @param type
+	 *            The type of the diagnostic
+	 * @return <code>true</code> if the diagnostic should be collected
+	 */
+	public synchronized boolean accept(int severity, DiagnosticType type) {
+		if(severity >= minSeverity && acceptsType(type))
+			return true;
+
+		if(severity >= 0 && severity < suppressed.length)
+			++suppressed[severity];
+		return false;
+	}
+
+	/**
+	 * Checks if diagnostics of the given type can be accepted at all. This is useful when deciding if a
+	 * validation that only produces one type of diagnostics should run.
+	 * 
+	 * @param type
+	 *            The type to check
+	 * @return <code>true</code> unless the type is excluded or not included
+	 */
+	public boolean acceptsType(DiagnosticType type) {
+		if(includedTypes != null && !includedTypes.contains(type))
+			return false;
+		return excludedTypes == null || !excludedTypes.contains(type);
+	}
+
+	/**
+	 * Creates an informational diagnostic that summarizes what has been suppressed.
+	 * 
+	 * @param type
+	 *            The type of the summary diagnostic
+	 * @return The summary or <code>null</code> if nothing was suppressed
+	 */
+	public synchronized Diagnostic createSummary(DiagnosticType type) {
+		int total = getSuppressedCount();
+		if(total == 0)
+			return null;
+
+		StringBuilder bld = new StringBuilder();
+		bld.append("Suppressed ");
+		bld.append(total);
+		bld.append(total == 1
+				? " diagnostic ("
+				: " diagnostics (");
+		int idx = suppressed.length;
+		boolean first = true;
+		while(--idx >= 0) {
+			if(suppressed[idx] == 0)
+				continue;
+			if(first)
+				first = false;
+			else
+				bld.append(", ");
+			bld.append(suppressed[idx]);
+			bld.append(' ');
+			bld.append(Diagnostic.getSeverityString(idx));
+		}
+		bld.append(')');
+		return new Diagnostic(Diagnostic.INFO, type, bld.toString());
+	}
+
+	/**
+	 * @param severity
+	 *            The severity
+	 * @return The number of suppressed diagnostics with the given severity
+	 */
+	public synchronized int getSuppressedCount(int severity) {
+		return severity >= 0 && severity < suppressed.length
+				? suppressed[severity]
+				: 0;
+	}
+
+	/**
+	 * @return The total number of suppressed diagnostics
+	 */
+	public synchronized int getSuppressedCount() {
+		int total = 0;
+		for(int count : suppressed)
+			total += count;
+		return total;
+	}
+}
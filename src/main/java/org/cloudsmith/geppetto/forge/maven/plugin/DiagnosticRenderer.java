@@ -0,0 +1,235 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+
+/**
+ * Renders {@link Diagnostic} trees as text without recursion. Indent prefixes are cached and
+ * reused and log output is emitted in batches rather than one logger call per diagnostic.
+ */
+public class DiagnosticRenderer {
+	/**
+	 * Maximum number of lines sent to the logger in one call
+	 */
+	static final int MAX_LOG_BATCH = 256;
+
+	private static final int AVERAGE_LINE_LENGTH = 96;
+
+	private static volatile String[] indents = new String[] { "" };
+
+	/**
+	 * Appends the textual form of a diagnostic tree to the given builder. Diagnostics with a severity
+	 * lower than <code>minSeverity</code> are omitted along with their children. Each diagnostic that
+	 * has something to say ends up on a line of its own and the children of such diagnostics are
+	 * indented four positions.
+	 * 
+	 * @param root
+	 *            The diagnostic to render
+	 * @param minSeverity
+	 *            The minimum severity of the rendered diagnostics
+	 * @param bld
+	 *            The receiver of the text
+	 * @param indent
+	 *            The indentation of the root diagnostic
+	 * @param maxLines
+	 *            The maximum number of lines to render or &lt;= 0 for no limit. When the limit is
+	 *            exceeded, a final line with the number of omitted lines is added.
+	 */
+	public static void appendText(Diagnostic root, int minSeverity, StringBuilder bld, int indent, int maxLines) {
+		int[] depthIndent = new int[8];
+		depthIndent[0] = indent;
+		int lineCount = 0;
+		int omitted = 0;
+		DiagnosticTreeIterator itor = new DiagnosticTreeIterator(root);
+		while(itor.hasNext()) {
+			Diagnostic diag = itor.next();
+			if(diag.getSeverity() < minSeverity) {
+				// Severity is transitive, so nothing to add here
+				itor.pruneChildren();
+				continue;
+			}
+
+			int depth = itor.getDepth();
+			if(depth + 1 >= depthIndent.length)
+				depthIndent = Arrays.copyOf(depthIndent, depthIndent.length * 2);
+			int diagIndent = depthIndent[depth];
+
+			boolean hasChildren = !diag.getChildren().isEmpty();
+			boolean hasText = diag.hasText();
+			depthIndent[depth + 1] = hasText
+					? diagIndent + 4
+					: diagIndent;
+			if(!hasText && hasChildren)
+				continue;
+
+			if(maxLines > 0 && lineCount >= maxLines) {
+				++omitted;
+				continue;
+			}
+
+			if(lineCount++ > 0)
+				bld.append('\n');
+			bld.append(indent(diagIndent));
+			diag.appendText(bld);
+		}
+
+		if(omitted > 0) {
+			bld.append('\n');
+			bld.append(indent(depthIndent[0]));
+			bld.append("... and ");
+			bld.append(omitted);
+			bld.append(omitted == 1
+					? " more diagnostic"
+					: " more diagnostics");
+		}
+	}
+
+	/**
+	 * Returns the textual form of a diagnostic tree using {@link #appendText(Diagnostic, int, StringBuilder, int, int)}
+	 * with a builder that is sized after the expected number of lines.
+	 * 
+	 * @param root
+	 *            The diagnostic to render
+	 * @param minSeverity
+	 *            The minimum severity of the rendered diagnostics
+	 * @param maxLines
+	 *            The maximum number of lines to render or &lt;= 0 for no limit.
+	 * @return The rendered text
+	 */
+	public static String getText(Diagnostic root, int minSeverity, int maxLines) {
+		int expectedLines = maxLines > 0
+				? maxLines + 1
+				: 16;
+		StringBuilder bld = new StringBuilder(expectedLines * AVERAGE_LINE_LENGTH);
+		appendText(root, minSeverity, bld, 0, maxLines);
+		return bld.toString();
+	}
+
+	/**
+	 * Returns a string of <code>count</code> spaces. Strings are cached so that repeated requests
+	 * for the same indentation does not allocate.
+	 * 
+	 * @param count
+	 *            The number of spaces
+	 * @return A string with <code>count</code> spaces
+	 */
+	public static String indent(int count) {
+		String[] cache = indents;
+		if(count < cache.length)
+			return cache[count];
+
+		synchronized(DiagnosticRenderer.class) {
+			cache = indents;
+			if(count >= cache.length) {
+				String[] newCache = Arrays.copyOf(cache, Math.max(count + 1, cache.length * 2));
+				char[] spaces = new char[newCache.length];
+				Arrays.fill(spaces, ' ');
+				for(int idx = cache.length; idx < newCache.length; ++idx)
+					newCache[idx] = new String(spaces, 0, idx);
+				indents = cache = newCache;
+			}
+		}
+		return cache[count];
+	}
+
+	private static void log(Logger logger, int severity, String msg) {
+		switch(severity) {
+			case Diagnostic.DEBUG:
+				logger.debug(msg);
+				break;
+			case Diagnostic.WARNING:
+				logger.warn(msg);
+				break;
+			case Diagnostic.FATAL:
+			case Diagnostic.ERROR:
+				logger.error(msg);
+				break;
+			default:
+				logger.info(msg);
+		}
+	}
+
+	/**
+	 * The module that a diagnostic belongs to is the first segment of its resource path
+	 */
+	private static boolean sameModule(String path, String otherPath) {
+		if(path == otherPath)
+			return true;
+		if(path == null || otherPath == null)
+			return false;
+
+		int slash = path.indexOf('/');
+		return slash < 0
+				? path.equals(otherPath)
+				: otherPath.length() > slash && otherPath.charAt(slash) == '/' && path.regionMatches(0, otherPath, 0, slash);
+	}
+
+	/**
+	 * Logs the messages of a diagnostic tree. Consecutive messages that have the same severity and
+	 * concern the same module are sent to the logger as one multi line message.
+	 * 
+	 * @param logger
+	 *            The receiver of the messages
+	 * @param root
+	 *            The diagnostic to log
+	 */
+	public static void log(Logger logger, Diagnostic root) {
+		StringBuilder batch = new StringBuilder(MAX_LOG_BATCH * AVERAGE_LINE_LENGTH / 4);
+		int batchSeverity = -1;
+		int batchLines = 0;
+		String batchPath = null;
+
+		int[] depthIndent = new int[8];
+		DiagnosticTreeIterator itor = new DiagnosticTreeIterator(root);
+		while(itor.hasNext()) {
+			Diagnostic diag = itor.next();
+			int depth = itor.getDepth();
+			if(depth + 1 >= depthIndent.length)
+				depthIndent = Arrays.copyOf(depthIndent, depthIndent.length * 2);
+			int diagIndent = depthIndent[depth];
+
+			String msg = diag.getMessage();
+			if(msg == null) {
+				depthIndent[depth + 1] = diagIndent;
+				continue;
+			}
+			depthIndent[depth + 1] = diagIndent + 2;
+
+			int severity = diag.getSeverity();
+			String path = diag.getResourcePath();
+			if(batchLines > 0 &&
+					(severity != batchSeverity || batchLines >= MAX_LOG_BATCH || !sameModule(path, batchPath))) {
+				log(logger, batchSeverity, batch.toString());
+				batch.setLength(0);
+				batchLines = 0;
+			}
+			if(batchLines++ > 0)
+				batch.append('\n');
+			batchSeverity = severity;
+			batchPath = path;
+			batch.append(diag.getType().name());
+			batch.append(": ");
+			batch.append(indent(diagIndent));
+			batch.append(msg);
+		}
+		if(batchLines > 0)
+			log(logger, batchSeverity, batch.toString());
+	}
+
+	private DiagnosticRenderer() {
+	}
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.cloudsmith.geppetto.common.os.StreamUtil;
+
+/**
+ * Writes a {@link Diagnostic} tree to a report. Implementations stream the report to the
+ * writer while traversing the tree so that the document is never held in memory as a whole.
+ */
+public abstract class DiagnosticReportWriter {
+	static final int BUFFER_SIZE = 0x10000;
+
+	/**
+	 * Writes the report to the given file using a buffered UTF-8 writer.
+	 * 
+	 * @param diagnostic
+	 *            The root of the diagnostic tree
+	 * @param name
+	 *            The name of the action that produced the diagnostic
+	 * @param file
+	 *            The file to write
+	 * @throws IOException
+	 */
+	public void write(Diagnostic diagnostic, String name, File file) throws IOException {
+		Writer out = new BufferedWriter(new OutputStreamWriter(
+			new FileOutputStream(file), AbstractForgeMojo.UTF_8), BUFFER_SIZE);
+		try {
+			write(diagnostic, name, out);
+			out.flush();
+		}
+		finally {
+			StreamUtil.close(out);
+		}
+	}
+
+	/**
+	 * Writes the report to the given writer. The writer is not closed.
+	 * 
+	 * @param diagnostic
+	 *            The root of the diagnostic tree
+	 * @param name
+	 *            The name of the action that produced the diagnostic
+	 * @param out
+	 *            The writer that receives the report
+	 * @throws IOException
+	 */
+	public abstract void write(Diagnostic diagnostic, String name, Writer out) throws IOException;
+}
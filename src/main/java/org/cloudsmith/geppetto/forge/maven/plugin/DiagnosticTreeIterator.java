@@ -0,0 +1,100 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over a {@link Diagnostic} and all its descendants in depth first pre-order without
+ * using recursion. The depth of the last returned diagnostic is available from {@link #getDepth()}
+ * and its children can be excluded from the iteration using {@link #pruneChildren()}.
+ */
+public class DiagnosticTreeIterator implements Iterator<Diagnostic> {
+	private final List<Iterator<Diagnostic>> stack = new ArrayList<Iterator<Diagnostic>>();
+
+	private Diagnostic root;
+
+	private Diagnostic current;
+
+	private boolean pruned;
+
+	public DiagnosticTreeIterator(Diagnostic root) {
+		this.root = root;
+	}
+
+	/**
+	 * @return The depth of the diagnostic last returned by {@link #next()}. The root has depth 0.
+	 */
+	public int getDepth() {
+		return stack.size();
+	}
+
+	@Override
+	public boolean hasNext() {
+		if(root != null)
+			return true;
+
+		pushCurrentChildren();
+		int top = stack.size();
+		while(--top >= 0) {
+			if(stack.get(top).hasNext())
+				return true;
+			stack.remove(top);
+		}
+		return false;
+	}
+
+	@Override
+	public Diagnostic next() {
+		if(root != null) {
+			current = root;
+			root = null;
+			pruned = false;
+			return current;
+		}
+
+		if(!hasNext())
+			throw new NoSuchElementException();
+
+		current = stack.get(stack.size() - 1).next();
+		pruned = false;
+		return current;
+	}
+
+	/**
+	 * Excludes the children of the diagnostic last returned by {@link #next()} from the iteration.
+	 */
+	public void pruneChildren() {
+		pruned = true;
+	}
+
+	private void pushCurrentChildren() {
+		if(current != null) {
+			if(!pruned) {
+				List<Diagnostic> children = current.getChildren();
+				if(!children.isEmpty())
+					stack.add(children.iterator());
+			}
+			current = null;
+		}
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decides if a file or directory name matches one of a set of exclude patterns, such as
+ * <tt>.git</tt>, <tt>*~</tt>, or <tt>.#*</tt>. The patterns are globs where <tt>*</tt> matches any
+ * sequence of characters and <tt>?</tt> matches a single character. A pattern always matches the
+ * whole name.
+ * <p>
+ * The patterns are sorted by shape when the matcher is created. Literal names are looked up in a
+ * hash set, <tt>*suffix</tt> and <tt>prefix*</tt> patterns are plain string comparisons, and only the
+ * remaining patterns are matched character by character. Unlike a regular expression, no
+ * {@link java.util.regex.Matcher} is created per name. A matcher is immutable and thread safe.
+ * </p>
+ */
+public class ExcludeMatcher {
+	private static boolean hasWildcard(String glob, int start, int end) {
+		for(int idx = start; idx < end; ++idx) {
+			char c = glob.charAt(idx);
+			if(c == '*' || c == '?')
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Matches a name against a glob without backtracking more than to the last <tt>*</tt>, which
+	 * is enough since a later <tt>*</tt> can absorb whatever an earlier one would have.
+	 */
+	private static boolean matchGlob(String glob, String name) {
+		int g = 0;
+		int n = 0;
+		int star = -1;
+		int starMatch = 0;
+		int globLength = glob.length();
+		int nameLength = name.length();
+		while(n < nameLength) {
+			if(g < globLength) {
+				char c = glob.charAt(g);
+				if(c == '*') {
+					star = g++;
+					starMatch = n;
+					continue;
+				}
+				if(c == '?' || c == name.charAt(n)) {
+					++g;
+					++n;
+					continue;
+				}
+			}
+			if(star < 0)
+				return false;
+			// Let the last star absorb one more character and retry
+			g = star + 1;
+			n = ++starMatch;
+		}
+		while(g < globLength && glob.charAt(g) == '*')
+			++g;
+		return g == globLength;
+	}
+
+	private final Set<String> literals = new HashSet<String>();
+
+	private final List<String> suffixes = new ArrayList<String>();
+
+	private final List<String> prefixes = new ArrayList<String>();
+
+	private final List<String> globs = new ArrayList<String>();
+
+	private final List<String> patterns;
+
+	/**
+	 * @param patterns
+	 *            The exclude patterns
+	 */
+	public ExcludeMatcher(Collection<String> patterns) {
+		this.patterns = new ArrayList<String>(patterns);
+		for(String pattern : patterns) {
+			int length = pattern.length();
+			if(!hasWildcard(pattern, 0, length))
+				literals.add(pattern);
+			else if(length > 1 && pattern.charAt(0) == '*' && !hasWildcard(pattern, 1, length))
+				suffixes.add(pattern.substring(1));
+			else if(length > 1 && pattern.charAt(length - 1) == '*' && !hasWildcard(pattern, 0, length - 1))
+				prefixes.add(pattern.substring(0, length - 1));
+			else
+				globs.add(pattern);
+		}
+	}
+
+	/**
+	 * @return The patterns of this matcher in the order they were given
+	 */
+	public List<String> getPatterns() {
+		return patterns;
+	}
+
+	/**
+	 * @param name
+	 *            A file or directory name, without path
+	 * @return <code>true</code> if the name matches one of the patterns
+	 */
+	public boolean matches(String name) {
+		if(literals.contains(name))
+			return true;
+		for(int idx = 0; idx < suffixes.size(); ++idx)
+			if(name.endsWith(suffixes.get(idx)))
+				return true;
+		for(int idx = 0; idx < prefixes.size(); ++idx)
+			if(name.startsWith(prefixes.get(idx)))
+				return true;
+		for(int idx = 0; idx < globs.size(); ++idx)
+			if(matchGlob(globs.get(idx), name))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Creates a matcher that matches what this matcher matches and the given patterns.
+	 * 
+	 * @param morePatterns
+	 *            The patterns to add
+	 * @return The new matcher, or this matcher if there are no patterns to add
+	 */
+	public ExcludeMatcher with(Collection<String> morePatterns) {
+		if(morePatterns.isEmpty())
+			return this;
+		List<String> all = new ArrayList<String>(patterns);
+		all.addAll(morePatterns);
+		return new ExcludeMatcher(all);
+	}
+}
@@ -0,0 +1,33 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.io.IOException;
+
+/**
+ * A single call to the Forge that can be executed by a {@link ForgeCallExecutor}. A call may be
+ * executed more than once so it must not depend on state that is consumed by a previous attempt.
+ *
+ * @param <T>
+ *            The type of the call result
+ */
+public interface ForgeCall<T> {
+	/**
+	 * Performs the call
+	 *
+	 * @return The result of the call
+	 * @throws IOException
+	 */
+	T call() throws IOException;
+}
@@ -0,0 +1,241 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+import org.cloudsmith.geppetto.validation.DiagnosticType;
+
+/**
+ * Executes calls to the Forge according to a {@link RetryPolicy} and guarded by a
+ * {@link CircuitBreaker}. Each attempt is also paced by a {@link TokenBucket} and admitted by an
+ * {@link AdaptiveConcurrencyLimiter}. The number of retries is counted per operation so that it can
+ * be reported. The latency of each attempt, excluding the time spent waiting for the rate limit,
+ * the concurrency limit and between retries, can be recorded in a {@link LatencyRecorder}.
+ */
+public class ForgeCallExecutor {
+	private final RetryPolicy retryPolicy;
+
+	private final CircuitBreaker circuitBreaker;
+
+	private final TokenBucket rateLimiter;
+
+	private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+	private final Map<String, Integer> retries = new TreeMap<String, Integer>();
+
+	private int throttledCount;
+
+	private LatencyRecorder latencyRecorder;
+
+	/**
+	 * Creates an executor that neither limits the rate nor the concurrency of calls
+	 */
+	public ForgeCallExecutor(RetryPolicy retryPolicy, CircuitBreaker circuitBreaker) {
+		this(retryPolicy, circuitBreaker, new TokenBucket(0, 1), new AdaptiveConcurrencyLimiter(
+			Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE));
+	}
+
+	public ForgeCallExecutor(RetryPolicy retryPolicy, CircuitBreaker circuitBreaker, TokenBucket rateLimiter,
+			AdaptiveConcurrencyLimiter concurrencyLimiter) {
+		this.retryPolicy = retryPolicy;
+		this.circuitBreaker = circuitBreaker;
+		this.rateLimiter = rateLimiter;
+		this.concurrencyLimiter = concurrencyLimiter;
+	}
+
+	/**
+	 * Creates a diagnostic that summarizes the retries and the calls that were rejected by the
+	 * circuit breaker.
+	 *
+	 * @param type
+	 *            The type of the summary diagnostic
+	 * @return The summary or <code>null</code> if there were no retries and no rejected calls
+	 */
+	public synchronized Diagnostic createSummary(DiagnosticType type) {
+		int total = getRetryCount();
+		int rejected = circuitBreaker.getRejectedCount();
+		if(total == 0 && rejected == 0 && throttledCount == 0)
+			return null;
+
+		StringBuilder bld = new StringBuilder();
+		bld.append("Retried ");
+		bld.append(total);
+		bld.append(" Forge call(s)");
+		if(total > 0) {
+			bld.append(" (");
+			boolean first = true;
+			for(Map.Entry<String, Integer> entry : retries.entrySet()) {
+				if(first)
+					first = false;
+				else
+					bld.append(", ");
+				bld.append(entry.getKey());
+				bld.append(": ");
+				bld.append(entry.getValue());
+			}
+			bld.append(')');
+		}
+		if(throttledCount > 0) {
+			bld.append(". The Forge throttled ");
+			bld.append(throttledCount);
+			bld.append(" call(s) and the concurrency limit was lowered to ");
+			bld.append(concurrencyLimiter.getLimit());
+		}
+		if(rejected > 0) {
+			bld.append(". ");
+			bld.append(rejected);
+			bld.append(" call(s) were rejected while the Forge was unavailable");
+		}
+		return new Diagnostic(rejected > 0
+				? Diagnostic.WARNING
+				: Diagnostic.INFO, type, bld.toString());
+	}
+
+	/**
+	 * Executes the call, retrying it as long as the retry policy allows.
+	 *
+	 * @param operation
+	 *            The name of the operation, used when counting retries
+	 * @param idempotent
+	 *            <code>true</code> if the call can be repeated without side effects
+	 * @param call
+	 *            The call to execute
+	 * @return The result of the call
+	 * @throws IOException
+	 *             The failure of the last attempt or {@link CircuitBreaker.OpenException} if the
+	 *             circuit is open
+	 */
+	public <T> T execute(String operation, boolean idempotent, ForgeCall<T> call) throws IOException {
+		for(int attempt = 0;; ++attempt) {
+			boolean trial = circuitBreaker.acquire();
+			boolean settled = false;
+			boolean throttled = false;
+			IOException failure;
+			try {
+				rateLimiter.acquire();
+				concurrencyLimiter.acquire();
+				long start = System.nanoTime();
+				try {
+					T result = call.call();
+					circuitBreaker.recordSuccess();
+					settled = true;
+					return result;
+				}
+				catch(IOException e) {
+					failure = e;
+					throttled = isThrottled(e);
+					if(retryPolicy.isTransient(e))
+						circuitBreaker.recordFailure();
+					else
+						// The Forge gave a definite answer so it is still healthy
+						circuitBreaker.recordSuccess();
+					settled = true;
+				}
+				catch(RuntimeException e) {
+					circuitBreaker.recordFailure();
+					settled = true;
+					throw e;
+				}
+				finally {
+					long latency = System.nanoTime() - start;
+					concurrencyLimiter.release(operation, latency, throttled);
+					LatencyRecorder recorder = getLatencyRecorder();
+					if(recorder != null)
+						recorder.record(latency);
+				}
+			}
+			finally {
+				// No outcome was recorded, e.g. when interrupted while waiting for a permit
+				if(!settled && trial)
+					circuitBreaker.cancelTrial();
+			}
+
+			synchronized(this) {
+				if(throttled)
+					++throttledCount;
+			}
+			if(attempt >= retryPolicy.getMaxRetries() || !retryPolicy.isRetryable(failure, idempotent))
+				throw failure;
+
+			try {
+				Thread.sleep(retryPolicy.getDelay(attempt));
+			}
+			catch(InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				InterruptedIOException iioe = new InterruptedIOException("Interrupted while waiting to retry " +
+						operation);
+				iioe.initCause(failure);
+				throw iioe;
+			}
+			synchronized(this) {
+				Integer count = retries.get(operation);
+				retries.put(operation, count == null
+						? Integer.valueOf(1)
+						: Integer.valueOf(count.intValue() + 1));
+			}
+		}
+	}
+
+	public CircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+		return concurrencyLimiter;
+	}
+
+	public synchronized LatencyRecorder getLatencyRecorder() {
+		return latencyRecorder;
+	}
+
+	/**
+	 * @return The total number of retries
+	 */
+	public synchronized int getRetryCount() {
+		int total = 0;
+		for(Integer count : retries.values())
+			total += count.intValue();
+		return total;
+	}
+
+	/**
+	 * @return The number of calls that the Forge responded to with 429 or 503
+	 */
+	public synchronized int getThrottledCount() {
+		return throttledCount;
+	}
+
+	private boolean isThrottled(IOException e) {
+		if(!(e instanceof HttpResponseException))
+			return false;
+		int status = ((HttpResponseException) e).getStatusCode();
+		return status == HttpStatus.SC_SERVICE_UNAVAILABLE || status == RetryPolicy.SC_TOO_MANY_REQUESTS;
+	}
+
+	/**
+	 * Sets the recorder that receives the latency of each attempt
+	 * 
+	 * @param latencyRecorder
+	 *            The recorder or <code>null</code> to not record latencies
+	 */
+	public synchronized void setLatencyRecorder(LatencyRecorder latencyRecorder) {
+		this.latencyRecorder = latencyRecorder;
+	}
+}
@@ -0,0 +1,301 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the blocking Forge calls of one phase concurrently and waits for all of them before the
+ * phase ends. Each task runs on a virtual thread of its own when the JVM has them (Java 21 and
+ * later). Older JVMs get a pool of platform threads, one per permitted task. When a task fails,
+ * the tasks that have not completed are cancelled and {@link #join()} throws the failure once
+ * they have terminated. {@link #close()} also waits for the tasks to terminate, so no call
+ * outlives the phase that made it.
+ * <p>
+ * A scope is used by one thread:
+ * </p>
+ * 
+ * <pre>
+ * ForgeTaskScope scope = new ForgeTaskScope(&quot;resolve&quot;, 16, true);
+ * try {
+ * 	Subtask&lt;Release&gt; release = scope.fork(task);
+ * 	scope.join();
+ * 	release.get();
+ * }
+ * finally {
+ * 	scope.close();
+ * }
+ * </pre>
+ */
+public class ForgeTaskScope {
+	/**
+	 * The handle of a forked task.
+	 * 
+	 * @param <T>
+	 *            The type of the result
+	 */
+	public static class Subtask<T> {
+		private final Future<T> future;
+
+		Subtask(Future<T> future) {
+			this.future = future;
+		}
+
+		/**
+		 * @return The result of the task
+		 * @throws IllegalStateException
+		 *             if the scope hasn't been joined or the task didn't complete successfully
+		 */
+		public T get() {
+			if(!future.isDone())
+				throw new IllegalStateException("The scope has not been joined");
+			try {
+				return future.get();
+			}
+			catch(InterruptedException e) {
+				// Not reached since the future is done
+				throw new IllegalStateException(e);
+			}
+			catch(ExecutionException e) {
+				throw new IllegalStateException("The task failed", e.getCause());
+			}
+			catch(CancellationException e) {
+				throw new IllegalStateException("The task was cancelled", e);
+			}
+		}
+	}
+
+	private static final ThreadFactory VIRTUAL_THREAD_FACTORY = createVirtualThreadFactory();
+
+	private static ThreadFactory createVirtualThreadFactory() {
+		// Thread.ofVirtual().name("forge-io-", 0).factory() without requiring Java 21 to compile
+		try {
+			Method ofVirtual = Thread.class.getMethod("ofVirtual");
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			Object builder = ofVirtual.invoke(null);
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "forge-io-", 0L);
+			return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+		}
+		catch(Exception e) {
+			// Not available or, on Java 19 and 20, a preview feature that hasn't been enabled
+			return null;
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the JVM supports virtual threads
+	 */
+	public static boolean isVirtualThreadsAvailable() {
+		return VIRTUAL_THREAD_FACTORY != null;
+	}
+
+	private final String phase;
+
+	private final ExecutorService executor;
+
+	private final Semaphore permits;
+
+	private final boolean virtual;
+
+	private final List<Future<?>> futures = new ArrayList<Future<?>>();
+
+	private Throwable failure;
+
+	/**
+	 * @param phase
+	 *            The name of the phase. Used for naming platform threads
+	 * @param parallelism
+	 *            The number of tasks that may run at the same time
+	 * @param useVirtualThreads
+	 *            <code>false</code> to use platform threads even when virtual threads are available
+	 */
+	public ForgeTaskScope(final String phase, int parallelism, boolean useVirtualThreads) {
+		this.phase = phase;
+		parallelism = Math.max(1, parallelism);
+		virtual = useVirtualThreads && isVirtualThreadsAvailable();
+		if(virtual) {
+			// A virtual thread per task. Waiting for a permit costs next to nothing
+			executor = new ThreadPoolExecutor(
+				0, Integer.MAX_VALUE, 0, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), VIRTUAL_THREAD_FACTORY);
+			permits = new Semaphore(parallelism);
+		}
+		else {
+			final AtomicInteger threadCount = new AtomicInteger();
+			executor = new ThreadPoolExecutor(
+				parallelism, parallelism, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "forge-" + phase + '-' + threadCount.getAndIncrement());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+			permits = null;
+		}
+	}
+
+	/**
+	 * Cancels the tasks that have not completed, waits until they have terminated, and releases the
+	 * threads of the scope. Must be called when the scope is no longer needed, typically in a
+	 * <code>finally</code> block.
+	 */
+	public void close() {
+		terminate();
+	}
+
+	private synchronized void failed(Throwable t) {
+		if(failure != null)
+			return;
+		failure = t;
+		for(Future<?> future : futures)
+			future.cancel(true);
+	}
+
+	/**
+	 * Starts a task.
+	 * 
+	 * @param task
+	 *            The task to run
+	 * @return The handle that yields the result once the scope has been {@link #join() joined}
+	 */
+	public <T> Subtask<T> fork(final Callable<T> task) {
+		Future<T> future = executor.submit(new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				if(permits != null)
+					permits.acquire();
+				try {
+					return task.call();
+				}
+				catch(Throwable t) {
+					failed(t);
+					if(t instanceof Exception)
+						throw (Exception) t;
+					throw (Error) t;
+				}
+				finally {
+					if(permits != null)
+						permits.release();
+				}
+			}
+		});
+		synchronized(this) {
+			futures.add(future);
+			if(failure != null)
+				future.cancel(true);
+		}
+		return new Subtask<T>(future);
+	}
+
+	public String getPhase() {
+		return phase;
+	}
+
+	/**
+	 * Cancels the tasks that have not completed and waits until all threads of the scope have
+	 * terminated. A cancelled task may still be running its call until it notices the interrupt.
+	 * Interrupts of the calling thread don't end the wait but are restored afterwards.
+	 */
+	private void terminate() {
+		synchronized(this) {
+			for(Future<?> future : futures)
+				future.cancel(true);
+		}
+		executor.shutdownNow();
+		boolean interrupted = false;
+		while(!executor.isTerminated()) {
+			try {
+				executor.awaitTermination(1, TimeUnit.SECONDS);
+			}
+			catch(InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if(interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * @return <code>true</code> if the tasks of this scope run on virtual threads
+	 */
+	public boolean isVirtual() {
+		return virtual;
+	}
+
+	/**
+	 * Waits until all forked tasks have completed or until one of them fails. After a failure, the
+	 * remaining tasks are cancelled and waited for before the failure is thrown, and no more tasks
+	 * can be forked.
+	 * 
+	 * @throws IOException
+	 *             the failure of the first task that failed. Failures that are neither I/O nor
+	 *             runtime exceptions are wrapped
+	 * @throws InterruptedIOException
+	 *             if the calling thread is interrupted while waiting. The tasks are cancelled
+	 */
+	public void join() throws IOException {
+		List<Future<?>> joined;
+		synchronized(this) {
+			joined = new ArrayList<Future<?>>(futures);
+		}
+		for(Future<?> future : joined) {
+			try {
+				future.get();
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				failed(e);
+				throw new InterruptedIOException("Interrupted while waiting for the " + phase + " tasks");
+			}
+			catch(ExecutionException e) {
+				// Recorded as the failure of the scope unless an earlier task failed first
+			}
+			catch(CancellationException e) {
+				// Cancelled since another task failed
+			}
+		}
+
+		Throwable t;
+		synchronized(this) {
+			t = failure;
+		}
+		if(t == null)
+			return;
+		terminate();
+		if(t instanceof IOException)
+			throw (IOException) t;
+		if(t instanceof RuntimeException)
+			throw (RuntimeException) t;
+		if(t instanceof Error)
+			throw (Error) t;
+		throw new IOException("A " + phase + " task failed: " + t.getMessage(), t);
+	}
+}
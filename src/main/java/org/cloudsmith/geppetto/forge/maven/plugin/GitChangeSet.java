@@ -0,0 +1,154 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.cloudsmith.geppetto.common.os.StreamUtil;
+
+/**
+ * The files that differ between a git ref and the working tree, including files that git
+ * doesn't track yet. Paths are relative to the directory that the change set was read for and
+ * always use '/' as separator.
+ */
+public class GitChangeSet {
+	/**
+	 * Finds the module that contains the given path
+	 * 
+	 * @param path
+	 *            A path using '/' as separator
+	 * @param modulePaths
+	 *            The paths of the modules, relative to the same directory as <code>path</code>. An
+	 *            empty path denotes a module at the top of that directory
+	 * @return The innermost module path that contains <code>path</code> or <code>null</code> if
+	 *         no module contains it
+	 */
+	public static String getContainingModule(String path, Set<String> modulePaths) {
+		for(String parent = path;; parent = parent.substring(0, parent.lastIndexOf('/'))) {
+			if(modulePaths.contains(parent))
+				return parent;
+			if(parent.indexOf('/') < 0)
+				return modulePaths.contains("")
+						? ""
+						: null;
+		}
+	}
+
+	/**
+	 * Reads the changes by running <tt>git</tt> in the given directory. Only changes below the
+	 * directory are included.
+	 * 
+	 * @param dir
+	 *            A directory in the working tree
+	 * @param sinceRef
+	 *            The ref to compare with, i.e. a commit id, branch, or tag
+	 * @return The change set
+	 * @throws IOException
+	 *             if git could not be run or the ref is unknown
+	 */
+	public static GitChangeSet read(File dir, String sinceRef) throws IOException {
+		Set<String> paths = new LinkedHashSet<String>();
+		runGit(dir, paths, "diff", "-z", "--name-only", "--relative", "--no-renames", sinceRef, "--");
+		runGit(dir, paths, "ls-files", "-z", "--others", "--exclude-standard");
+		return new GitChangeSet(paths);
+	}
+
+	private static void runGit(File dir, Set<String> receiver, String... args) throws IOException {
+		String[] command = new String[args.length + 1];
+		command[0] = "git";
+		System.arraycopy(args, 0, command, 1, args.length);
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.directory(dir);
+		builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		Process process = builder.start();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+			process.getInputStream(), AbstractForgeMojo.UTF_8));
+		try {
+			// Paths are NUL terminated and never quoted when -z is used
+			StringBuilder path = new StringBuilder();
+			int c;
+			while((c = reader.read()) >= 0) {
+				if(c == 0) {
+					if(path.length() > 0)
+						receiver.add(path.toString());
+					path.setLength(0);
+				}
+				else
+					path.append((char) c);
+			}
+			if(path.length() > 0)
+				receiver.add(path.toString());
+		}
+		finally {
+			StreamUtil.close(reader);
+		}
+
+		int exitCode;
+		try {
+			exitCode = process.waitFor();
+		}
+		catch(InterruptedException e) {
+			process.destroy();
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for git");
+		}
+		if(exitCode != 0)
+			throw new IOException("git " + args[0] + " exited with " + exitCode + " in " + dir.getAbsolutePath());
+	}
+
+	private final Set<String> paths;
+
+	/**
+	 * @param paths
+	 *            The changed paths
+	 */
+	public GitChangeSet(Collection<String> paths) {
+		this.paths = Collections.unmodifiableSet(new LinkedHashSet<String>(paths));
+	}
+
+	/**
+	 * Maps the changed paths to the modules that contain them. Changes outside of all modules
+	 * don't affect any module.
+	 * 
+	 * @param modulePaths
+	 *            The paths of the modules, relative to the same directory as the changes. An empty
+	 *            path denotes a module at the top of that directory
+	 * @return The module paths that contain at least one changed path
+	 */
+	public Set<String> getChangedModules(Collection<String> modulePaths) {
+		Set<String> modules = new HashSet<String>(modulePaths);
+		Set<String> changed = new LinkedHashSet<String>();
+		for(String path : paths) {
+			String module = getContainingModule(path, modules);
+			if(module != null)
+				changed.add(module);
+		}
+		return changed;
+	}
+
+	/**
+	 * @return The changed paths
+	 */
+	public Set<String> getPaths() {
+		return paths;
+	}
+}
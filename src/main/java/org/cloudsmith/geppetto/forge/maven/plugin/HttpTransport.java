@@ -0,0 +1,68 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Timeouts for the connections that the plug-in opens to the Forge by itself, i.e. OAuth token
+ * requests and release listings. Such connections are created with {@link #open(URL)}. Calls made
+ * through the Forge client are not affected.
+ */
+public class HttpTransport {
+	/**
+	 * A connect timeout of 30 seconds and a read timeout of two minutes
+	 */
+	public static final HttpTransport DEFAULT = new HttpTransport(30000, 120000);
+
+	private final int connectTimeout;
+
+	private final int readTimeout;
+
+	/**
+	 * @param connectTimeout
+	 *            Connect timeout in milliseconds. Zero means no timeout
+	 * @param readTimeout
+	 *            Read timeout in milliseconds. Zero means no timeout
+	 */
+	public HttpTransport(int connectTimeout, int readTimeout) {
+		this.connectTimeout = Math.max(0, connectTimeout);
+		this.readTimeout = Math.max(0, readTimeout);
+	}
+
+	public int getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	public int getReadTimeout() {
+		return readTimeout;
+	}
+
+	/**
+	 * Opens a connection to the given URL using the timeouts of this transport
+	 *
+	 * @param url
+	 *            The URL to connect to
+	 * @return The connection, not yet connected
+	 * @throws IOException
+	 */
+	public HttpURLConnection open(URL url) throws IOException {
+		HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+		conn.setConnectTimeout(connectTimeout);
+		conn.setReadTimeout(readTimeout);
+		return conn;
+	}
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes all diagnostics that carry a message as test cases of one JUnit XML test suite. Diagnostics
+ * with severity {@link Diagnostic#ERROR} or higher are reported as failures.
+ */
+public class JUnitReportWriter extends DiagnosticReportWriter {
+	private static String getTestName(Diagnostic diagnostic) {
+		String resourcePath = diagnostic.getResourcePath();
+		if(resourcePath == null)
+			return diagnostic.getMessage();
+
+		String label = diagnostic.getLocationLabel();
+		return label == null
+				? resourcePath
+				: resourcePath + ':' + label;
+	}
+
+	private static boolean isFailure(Diagnostic diagnostic) {
+		return diagnostic.getSeverity() >= Diagnostic.ERROR;
+	}
+
+	/**
+	 * Writes one test case with the text of the diagnostic itself. Children are written as test cases
+	 * of their own, so they are not repeated in the text.
+	 */
+	private static void writeTestCase(XMLStreamWriter xml, Diagnostic diagnostic, StringBuilder text)
+			throws XMLStreamException {
+		text.setLength(0);
+		diagnostic.appendText(text);
+		xml.writeStartElement("testcase");
+		xml.writeAttribute("classname", diagnostic.getType().name());
+		xml.writeAttribute("name", getTestName(diagnostic));
+		if(isFailure(diagnostic)) {
+			xml.writeStartElement("failure");
+			xml.writeAttribute("type", diagnostic.getSeverityString());
+			xml.writeAttribute("message", diagnostic.getMessage());
+			xml.writeCharacters(text.toString());
+			xml.writeEndElement();
+		}
+		else {
+			xml.writeStartElement("system-out");
+			xml.writeCharacters(text.toString());
+			xml.writeEndElement();
+		}
+		xml.writeEndElement();
+	}
+
+	@Override
+	public void write(Diagnostic diagnostic, String name, Writer out) throws IOException {
+		// The suite attributes must be known up front so an initial pass counts the cases
+		int tests = 0;
+		int failures = 0;
+		DiagnosticTreeIterator itor = new DiagnosticTreeIterator(diagnostic);
+		while(itor.hasNext()) {
+			Diagnostic diag = itor.next();
+			if(diag.getMessage() != null) {
+				++tests;
+				if(isFailure(diag))
+					++failures;
+			}
+		}
+
+		try {
+			XMLStreamWriter xml = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
+			xml.writeStartDocument(AbstractForgeMojo.UTF_8.name(), "1.0");
+			xml.writeStartElement("testsuite");
+			xml.writeAttribute("name", name);
+			xml.writeAttribute("tests", Integer.toString(tests));
+			xml.writeAttribute("failures", Integer.toString(failures));
+			xml.writeAttribute("errors", "0");
+			xml.writeAttribute("skipped", "0");
+
+			StringBuilder text = new StringBuilder();
+			itor = new DiagnosticTreeIterator(diagnostic);
+			while(itor.hasNext()) {
+				Diagnostic diag = itor.next();
+				if(diag.getMessage() != null)
+					writeTestCase(xml, diag, text);
+			}
+			xml.writeEndElement();
+			xml.writeEndDocument();
+			xml.flush();
+		}
+		catch(XMLStreamException e) {
+			throw new IOException("Unable to write JUnit report: " + e.getMessage(), e);
+		}
+	}
+}
@@ -0,0 +1,270 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs jobs on a fixed number of worker threads. Jobs are queued per repository and the workers
+ * take jobs from the repositories in turn, so a burst of jobs for one repository doesn't delay the
+ * others. Only the latest job for a key, typically a repository and branch, matters:
+ * <ul>
+ * <li>A queued job is dropped when a newer job with the same key is submitted. Its future is
+ * cancelled.</li>
+ * <li>A running job is {@link Job#cancel() asked to stop} when a newer job with the same key is
+ * submitted.</li>
+ * </ul>
+ */
+public class JobScheduler {
+	/**
+	 * A unit of work.
+	 * 
+	 * @param <R>
+	 *            The type of the result
+	 */
+	public static abstract class Job<R> implements Callable<R> {
+		private final String repository;
+
+		private final String key;
+
+		private volatile boolean superseded;
+
+		/**
+		 * @param repository
+		 *            The repository that the job works on. Used to share the workers fairly
+		 * @param key
+		 *            Jobs with equal keys supersede each other
+		 */
+		public Job(String repository, String key) {
+			this.repository = repository;
+			this.key = key;
+		}
+
+		/**
+		 * Asks the job to stop since a newer job with the same key has been submitted. Called from
+		 * another thread while the job is running. The default does nothing, so the job runs to
+		 * completion.
+		 */
+		protected void cancel() {
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		public String getRepository() {
+			return repository;
+		}
+
+		/**
+		 * @return <code>true</code> if a newer job with the same key has been submitted
+		 */
+		public boolean isSuperseded() {
+			return superseded;
+		}
+	}
+
+	private static class Entry<R> extends FutureTask<R> {
+		final Job<R> job;
+
+		Entry(Job<R> job) {
+			super(job);
+			this.job = job;
+		}
+	}
+
+	private final List<Thread> workers;
+
+	// The queues of the repositories that are in turns. Guarded by this
+	private final Map<String, Deque<Entry<?>>> queues = new LinkedHashMap<String, Deque<Entry<?>>>();
+
+	private final Deque<String> turns = new ArrayDeque<String>();
+
+	private final Map<String, Entry<?>> queuedByKey = new HashMap<String, Entry<?>>();
+
+	private final Map<String, Entry<?>> runningByKey = new HashMap<String, Entry<?>>();
+
+	private boolean shutdown;
+
+	private final AtomicInteger coalescedCount = new AtomicInteger();
+
+	private final AtomicInteger cancelledCount = new AtomicInteger();
+
+	/**
+	 * Creates the scheduler and starts its workers.
+	 * 
+	 * @param workerCount
+	 *            The number of jobs that may run at the same time
+	 */
+	public JobScheduler(int workerCount) {
+		workers = new ArrayList<Thread>(workerCount);
+		for(int idx = 0; idx < workerCount; ++idx) {
+			Thread worker = new Thread("forge-job-worker-" + idx) {
+				@Override
+				public void run() {
+					work();
+				}
+			};
+			worker.setDaemon(true);
+			workers.add(worker);
+			worker.start();
+		}
+	}
+
+	/**
+	 * @return The number of running jobs that were asked to stop since they were superseded
+	 */
+	public int getCancelledCount() {
+		return cancelledCount.get();
+	}
+
+	/**
+	 * @return The number of queued jobs that were dropped since they were superseded
+	 */
+	public int getCoalescedCount() {
+		return coalescedCount.get();
+	}
+
+	/**
+	 * @return The number of jobs waiting for a worker
+	 */
+	public synchronized int getQueuedCount() {
+		return queuedByKey.size();
+	}
+
+	private synchronized Entry<?> next() throws InterruptedException {
+		for(;;) {
+			while(!shutdown && turns.isEmpty())
+				wait();
+			if(shutdown)
+				return null;
+
+			String repository = turns.removeFirst();
+			Deque<Entry<?>> queue = queues.get(repository);
+			if(queue.isEmpty()) {
+				// All jobs of the repository were superseded by jobs for another repository
+				queues.remove(repository);
+				continue;
+			}
+			Entry<?> entry = queue.removeFirst();
+			if(queue.isEmpty())
+				queues.remove(repository);
+			else
+				turns.addLast(repository);
+			queuedByKey.remove(entry.job.getKey());
+			runningByKey.put(entry.job.getKey(), entry);
+			return entry;
+		}
+	}
+
+	/**
+	 * Stops the workers. Queued jobs are cancelled and running jobs are asked to stop.
+	 */
+	public void shutdown() {
+		List<Entry<?>> dropped = new ArrayList<Entry<?>>();
+		synchronized(this) {
+			shutdown = true;
+			dropped.addAll(queuedByKey.values());
+			queues.clear();
+			turns.clear();
+			queuedByKey.clear();
+			for(Entry<?> running : runningByKey.values())
+				running.job.cancel();
+			notifyAll();
+		}
+		for(Entry<?> entry : dropped)
+			entry.cancel(false);
+		for(Thread worker : workers)
+			worker.interrupt();
+	}
+
+	/**
+	 * Queues a job. A queued job with the same key is dropped and a running job with the same key
+	 * is asked to stop.
+	 * 
+	 * @param job
+	 *            The job to run
+	 * @return The future result of the job. It is cancelled if the job is dropped before it runs
+	 */
+	public <R> Future<R> submit(Job<R> job) {
+		Entry<R> entry = new Entry<R>(job);
+		Entry<?> dropped;
+		synchronized(this) {
+			if(shutdown)
+				throw new IllegalStateException("The scheduler has been shut down");
+
+			String key = job.getKey();
+			dropped = queuedByKey.put(key, entry);
+			if(dropped != null) {
+				dropped.job.superseded = true;
+				// The repository keeps its turn, even if its queue becomes empty
+				queues.get(dropped.job.getRepository()).remove(dropped);
+				coalescedCount.incrementAndGet();
+			}
+
+			Entry<?> running = runningByKey.get(key);
+			if(running != null && !running.job.superseded) {
+				running.job.superseded = true;
+				running.job.cancel();
+				cancelledCount.incrementAndGet();
+			}
+
+			Deque<Entry<?>> queue = queues.get(job.getRepository());
+			if(queue == null) {
+				queue = new ArrayDeque<Entry<?>>();
+				queues.put(job.getRepository(), queue);
+				turns.addLast(job.getRepository());
+			}
+			queue.addLast(entry);
+			notify();
+		}
+		if(dropped != null)
+			dropped.cancel(false);
+		return entry;
+	}
+
+	private void work() {
+		for(;;) {
+			Entry<?> entry;
+			try {
+				entry = next();
+			}
+			catch(InterruptedException e) {
+				return;
+			}
+			if(entry == null)
+				return;
+
+			try {
+				entry.run();
+			}
+			finally {
+				synchronized(this) {
+					if(runningByKey.get(entry.job.getKey()) == entry)
+						runningByKey.remove(entry.job.getKey());
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes the diagnostic tree as nested JSON objects.
+ */
+public class JsonReportWriter extends DiagnosticReportWriter {
+	private static void writeDiagnostic(JsonWriter json, Diagnostic diagnostic) throws IOException {
+		json.beginObject();
+		json.name("severity").value(diagnostic.getSeverityString());
+		json.name("type").value(diagnostic.getType().name());
+		writeOptional(json, "message", diagnostic.getMessage());
+		writeOptional(json, "issue", diagnostic.getIssue());
+		writeOptional(json, "source", diagnostic.getSource());
+		writeOptional(json, "resourcePath", diagnostic.getResourcePath());
+		if(diagnostic.getLine() > 0)
+			json.name("line").value(diagnostic.getLine());
+		if(diagnostic.getOffset() >= 0)
+			json.name("offset").value(diagnostic.getOffset());
+		if(diagnostic.getLength() >= 0)
+			json.name("length").value(diagnostic.getLength());
+
+		if(!diagnostic.getChildren().isEmpty()) {
+			json.name("children");
+			json.beginArray();
+			for(Diagnostic child : diagnostic.getChildren())
+				writeDiagnostic(json, child);
+			json.endArray();
+		}
+		json.endObject();
+	}
+
+	private static void writeOptional(JsonWriter json, String name, String value) throws IOException {
+		if(value != null)
+			json.name(name).value(value);
+	}
+
+	@Override
+	public void write(Diagnostic diagnostic, String name, Writer out) throws IOException {
+		JsonWriter json = new JsonWriter(out);
+		json.beginObject();
+		json.name("action").value(name);
+		json.name("severity").value(diagnostic.getSeverityString());
+		json.name("diagnostic");
+		writeDiagnostic(json, diagnostic);
+		json.endObject();
+		json.flush();
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Records latencies and computes percentiles. At most a fixed number of samples are retained. When
+ * more samples than that are recorded, reservoir sampling keeps a uniform selection.
+ */
+public class LatencyRecorder {
+	static final int DEFAULT_CAPACITY = 8192;
+
+	private final long[] samples;
+
+	private final Random random = new Random(0);
+
+	private long count;
+
+	private long max;
+
+	public LatencyRecorder() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public LatencyRecorder(int capacity) {
+		samples = new long[capacity];
+	}
+
+	/**
+	 * @return The number of latencies recorded
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return The highest latency recorded in nanoseconds
+	 */
+	public synchronized long getMax() {
+		return max;
+	}
+
+	/**
+	 * Returns the latencies at the given percentiles.
+	 * 
+	 * @param percentiles
+	 *            Percentiles in the range 0 - 100
+	 * @return The latencies in nanoseconds, one for each percentile, or all zeroes if nothing was recorded
+	 */
+	public synchronized long[] getPercentiles(double... percentiles) {
+		long[] result = new long[percentiles.length];
+		int size = (int) Math.min(count, samples.length);
+		if(size == 0)
+			return result;
+
+		long[] sorted = Arrays.copyOf(samples, size);
+		Arrays.sort(sorted);
+		for(int idx = 0; idx < percentiles.length; ++idx) {
+			int rank = (int) Math.ceil(percentiles[idx] / 100.0 * size) - 1;
+			result[idx] = sorted[Math.max(0, Math.min(size - 1, rank))];
+		}
+		return result;
+	}
+
+	/**
+	 * Records one latency
+	 * 
+	 * @param nanos
+	 *            The latency in nanoseconds
+	 */
+	public synchronized void record(long nanos) {
+		if(nanos > max)
+			max = nanos;
+
+		if(count < samples.length)
+			samples[(int) count] = nanos;
+		else {
+			long slot = (long) (random.nextDouble() * (count + 1));
+			if(slot < samples.length)
+				samples[(int) slot] = nanos;
+		}
+		++count;
+	}
+}
@@ -47,6 +47,22 @@ public class MessageWithSeverity implements Serializable {
 				: format("UNKNOWN(%d)", severity);
 	}
 
+	/**
+	 * Return the severity that corresponds to the given string. The comparison is case insensitive.
+	 * 
+	 * @param severityString
+	 *            One of the strings returned by {@link #getSeverityString(int)}
+	 * @return The severity
+	 * @throws IllegalArgumentException
+	 *             if the string does not represent a known severity
+	 */
+	public static int getSeverity(String severityString) {
+		for(int idx = 0; idx < severityStrings.length; ++idx)
+			if(severityStrings[idx].equalsIgnoreCase(severityString))
+				return idx;
+		throw new IllegalArgumentException(format("Unknown severity: '%s'", severityString));
+	}
+
 	private int severity;
 
 	private String message;
@@ -93,8 +109,7 @@ public class MessageWithSeverity implements Serializable {
 	}
 
 	public void toString(StringBuilder bld, int indent) {
-		for(int idx = 0; idx < indent; ++idx)
-			bld.append(' ');
+		bld.append(DiagnosticRenderer.indent(indent));
 
 		bld.append(getSeverityString(severity));
 		if(message != null) {
@@ -0,0 +1,197 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import static java.lang.String.format;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects {@link PhaseMetrics} for the phases of one goal execution. Phases are reported in the
+ * order they were first used.
+ */
+public class MetricsRegistry {
+	/**
+	 * Measures the time of one invocation of a phase.
+	 */
+	public static class Timer {
+		private final PhaseMetrics phase;
+
+		private final long start;
+
+		private long elapsed = -1;
+
+		Timer(PhaseMetrics phase) {
+			this.phase = phase;
+			this.start = System.nanoTime();
+			phase.started(start);
+		}
+
+		/**
+		 * @return The time between start and stop in nanoseconds or -1 if the timer hasn't been stopped
+		 */
+		public long getElapsedNanos() {
+			return elapsed;
+		}
+
+		/**
+		 * Stops the timer and adds the elapsed time to its phase.
+		 * 
+		 * @return The phase that was timed
+		 */
+		public PhaseMetrics stop() {
+			long end = System.nanoTime();
+			elapsed = end - start;
+			phase.stopped(end, elapsed);
+			return phase;
+		}
+	}
+
+	public static final String DISCOVERY = "discovery";
+
+	public static final String METADATA = "metadata";
+
+	public static final String DEPENDENCY_RESOLUTION = "dependencyResolution";
+
+	public static final String DOWNLOAD = "download";
+
+	public static final String INJECTOR_SETUP = "injectorSetup";
+
+	public static final String VALIDATION = "validation";
+
+	public static final String LINT = "lint";
+
+	public static final String PACKAGING = "packaging";
+
+	public static final String PROBE = "probe";
+
+	public static final String UPLOAD = "upload";
+
+	private static String formatBytes(long bytes) {
+		if(bytes < 1024)
+			return bytes + " B";
+		if(bytes < 1024 * 1024)
+			return format("%.1f KiB", bytes / 1024.0);
+		return format("%.1f MiB", bytes / (1024.0 * 1024.0));
+	}
+
+	private final Map<String, PhaseMetrics> phases = new LinkedHashMap<String, PhaseMetrics>();
+
+	private final Map<String, AtomicLong> moduleNanos = new TreeMap<String, AtomicLong>();
+
+	private final LatencyRecorder remoteLatencies = new LatencyRecorder();
+
+	/**
+	 * Adds time spent on a particular module.
+	 * 
+	 * @param module
+	 *            The module, typically its path relative to the modules root
+	 * @param nanos
+	 *            The time to add
+	 */
+	public void addModuleTime(String module, long nanos) {
+		AtomicLong total;
+		synchronized(moduleNanos) {
+			total = moduleNanos.get(module);
+			if(total == null) {
+				total = new AtomicLong();
+				moduleNanos.put(module, total);
+			}
+		}
+		total.addAndGet(nanos);
+	}
+
+	/**
+	 * @return A snapshot of the time spent per module, in nanoseconds, sorted on module
+	 */
+	public Map<String, Long> getModuleTimes() {
+		Map<String, Long> result = new LinkedHashMap<String, Long>();
+		synchronized(moduleNanos) {
+			for(Map.Entry<String, AtomicLong> entry : moduleNanos.entrySet())
+				result.put(entry.getKey(), Long.valueOf(entry.getValue().get()));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the metrics for the named phase. The phase is created if it doesn't exist.
+	 * 
+	 * @param name
+	 *            The name of the phase
+	 * @return The metrics of the phase
+	 */
+	public synchronized PhaseMetrics getPhase(String name) {
+		PhaseMetrics phase = phases.get(name);
+		if(phase == null) {
+			phase = new PhaseMetrics(name);
+			phases.put(name, phase);
+		}
+		return phase;
+	}
+
+	/**
+	 * @return A snapshot of all phases in the order they were first used
+	 */
+	public synchronized List<PhaseMetrics> getPhases() {
+		return new ArrayList<PhaseMetrics>(phases.values());
+	}
+
+	/**
+	 * @return The latencies of all attempts of calls made to the Forge service
+	 */
+	public LatencyRecorder getRemoteLatencies() {
+		return remoteLatencies;
+	}
+
+	/**
+	 * Returns a human readable summary with one line per phase.
+	 * 
+	 * @param totalNanos
+	 *            The total wall time of the goal execution
+	 * @return The summary
+	 */
+	public String getSummary(long totalNanos) {
+		StringBuilder bld = new StringBuilder(256);
+		bld.append(format("Performance summary (total %d ms):", totalNanos / 1000000));
+		for(PhaseMetrics phase : getPhases()) {
+			bld.append(format(
+				"\n  %-22s %8d ms %6d calls", phase.getName(), phase.getNanos() / 1000000, phase.getInvocations()));
+			if(phase.getTaskNanos() > phase.getNanos())
+				bld.append(format(" (%d ms task time)", phase.getTaskNanos() / 1000000));
+			if(phase.getCount() > 0)
+				bld.append(format(" %6d items", phase.getCount()));
+			if(phase.getBytes() > 0)
+				bld.append(' ').append(formatBytes(phase.getBytes()));
+			if(phase.getRemoteCalls() > 0)
+				bld.append(format(" %d remote calls", phase.getRemoteCalls()));
+		}
+		return bld.toString();
+	}
+
+	/**
+	 * Starts timing an invocation of the named phase.
+	 * 
+	 * @param name
+	 *            The name of the phase
+	 * @return The timer to stop when the invocation ends
+	 */
+	public Timer start(String name) {
+		return new Timer(getPhase(name));
+	}
+}
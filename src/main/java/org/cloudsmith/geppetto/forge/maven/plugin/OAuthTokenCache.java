@@ -0,0 +1,460 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.http.client.HttpResponseException;
+import org.cloudsmith.geppetto.common.os.StreamUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * A JVM wide cache of OAuth access tokens. Tokens are obtained with the password grant and are
+ * refreshed in the background before they expire, so that executions never wait for a token once one
+ * has been obtained. Tokens that have not been used during their last lifetime are no longer refreshed.
+ * Tokens can also be stored on disk, encrypted with a key derived from the
+ * credentials that were used to obtain them, so that later builds can reuse them.
+ */
+public class OAuthTokenCache {
+	/**
+	 * The credentials that identify a cached token
+	 */
+	public static class Credentials {
+		final String oauthURL;
+
+		final String clientId;
+
+		final String clientSecret;
+
+		final String login;
+
+		final String password;
+
+		final String key;
+
+		public Credentials(String oauthURL, String clientId, String clientSecret, String login, String password) {
+			this.oauthURL = oauthURL;
+			this.clientId = clientId;
+			this.clientSecret = clientSecret;
+			this.login = login;
+			this.password = password;
+			this.key = sha256(oauthURL + '\n' + clientId + '\n' + clientSecret + '\n' + login + '\n' + password);
+		}
+
+		char[] getPassphrase() {
+			return (clientSecret + '\n' + login + '\n' + password).toCharArray();
+		}
+	}
+
+	static class Token {
+		final String accessToken;
+
+		final String refreshToken;
+
+		final long issuedAt;
+
+		final long expiresAt;
+
+		Token(String accessToken, String refreshToken, long issuedAt, long expiresAt) {
+			this.accessToken = accessToken;
+			this.refreshToken = refreshToken;
+			this.issuedAt = issuedAt;
+			this.expiresAt = expiresAt;
+		}
+
+		/**
+		 * @return The time when the token should be refreshed. That is when 80% of its lifetime
+		 *         has passed but at least one minute before it expires
+		 */
+		long getRefreshAt() {
+			long lifetime = expiresAt - issuedAt;
+			return Math.min(issuedAt + lifetime * 4 / 5, expiresAt - MIN_REFRESH_MARGIN);
+		}
+
+		boolean isValid(long now) {
+			return now < expiresAt - EXPIRY_SAFETY_MARGIN;
+		}
+	}
+
+	/**
+	 * The cache shared by all executions in the JVM
+	 */
+	public static final OAuthTokenCache SHARED = new OAuthTokenCache();
+
+	static final String TOKEN_SUFFIX = ".token";
+
+	private static final long MIN_REFRESH_MARGIN = TimeUnit.MINUTES.toMillis(1);
+
+	private static final long EXPIRY_SAFETY_MARGIN = TimeUnit.SECONDS.toMillis(10);
+
+	private static final long DEFAULT_LIFETIME = TimeUnit.HOURS.toMillis(1);
+
+	private static final int SALT_LENGTH = 16;
+
+	private static final int KEY_ITERATIONS = 10000;
+
+	private static final Logger log = LoggerFactory.getLogger(OAuthTokenCache.class);
+
+	private static void appendParam(StringBuilder bld, String name, String value) throws UnsupportedEncodingException {
+		if(value == null)
+			return;
+		if(bld.length() > 0)
+			bld.append('&');
+		bld.append(name);
+		bld.append('=');
+		bld.append(URLEncoder.encode(value, "UTF-8"));
+	}
+
+	private static Cipher createCipher(int mode, char[] passphrase, byte[] salt, byte[] iv)
+			throws GeneralSecurityException {
+		SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
+		byte[] key = factory.generateSecret(new PBEKeySpec(passphrase, salt, KEY_ITERATIONS, 128)).getEncoded();
+		Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+		cipher.init(mode, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+		return cipher;
+	}
+
+	private static Token parseToken(String json, long issuedAt) throws IOException {
+		String accessToken = null;
+		String refreshToken = null;
+		long expiresAt = 0;
+		long expiresIn = -1;
+		JsonReader reader = new JsonReader(new StringReader(json));
+		try {
+			reader.beginObject();
+			while(reader.hasNext()) {
+				String name = reader.nextName();
+				if(reader.peek() == JsonToken.NULL) {
+					reader.nextNull();
+					continue;
+				}
+				if("access_token".equals(name))
+					accessToken = reader.nextString();
+				else if("refresh_token".equals(name))
+					refreshToken = reader.nextString();
+				else if("expires_in".equals(name))
+					expiresIn = reader.nextLong();
+				else if("expires_at".equals(name))
+					expiresAt = reader.nextLong();
+				else if("issued_at".equals(name))
+					issuedAt = reader.nextLong();
+				else
+					reader.skipValue();
+			}
+			reader.endObject();
+		}
+		finally {
+			reader.close();
+		}
+		if(accessToken == null)
+			throw new IOException("No access_token in OAuth response");
+		if(expiresAt == 0)
+			expiresAt = issuedAt + (expiresIn > 0
+					? TimeUnit.SECONDS.toMillis(expiresIn)
+					: DEFAULT_LIFETIME);
+		return new Token(accessToken, refreshToken, issuedAt, expiresAt);
+	}
+
+	private static byte[] readFully(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[4096];
+		int cnt;
+		while((cnt = in.read(buf)) > 0)
+			out.write(buf, 0, cnt);
+		return out.toByteArray();
+	}
+
+	static String sha256(String str) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(str.getBytes(AbstractForgeMojo.UTF_8));
+			StringBuilder bld = new StringBuilder(digest.length * 2);
+			for(byte b : digest) {
+				bld.append(Character.forDigit((b >> 4) & 0xf, 16));
+				bld.append(Character.forDigit(b & 0xf, 16));
+			}
+			return bld.toString();
+		}
+		catch(NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private final ConcurrentMap<String, Token> tokens = new ConcurrentHashMap<String, Token>();
+
+	private final ConcurrentMap<String, Long> lastUsed = new ConcurrentHashMap<String, Long>();
+
+	private final ConcurrentMap<String, Boolean> scheduled = new ConcurrentHashMap<String, Boolean>();
+
+	private final SecureRandom random = new SecureRandom();
+
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * Returns a valid access token for the given credentials. A cached token is returned when there is
+	 * one. Otherwise, a token is read from the disk cache or obtained from the Forge.
+	 *
+	 * @param credentials
+	 *            The credentials
+	 * @param transport
+	 *            The transport to use for calls to the Forge
+	 * @param cacheDir
+	 *            The directory for encrypted tokens or <code>null</code> to only cache in memory
+	 * @return The access token
+	 * @throws IOException
+	 *             if no token could be obtained
+	 */
+	public String getAccessToken(Credentials credentials, HttpTransport transport, File cacheDir) throws IOException {
+		long now = System.currentTimeMillis();
+		lastUsed.put(credentials.key, Long.valueOf(now));
+		Token token = tokens.get(credentials.key);
+		if(token == null || !token.isValid(now)) {
+			synchronized(this) {
+				token = tokens.get(credentials.key);
+				if(token == null || !token.isValid(now)) {
+					token = cacheDir == null
+							? null
+							: readToken(credentials, cacheDir);
+					if(token == null || !token.isValid(now))
+						token = requestToken(credentials, transport, null);
+					store(credentials, token, cacheDir);
+				}
+			}
+		}
+		scheduleRefresh(credentials, transport, cacheDir);
+		return token.accessToken;
+	}
+
+	/**
+	 * Removes all tokens from the memory cache
+	 */
+	public void clear() {
+		tokens.clear();
+	}
+
+	private Token readToken(Credentials credentials, File cacheDir) {
+		File file = new File(cacheDir, credentials.key + TOKEN_SUFFIX);
+		if(!file.isFile())
+			return null;
+		try {
+			InputStream in = new FileInputStream(file);
+			byte[] data;
+			try {
+				data = readFully(in);
+			}
+			finally {
+				StreamUtil.close(in);
+			}
+			if(data.length <= SALT_LENGTH * 2)
+				return null;
+			byte[] salt = new byte[SALT_LENGTH];
+			byte[] iv = new byte[SALT_LENGTH];
+			System.arraycopy(data, 0, salt, 0, SALT_LENGTH);
+			System.arraycopy(data, SALT_LENGTH, iv, 0, SALT_LENGTH);
+			Cipher cipher = createCipher(Cipher.DECRYPT_MODE, credentials.getPassphrase(), salt, iv);
+			byte[] json = cipher.doFinal(data, SALT_LENGTH * 2, data.length - SALT_LENGTH * 2);
+			return parseToken(new String(json, AbstractForgeMojo.UTF_8), 0);
+		}
+		catch(Exception e) {
+			// Unreadable or written with other credentials. Just obtain a new token
+			log.debug("Unable to read cached OAuth token " + file, e);
+			return null;
+		}
+	}
+
+	private Token refresh(Credentials credentials, HttpTransport transport, File cacheDir) {
+		Token current = tokens.get(credentials.key);
+		try {
+			Token token = null;
+			if(current != null && current.refreshToken != null) {
+				try {
+					token = requestToken(credentials, transport, current.refreshToken);
+				}
+				catch(IOException e) {
+					log.debug("Unable to refresh OAuth token, will request a new one", e);
+				}
+			}
+			if(token == null)
+				token = requestToken(credentials, transport, null);
+			store(credentials, token, cacheDir);
+			return token;
+		}
+		catch(IOException e) {
+			log.warn("Unable to refresh OAuth token: " + e.getMessage());
+			return current;
+		}
+	}
+
+	private Token requestToken(Credentials credentials, HttpTransport transport, String refreshToken)
+			throws IOException {
+		StringBuilder body = new StringBuilder();
+		if(refreshToken != null) {
+			appendParam(body, "grant_type", "refresh_token");
+			appendParam(body, "refresh_token", refreshToken);
+		}
+		else {
+			appendParam(body, "grant_type", "password");
+			appendParam(body, "username", credentials.login);
+			appendParam(body, "password", credentials.password);
+		}
+		appendParam(body, "client_id", credentials.clientId);
+		appendParam(body, "client_secret", credentials.clientSecret);
+		appendParam(body, "scope", "");
+
+		long issuedAt = System.currentTimeMillis();
+		HttpURLConnection conn = transport.open(new URL(credentials.oauthURL));
+		conn.setRequestMethod("POST");
+		conn.setDoOutput(true);
+		conn.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+		conn.setRequestProperty("Accept", "application/json");
+		OutputStream out = conn.getOutputStream();
+		try {
+			out.write(body.toString().getBytes(AbstractForgeMojo.UTF_8));
+		}
+		finally {
+			StreamUtil.close(out);
+		}
+
+		int status = conn.getResponseCode();
+		if(status != HttpURLConnection.HTTP_OK) {
+			InputStream err = conn.getErrorStream();
+			if(err != null)
+				StreamUtil.close(err);
+			throw new HttpResponseException(status, "Unable to obtain OAuth token: " + conn.getResponseMessage());
+		}
+		InputStream in = conn.getInputStream();
+		try {
+			return parseToken(new String(readFully(in), AbstractForgeMojo.UTF_8), issuedAt);
+		}
+		finally {
+			StreamUtil.close(in);
+		}
+	}
+
+	private void scheduleRefresh(final Credentials credentials, final HttpTransport transport, final File cacheDir) {
+		Token token = tokens.get(credentials.key);
+		if(token == null || scheduled.putIfAbsent(credentials.key, Boolean.TRUE) != null)
+			return;
+
+		long delay = Math.max(0, token.getRefreshAt() - System.currentTimeMillis());
+		synchronized(this) {
+			if(scheduler == null)
+				scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "forge-oauth-refresh");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		}
+		scheduler.schedule(new Runnable() {
+			@Override
+			public void run() {
+				scheduled.remove(credentials.key);
+				Token current = tokens.get(credentials.key);
+				Long used = lastUsed.get(credentials.key);
+				if(current == null || used == null ||
+						System.currentTimeMillis() - used.longValue() > current.expiresAt - current.issuedAt)
+					// Not in use anymore. A new token is obtained on demand
+					return;
+				if(refresh(credentials, transport, cacheDir) != null)
+					scheduleRefresh(credentials, transport, cacheDir);
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	private void store(Credentials credentials, Token token, File cacheDir) {
+		tokens.put(credentials.key, token);
+		if(cacheDir == null)
+			return;
+
+		File file = new File(cacheDir, credentials.key + TOKEN_SUFFIX);
+		File tmp = new File(cacheDir, credentials.key + ".tmp");
+		try {
+			if(!(cacheDir.mkdirs() || cacheDir.isDirectory()))
+				throw new IOException("Unable to create directory " + cacheDir);
+
+			StringWriter json = new StringWriter();
+			JsonWriter writer = new JsonWriter(json);
+			writer.beginObject();
+			writer.name("access_token").value(token.accessToken);
+			if(token.refreshToken != null)
+				writer.name("refresh_token").value(token.refreshToken);
+			writer.name("issued_at").value(token.issuedAt);
+			writer.name("expires_at").value(token.expiresAt);
+			writer.endObject();
+			writer.close();
+
+			byte[] salt = new byte[SALT_LENGTH];
+			byte[] iv = new byte[SALT_LENGTH];
+			random.nextBytes(salt);
+			random.nextBytes(iv);
+			Cipher cipher = createCipher(Cipher.ENCRYPT_MODE, credentials.getPassphrase(), salt, iv);
+			byte[] encrypted = cipher.doFinal(json.toString().getBytes(AbstractForgeMojo.UTF_8));
+
+			OutputStream out = new FileOutputStream(tmp);
+			tmp.setReadable(false, false);
+			tmp.setReadable(true, true);
+			tmp.setWritable(false, false);
+			tmp.setWritable(true, true);
+			try {
+				out.write(salt);
+				out.write(iv);
+				out.write(encrypted);
+			}
+			finally {
+				StreamUtil.close(out);
+			}
+			if(!(tmp.renameTo(file) || file.delete() && tmp.renameTo(file)))
+				throw new IOException("Unable to rename " + tmp + " to " + file);
+		}
+		catch(Exception e) {
+			log.debug("Unable to write OAuth token cache " + file, e);
+			tmp.delete();
+		}
+	}
+}
@@ -0,0 +1,323 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+import org.cloudsmith.geppetto.common.os.StreamUtil;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes a JSON report with timing and resource usage of one goal execution and appends a compact
+ * version of it to a bounded history file. The JVM counters are sampled relative to the moment the
+ * report instance was created. The peak heap counters of the JVM are never reset, so the report
+ * holds how much the execution raised the peak above the peak at that moment.
+ * <p>
+ * The per-module times cover the phases that are measured module by module. Phases that cover all
+ * modules at once, such as the Geppetto validation, are listed in <tt>moduleTimesExclude</tt>.
+ * </p>
+ */
+public class PerformanceReport {
+	static final String REPORT_SUFFIX = ".json";
+
+	static final String HISTORY_SUFFIX = "-history.jsonl";
+
+	private static final Set<String> MODULE_PHASES = new HashSet<String>(Arrays.asList(
+		MetricsRegistry.METADATA, MetricsRegistry.LINT, MetricsRegistry.PACKAGING));
+
+	private static long getGcCount() {
+		long total = 0;
+		for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			total += Math.max(0, gc.getCollectionCount());
+		return total;
+	}
+
+	private static long getGcTime() {
+		long total = 0;
+		for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			total += Math.max(0, gc.getCollectionTime());
+		return total;
+	}
+
+	static long getPeakHeap() {
+		long total = 0;
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if(pool.getType() == MemoryType.HEAP) {
+				MemoryUsage peak = pool.getPeakUsage();
+				if(peak != null)
+					total += peak.getUsed();
+			}
+		}
+		return total;
+	}
+
+	static long getUsedHeap() {
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	private static double millis(long nanos) {
+		return Math.round(nanos / 1000.0) / 1000.0;
+	}
+
+	/**
+	 * Finds the commit that the repository containing the given directory is checked out at. Only
+	 * the files in the <tt>.git</tt> directory are consulted.
+	 * 
+	 * @param dir
+	 *            A directory in the repository
+	 * @return The commit id or <code>null</code> if it could not be determined
+	 */
+	static String readGitRevision(File dir) {
+		File gitDir = null;
+		for(File parent = dir.getAbsoluteFile(); parent != null; parent = parent.getParentFile()) {
+			File candidate = new File(parent, ".git");
+			if(candidate.isDirectory()) {
+				gitDir = candidate;
+				break;
+			}
+		}
+		if(gitDir == null)
+			return null;
+
+		try {
+			String head = readFirstLine(new File(gitDir, "HEAD"));
+			if(head == null || !head.startsWith("ref: "))
+				return head;
+
+			String ref = head.substring(5).trim();
+			File refFile = new File(gitDir, ref);
+			if(refFile.isFile())
+				return readFirstLine(refFile);
+
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(new File(
+				gitDir, "packed-refs")), AbstractForgeMojo.UTF_8));
+			try {
+				String line;
+				while((line = reader.readLine()) != null)
+					if(line.endsWith(' ' + ref))
+						return line.substring(0, line.indexOf(' '));
+			}
+			finally {
+				StreamUtil.close(reader);
+			}
+		}
+		catch(IOException e) {
+			// No revision can be determined
+		}
+		return null;
+	}
+
+	private static String readFirstLine(File file) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+			new FileInputStream(file), AbstractForgeMojo.UTF_8));
+		try {
+			String line = reader.readLine();
+			return line == null
+					? null
+					: line.trim();
+		}
+		finally {
+			StreamUtil.close(reader);
+		}
+	}
+
+	private final long startTime;
+
+	private final long startNanos;
+
+	private final long gcCountAtStart;
+
+	private final long gcTimeAtStart;
+
+	private final long heapAtStart;
+
+	private final long peakHeapAtStart;
+
+	public PerformanceReport() {
+		startTime = System.currentTimeMillis();
+		startNanos = System.nanoTime();
+		gcCountAtStart = getGcCount();
+		gcTimeAtStart = getGcTime();
+		heapAtStart = getUsedHeap();
+		peakHeapAtStart = getPeakHeap();
+	}
+
+	private void appendHistory(File historyFile, String entry, int historySize) throws IOException {
+		Deque<String> lines = new ArrayDeque<String>();
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(historyFile), AbstractForgeMojo.UTF_8));
+			try {
+				String line;
+				while((line = reader.readLine()) != null) {
+					if(line.length() == 0)
+						continue;
+					lines.addLast(line);
+					if(lines.size() >= historySize)
+						lines.removeFirst();
+				}
+			}
+			finally {
+				StreamUtil.close(reader);
+			}
+		}
+		catch(FileNotFoundException e) {
+			// First entry
+		}
+		lines.addLast(entry);
+
+		File tmpFile = new File(historyFile.getPath() + ".tmp");
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile), AbstractForgeMojo.UTF_8));
+		try {
+			for(String line : lines) {
+				out.write(line);
+				out.write('\n');
+			}
+		}
+		finally {
+			StreamUtil.close(out);
+		}
+		if(!(tmpFile.renameTo(historyFile) || historyFile.delete() && tmpFile.renameTo(historyFile)))
+			throw new IOException("Unable to rename " + tmpFile + " to " + historyFile);
+	}
+
+	/**
+	 * Writes the report to &lt;action&gt;.json and appends a compact entry to &lt;action&gt;-history.jsonl in the
+	 * given directory. The history is trimmed so that it never holds more than <code>historySize</code> entries.
+	 * 
+	 * @param dir
+	 *            The directory that will hold the report and the history
+	 * @param action
+	 *            The name of the goal action
+	 * @param revision
+	 *            The revision of the validated sources or <code>null</code> if not known
+	 * @param metrics
+	 *            The metrics collected during the execution
+	 * @param historySize
+	 *            The maximum number of entries in the history. No history is kept when this is &lt;= 0
+	 * @throws IOException
+	 */
+	public void write(File dir, String action, String revision, MetricsRegistry metrics, int historySize)
+			throws IOException {
+		if(!(dir.mkdirs() || dir.isDirectory()))
+			throw new IOException("Unable to create directory " + dir.getAbsolutePath());
+
+		long totalNanos = System.nanoTime() - startNanos;
+		String baseName = action.toLowerCase();
+		Writer out = new BufferedWriter(new OutputStreamWriter(
+			new FileOutputStream(new File(dir, baseName + REPORT_SUFFIX)), AbstractForgeMojo.UTF_8));
+		try {
+			JsonWriter json = new JsonWriter(out);
+			json.setIndent("  ");
+			writeReport(json, action, revision, metrics, totalNanos, true);
+			json.flush();
+		}
+		finally {
+			StreamUtil.close(out);
+		}
+
+		if(historySize > 0) {
+			StringWriter entry = new StringWriter();
+			JsonWriter json = new JsonWriter(entry);
+			writeReport(json, action, revision, metrics, totalNanos, false);
+			json.flush();
+			appendHistory(new File(dir, baseName + HISTORY_SUFFIX), entry.toString(), historySize);
+		}
+	}
+
+	private void writeReport(JsonWriter json, String action, String revision, MetricsRegistry metrics,
+			long totalNanos, boolean includeModules) throws IOException {
+		SimpleDateFormat timestampFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+		timestampFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+		json.beginObject();
+		json.name("action").value(action);
+		json.name("timestamp").value(timestampFormat.format(new Date(startTime)));
+		if(revision != null)
+			json.name("revision").value(revision);
+		json.name("totalMillis").value(millis(totalNanos));
+
+		json.name("phases").beginArray();
+		for(PhaseMetrics phase : metrics.getPhases()) {
+			json.beginObject();
+			json.name("name").value(phase.getName());
+			json.name("millis").value(millis(phase.getNanos()));
+			json.name("taskMillis").value(millis(phase.getTaskNanos()));
+			json.name("invocations").value(phase.getInvocations());
+			json.name("items").value(phase.getCount());
+			json.name("bytes").value(phase.getBytes());
+			json.name("remoteCalls").value(phase.getRemoteCalls());
+			json.endObject();
+		}
+		json.endArray();
+
+		if(includeModules) {
+			json.name("modules").beginObject();
+			for(Map.Entry<String, Long> entry : metrics.getModuleTimes().entrySet())
+				json.name(entry.getKey()).value(millis(entry.getValue().longValue()));
+			json.endObject();
+
+			json.name("moduleTimesExclude").beginArray();
+			for(PhaseMetrics phase : metrics.getPhases())
+				if(!MODULE_PHASES.contains(phase.getName()))
+					json.value(phase.getName());
+			json.endArray();
+		}
+
+		json.name("jvm").beginObject();
+		json.name("heapAtStartBytes").value(heapAtStart);
+		json.name("peakHeapIncreaseBytes").value(Math.max(0, getPeakHeap() - peakHeapAtStart));
+		json.name("gcCount").value(getGcCount() - gcCountAtStart);
+		json.name("gcMillis").value(getGcTime() - gcTimeAtStart);
+		json.name("availableProcessors").value(Runtime.getRuntime().availableProcessors());
+		json.name("javaVersion").value(System.getProperty("java.version"));
+		json.endObject();
+
+		LatencyRecorder latencies = metrics.getRemoteLatencies();
+		long[] percentiles = latencies.getPercentiles(50, 90, 99);
+		json.name("forgeLatency").beginObject();
+		json.name("attempts").value(latencies.getCount());
+		json.name("p50Millis").value(millis(percentiles[0]));
+		json.name("p90Millis").value(millis(percentiles[1]));
+		json.name("p99Millis").value(millis(percentiles[2]));
+		json.name("maxMillis").value(millis(latencies.getMax()));
+		json.endObject();
+		json.endObject();
+	}
+}
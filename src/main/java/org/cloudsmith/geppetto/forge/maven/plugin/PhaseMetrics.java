@@ -0,0 +1,138 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for one phase of a goal execution. All counters are thread safe. Invocations of a phase
+ * may overlap when its tasks run concurrently. The wall time counts the time during which at least
+ * one invocation was running, while the task time adds up the time of all invocations.
+ */
+public class PhaseMetrics {
+	private final String name;
+
+	private final AtomicLong taskNanos = new AtomicLong();
+
+	private long wallNanos;
+
+	private int running;
+
+	private long runningSince;
+
+	private final AtomicLong invocations = new AtomicLong();
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong bytes = new AtomicLong();
+
+	private final AtomicLong remoteCalls = new AtomicLong();
+
+	public PhaseMetrics(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Adds to the number of bytes that was read or written by the phase
+	 * 
+	 * @param delta
+	 *            The number of bytes to add
+	 */
+	public void addBytes(long delta) {
+		bytes.addAndGet(delta);
+	}
+
+	/**
+	 * Adds to the number of items (modules, files, issues, etc.) that was processed by the phase
+	 * 
+	 * @param delta
+	 *            The number of items to add
+	 */
+	public void addCount(long delta) {
+		count.addAndGet(delta);
+	}
+
+	/**
+	 * Adds to the number of calls that the phase made to the Forge service
+	 * 
+	 * @param delta
+	 *            The number of calls to add
+	 */
+	public void addRemoteCalls(long delta) {
+		remoteCalls.addAndGet(delta);
+	}
+
+	public long getBytes() {
+		return bytes.get();
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getInvocations() {
+		return invocations.get();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return The wall time during which at least one invocation was running, in nanoseconds
+	 */
+	public synchronized long getNanos() {
+		return wallNanos;
+	}
+
+	public long getRemoteCalls() {
+		return remoteCalls.get();
+	}
+
+	/**
+	 * @return The time of all invocations added up, in nanoseconds. Exceeds the wall time when
+	 *         invocations overlap
+	 */
+	public long getTaskNanos() {
+		return taskNanos.get();
+	}
+
+	/**
+	 * Marks the start of an invocation
+	 * 
+	 * @param startNanos
+	 *            The start time, as given by {@link System#nanoTime()}
+	 */
+	synchronized void started(long startNanos) {
+		if(running++ == 0)
+			runningSince = startNanos;
+	}
+
+	/**
+	 * Marks the end of an invocation and adds its time
+	 * 
+	 * @param endNanos
+	 *            The end time, as given by {@link System#nanoTime()}
+	 * @param elapsedNanos
+	 *            The time of the invocation
+	 */
+	void stopped(long endNanos, long elapsedNanos) {
+		taskNanos.addAndGet(elapsedNanos);
+		invocations.incrementAndGet();
+		synchronized(this) {
+			if(--running == 0)
+				wallNanos += endNanos - runningSince;
+		}
+	}
+}
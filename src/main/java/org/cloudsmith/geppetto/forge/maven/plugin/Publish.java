@@ -14,13 +14,16 @@ package org.cloudsmith.geppetto.forge.maven.plugin;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.zip.GZIPOutputStream;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
 import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpResponseException;
@@ -30,10 +33,9 @@ import org.cloudsmith.geppetto.common.os.StreamUtil;
 import org.cloudsmith.geppetto.forge.ForgeFactory;
 import org.cloudsmith.geppetto.forge.ForgeService;
 import org.cloudsmith.geppetto.forge.IncompleteException;
-import org.cloudsmith.geppetto.forge.util.TarUtils;
-import org.cloudsmith.geppetto.forge.v2.MetadataRepository;
 import org.cloudsmith.geppetto.forge.v2.model.Metadata;
-import org.cloudsmith.geppetto.forge.v2.service.ReleaseService;
+import org.cloudsmith.geppetto.forge.v2.model.QName;
+import org.cloudsmith.geppetto.forge.v2.model.Release;
 import org.cloudsmith.geppetto.pp.dsl.PPStandaloneSetup;
 import org.cloudsmith.geppetto.ruby.RubyHelper;
 import org.cloudsmith.geppetto.ruby.jrubyparser.JRubyServices;
@@ -44,15 +46,89 @@ import org.cloudsmith.geppetto.validation.DiagnosticType;
  */
 @Mojo(name = "publish")
 public class Publish extends AbstractForgeMojo {
+	/**
+	 * A module that is about to be published
+	 */
+	private static class PublishItem {
+		final File moduleRoot;
+
+		final String module;
+
+		final Metadata metadata;
+
+		final String[] names = new String[2];
+
+		File archive;
+
+		PublishItem(File moduleRoot, String module, Metadata metadata) {
+			this.moduleRoot = moduleRoot;
+			this.module = module;
+			this.metadata = metadata;
+		}
+	}
+
 	static final String ALREADY_PUBLISHED = "ALREADY_PUBLISHED";
 
+	/**
+	 * Set to <tt>true</tt> to validate and build all modules before anything is uploaded, upload them
+	 * concurrently, and record the outcome in .geppetto/publish-manifest.json
+	 */
+	@Parameter(property = "forge.publish.batch", defaultValue = "false")
+	private boolean batch = false;
+
+	/**
+	 * Set to <tt>false</tt> to ask the Forge about each module separately when checking if it has
+	 * already been published, instead of listing the releases of each owner once. Modules that the
+	 * listing doesn't contain are always confirmed with the Forge
+	 */
+	@Parameter(property = "forge.publish.bulkProbe", defaultValue = "true")
+	private boolean bulkProbe = true;
+
 	/**
 	 * Set to <tt>true</tt> to enable validation using puppet-lint
 	 */
 	@Parameter(property = "forge.publish.dryrun")
 	private boolean dryRun;
 
-	private File buildForge(ForgeService forgeService, File moduleSource, File destination, String[] namesReceiver)
+	/**
+	 * The size of the buffer used when module archives are built. Source files are read and the
+	 * archive is compressed and written in chunks of this size.
+	 */
+	@Parameter(property = "forge.publish.packBufferSize", defaultValue = "262144")
+	private int packBufferSize = TarPacker.DEFAULT_BUFFER_SIZE;
+
+	/**
+	 * The number of modules of one dependency level that are uploaded concurrently. The calls are
+	 * still subject to the rate and concurrency limits of the Forge connection.
+	 */
+	@Parameter(property = "forge.publish.threads", defaultValue = "4")
+	private int publishThreads = 4;
+
+	/**
+	 * Set to <tt>true</tt> to resume an earlier batch publish. Modules that the manifest lists as
+	 * published at their current version are neither probed, built, nor uploaded again. Implies
+	 * <tt>batch</tt>.
+	 */
+	@Parameter(property = "forge.publish.resume", defaultValue = "false")
+	private boolean resume = false;
+
+	private File buildArchive(ForgeService forgeService, File moduleRoot, File builtModules, String[] namesReceiver)
+			throws IOException, IncompleteException {
+		File moduleArchive;
+		MetricsRegistry.Timer timer = getMetrics().start(MetricsRegistry.PACKAGING);
+		try {
+			moduleArchive = buildForge(forgeService, moduleRoot, builtModules, namesReceiver);
+		}
+		finally {
+			timer.stop();
+		}
+		PhaseMetrics packaging = getMetrics().getPhase(MetricsRegistry.PACKAGING);
+		packaging.addCount(1);
+		packaging.addBytes(moduleArchive.length());
+		return moduleArchive;
+	}
+
+	File buildForge(ForgeService forgeService, File moduleSource, File destination, String[] namesReceiver)
 			throws IOException, IncompleteException {
 
 		File metadataJSON = new File(moduleSource, "metadata.json");
@@ -77,116 +153,448 @@ public class Publish extends AbstractForgeMojo {
 		namesReceiver[1] = md.getName();
 		String fullNameWithVersion = md.getFullName() + '-' + md.getVersion();
 		File moduleArchive = new File(destination, fullNameWithVersion + ".tar.gz");
-		OutputStream out = new GZIPOutputStream(new FileOutputStream(moduleArchive));
-		// Pack closes its output
-		TarUtils.pack(moduleSource, out, DEFAULT_EXCLUDES_PATTERN, false, fullNameWithVersion);
+		TarPacker packer = new TarPacker(getExcludes(), packBufferSize);
+		long start = System.nanoTime();
+		packer.pack(moduleSource, fullNameWithVersion, moduleArchive);
+		long nanos = System.nanoTime() - start;
+		getMetrics().addModuleTime(getRelativePath(moduleSource), nanos);
+		if(getLog().isDebugEnabled())
+			getLog().debug(
+				String.format(
+					"Packed %s: %d files, %d bytes in %d ms (%.1f MiB/s)", moduleArchive.getName(),
+					packer.getFileCount(), packer.getByteCount(), nanos / 1000000, packer.getByteCount() * 1e9 /
+							(1024 * 1024) / Math.max(1, nanos)));
 		return moduleArchive;
 	}
 
+	/**
+	 * Creates an index of the releases that the owners of the given modules have published. Owners
+	 * whose releases cannot be listed are left out of the index and their modules are probed one by
+	 * one.
+	 */
+	private ReleaseIndex createReleaseIndex(List<PublishItem> items) {
+		ReleaseIndex index = new ReleaseIndex(
+			getForgePreferences().getBaseURL(), getHttpTransport(), getCallExecutor(), ReleaseIndex.DEFAULT_PAGE_SIZE);
+		if(!bulkProbe)
+			return index;
+
+		Set<String> owners = new LinkedHashSet<String>();
+		for(PublishItem item : items) {
+			QName qname = item.metadata.getName();
+			if(qname != null && qname.getQualifier() != null)
+				owners.add(qname.getQualifier());
+		}
+
+		MetricsRegistry.Timer timer = getMetrics().start(MetricsRegistry.PROBE);
+		try {
+			for(String owner : owners) {
+				try {
+					if(!index.load(owner))
+						getLog().debug("No release listing for " + owner + ". Its modules are probed one by one");
+				}
+				catch(IOException e) {
+					getLog().debug("Unable to list the releases of " + owner + ": " + e.getMessage());
+				}
+			}
+		}
+		finally {
+			timer.stop().addRemoteCalls(index.getPageCount());
+		}
+		return index;
+	}
+
+	private PublishManifest.Entry createEntry(PublishItem item, PublishManifest.State state, String message) {
+		return new PublishManifest.Entry(
+			item.module, String.valueOf(item.metadata.getName()), item.metadata.getVersion(), state, item.archive == null
+					? null
+					: item.archive.getName(), item.archive == null
+					? 0
+					: item.archive.length(), message);
+	}
+
 	@Override
 	protected String getActionName() {
 		return "Publishing";
 	}
 
+	/**
+	 * Computes the order in which the given modules must be published so that no module reaches the
+	 * Forge before a module that it depends on.
+	 */
+	private DependencyLevels<PublishItem> getDependencyLevels(List<PublishItem> items) {
+		Map<PublishItem, Metadata> metadata = new IdentityHashMap<PublishItem, Metadata>();
+		for(PublishItem item : items)
+			metadata.put(item, item.metadata);
+		DependencyLevels<PublishItem> levels = new DependencyLevels<PublishItem>(
+			items, getModuleDependencies(metadata));
+		if(!levels.getUnordered().isEmpty()) {
+			StringBuilder bld = new StringBuilder("Circular dependencies between modules. These are published last:");
+			for(PublishItem item : levels.getUnordered())
+				bld.append(' ').append(item.metadata.getName());
+			getLog().warn(bld.toString());
+		}
+		return levels;
+	}
+
+	private File getBuiltModulesDir(Diagnostic result) {
+		File builtModules = new File(getBuildDir(), "builtModules");
+		if(!(builtModules.mkdirs() || builtModules.isDirectory())) {
+			result.addChild(new Diagnostic(Diagnostic.ERROR, DiagnosticType.PUBLISHER, "Unable to create directory" +
+					builtModules.getPath()));
+			return null;
+		}
+		return builtModules;
+	}
+
 	@Override
 	protected void invoke(Diagnostic result) throws Exception {
-		ReleaseService releaseService = getForge().createReleaseService();
-
 		List<File> moduleRoots = findModuleRoots();
 		if(moduleRoots.isEmpty()) {
 			result.addChild(new Diagnostic(Diagnostic.ERROR, DiagnosticType.PUBLISHER, "No modules found in repository"));
 			return;
 		}
 
-		RubyHelper.setRubyServicesFactory(JRubyServices.FACTORY);
-		PPStandaloneSetup.doSetup();
-		MetadataRepository metadataRepo = getForge().createMetadataRepository();
+		moduleRoots = selectAffectedModuleRoots(moduleRoots);
+		if(moduleRoots.isEmpty()) {
+			result.addChild(new Diagnostic(
+				Diagnostic.INFO, DiagnosticType.PUBLISHER, "No modules are affected by the changes"));
+			return;
+		}
+
+		MetricsRegistry.Timer timer = getMetrics().start(MetricsRegistry.INJECTOR_SETUP);
+		try {
+			RubyHelper.setRubyServicesFactory(JRubyServices.FACTORY);
+			PPStandaloneSetup.doSetup();
+		}
+		finally {
+			timer.stop();
+		}
+
+		if(batch || resume) {
+			invokeBatch(moduleRoots, result);
+			return;
+		}
+
+		List<PublishItem> items = new ArrayList<PublishItem>();
+		for(File moduleRoot : moduleRoots)
+			items.add(new PublishItem(moduleRoot, getRelativePath(moduleRoot), getModuleMetadata(moduleRoot, result)));
+		if(result.getSeverity() == Diagnostic.ERROR)
+			return;
+
+		items.removeAll(probeAll(items, createReleaseIndex(items), result));
+
+		if(items.isEmpty()) {
+			result.addChild(new Diagnostic(
+				Diagnostic.INFO, DiagnosticType.PUBLISHER,
+				"All modules have already been published at their current version"));
+			return;
+		}
 
-		List<String> alreadyPublishedPaths = new ArrayList<String>();
-		List<Metadata> metadatas = new ArrayList<Metadata>();
+		File builtModules = getBuiltModulesDir(result);
+		if(builtModules == null)
+			return;
+
+		publishInLevels(getDependencyLevels(items), null, builtModules, result);
+	}
+
+	private void invokeBatch(List<File> moduleRoots, Diagnostic result) throws Exception {
+		File manifestFile = new File(getBuildDir(), PublishManifest.MANIFEST_FILE);
+		final PublishManifest manifest = resume
+				? PublishManifest.read(manifestFile)
+				: new PublishManifest(manifestFile);
+
+		// Validate everything before anything is built or uploaded
+		List<PublishItem> items = new ArrayList<PublishItem>();
 		for(File moduleRoot : moduleRoots) {
 			Metadata metadata = getModuleMetadata(moduleRoot, result);
-			try {
-				if(metadataRepo.resolve(metadata.getName(), metadata.getVersion()) != null) {
-					Diagnostic diag = new Diagnostic(Diagnostic.WARNING, DiagnosticType.PUBLISHER, "Module " +
-							metadata.getName() + ':' + metadata.getVersion() + " has already been published");
-					diag.setIssue(ALREADY_PUBLISHED);
-					result.addChild(diag);
-					alreadyPublishedPaths.add(moduleRoot.getAbsolutePath());
-				}
-			}
-			catch(HttpResponseException e) {
-				if(e.getStatusCode() != HttpStatus.SC_NOT_FOUND) {
-					if(!dryRun)
-						throw e;
-					getLog().warn(e);
-				}
-				// This is expected. It just means that the module hasn't
-				// been published yet.
-			}
-			catch(Exception e) {
-				if(!dryRun)
-					throw e;
-				getLog().warn(e);
+			String module = getRelativePath(moduleRoot);
+			PublishManifest.Entry entry = manifest.getEntry(module);
+			if(entry != null && entry.isDone(metadata.getVersion())) {
+				result.addChild(new Diagnostic(Diagnostic.INFO, DiagnosticType.PUBLISHER, "Module " +
+						metadata.getName() + ':' + metadata.getVersion() + " was published by an earlier batch"));
+				continue;
 			}
-			metadatas.add(metadata);
+			items.add(new PublishItem(moduleRoot, module, metadata));
 		}
 		if(result.getSeverity() == Diagnostic.ERROR)
 			return;
 
-		int idx = moduleRoots.size();
-		while(--idx >= 0)
-			if(alreadyPublishedPaths.contains(moduleRoots.get(idx).getAbsolutePath()))
-				moduleRoots.remove(idx);
+		List<PublishItem> published = probeAll(items, createReleaseIndex(items), result);
+		for(PublishItem item : published)
+			manifest.put(new PublishManifest.Entry(
+				item.module, String.valueOf(item.metadata.getName()), item.metadata.getVersion(),
+				PublishManifest.State.ALREADY_PUBLISHED, null, 0, null));
+		items.removeAll(published);
 
-		if(moduleRoots.isEmpty()) {
+		if(items.isEmpty()) {
 			result.addChild(new Diagnostic(
 				Diagnostic.INFO, DiagnosticType.PUBLISHER,
 				"All modules have already been published at their current version"));
 			return;
 		}
 
-		ForgeService forgeService = ForgeFactory.eINSTANCE.createForgeService();
-		String[] namesReceiver = new String[2];
-		File builtModules = new File(getBuildDir(), "builtModules");
-		if(!(builtModules.mkdirs() || builtModules.isDirectory())) {
-			result.addChild(new Diagnostic(Diagnostic.ERROR, DiagnosticType.PUBLISHER, "Unable to create directory" +
-					builtModules.getPath()));
+		File builtModules = getBuiltModulesDir(result);
+		if(builtModules == null)
 			return;
-		}
 
-		for(File moduleRoot : moduleRoots) {
-			File moduleArchive;
+		// Build all archives. Nothing is uploaded unless all of them could be built
+		ForgeService forgeService = ForgeFactory.eINSTANCE.createForgeService();
+		for(PublishItem item : items) {
 			try {
-				moduleArchive = buildForge(forgeService, moduleRoot, builtModules, namesReceiver);
+				item.archive = buildArchive(forgeService, item.moduleRoot, builtModules, item.names);
+				manifest.put(createEntry(item, PublishManifest.State.BUILT, null));
 			}
 			catch(IncompleteException e) {
 				result.addChild(new Diagnostic(Diagnostic.ERROR, DiagnosticType.PUBLISHER, e.getMessage()));
-				continue;
-			}
-			if(dryRun) {
-				result.addChild(new Diagnostic(Diagnostic.INFO, DiagnosticType.PUBLISHER, "Module file " +
-						moduleArchive.getName() + " would have been uploaded (but wasn't since this is a dry run)"));
+				manifest.put(createEntry(item, PublishManifest.State.FAILED, e.getMessage()));
 			}
-			else {
-				InputStream gzInput = new FileInputStream(moduleArchive);
-				try {
-					releaseService.create(
-						namesReceiver[0], namesReceiver[1], "Published using GitHub trigger", gzInput,
-						moduleArchive.length());
-					result.addChild(new Diagnostic(Diagnostic.INFO, DiagnosticType.PUBLISHER, "Module file " +
-							moduleArchive.getName() + " has been uploaded"));
-				}
-				catch(HttpResponseException e) {
-					result.addChild(new Diagnostic(
-						Diagnostic.ERROR, DiagnosticType.PUBLISHER, "Unable to publish module " +
-								moduleArchive.getName() + ":" + e.getMessage()));
-					continue;
+		}
+		if(result.getSeverity() == Diagnostic.ERROR)
+			return;
+
+		int failures = publishInLevels(getDependencyLevels(items), manifest, builtModules, result);
+		try {
+			// Fold the journal into the manifest
+			manifest.write();
+		}
+		catch(IOException e) {
+			getLog().warn("Unable to write " + manifest.getFile() + ": " + e.getMessage());
+		}
+		if(failures > 0)
+			result.addChild(new Diagnostic(Diagnostic.INFO, DiagnosticType.PUBLISHER, failures + " of " +
+					items.size() + " modules could not be published. Run again with forge.publish.resume=true " +
+					"to publish the remaining modules"));
+	}
+
+	private boolean isPublished(final Metadata metadata) throws IOException {
+		MetricsRegistry.Timer timer = getMetrics().start(MetricsRegistry.PROBE);
+		try {
+			return getCallExecutor().execute("probe", true, new ForgeCall<Release>() {
+				@Override
+				public Release call() throws IOException {
+					return getMetadataRepository().resolve(metadata.getName(), metadata.getVersion());
 				}
-				finally {
-					StreamUtil.close(gzInput);
+			}) != null;
+		}
+		finally {
+			PhaseMetrics phase = timer.stop();
+			phase.addCount(1);
+			phase.addRemoteCalls(1);
+		}
+	}
+
+	/**
+	 * Publishes the modules one dependency level at a time. The modules of a level are uploaded in
+	 * parallel. A module is skipped when a module that it depends on could not be published.
+	 * 
+	 * @param manifest
+	 *            The manifest that records the outcome or <code>null</code>
+	 * @param builtModules
+	 *            The directory where modules that have not been built yet are built
+	 * @return The number of modules that were not published
+	 */
+	private int publishInLevels(DependencyLevels<PublishItem> levels, final PublishManifest manifest,
+			File builtModules, Diagnostic result) throws Exception {
+		Set<PublishItem> failed = Collections.newSetFromMap(new IdentityHashMap<PublishItem, Boolean>());
+		ForgeService forgeService = ForgeFactory.eINSTANCE.createForgeService();
+		for(List<PublishItem> level : levels.getLevels()) {
+			List<ForgeTaskScope.Subtask<Diagnostic>> uploads = new ArrayList<ForgeTaskScope.Subtask<Diagnostic>>(
+				level.size());
+			List<PublishItem> uploaded = new ArrayList<PublishItem>(level.size());
+			// One scope per level. The next level may depend on any module of this level
+			ForgeTaskScope uploader = createTaskScope("upload", publishThreads);
+			try {
+				nextItem: for(final PublishItem item : level) {
+					for(PublishItem dep : levels.getDependencies(item))
+						if(failed.contains(dep)) {
+							failed.add(item);
+							result.addChild(new Diagnostic(Diagnostic.WARNING, DiagnosticType.PUBLISHER, "Module " +
+									item.metadata.getName() + ':' + item.metadata.getVersion() +
+									" was not published since it depends on " + dep.metadata.getName() +
+									" which could not be published"));
+							continue nextItem;
+						}
+
+					if(item.archive == null) {
+						try {
+							item.archive = buildArchive(forgeService, item.moduleRoot, builtModules, item.names);
+						}
+						catch(IncompleteException e) {
+							failed.add(item);
+							result.addChild(new Diagnostic(Diagnostic.ERROR, DiagnosticType.PUBLISHER, e.getMessage()));
+							continue;
+						}
+					}
+
+					if(dryRun) {
+						result.addChild(new Diagnostic(Diagnostic.INFO, DiagnosticType.PUBLISHER, "Module file " +
+								item.archive.getName() + " would have been uploaded (but wasn't since this is a dry run)"));
+						continue;
+					}
+
+					uploaded.add(item);
+					uploads.add(uploader.fork(new Callable<Diagnostic>() {
+						@Override
+						public Diagnostic call() throws Exception {
+							return uploadItem(item, manifest);
+						}
+					}));
 				}
+				uploader.join();
+			}
+			finally {
+				uploader.close();
+			}
+
+			for(int idx = 0; idx < uploads.size(); ++idx) {
+				Diagnostic diag = uploads.get(idx).get();
+				if(diag.getSeverity() == Diagnostic.ERROR)
+					failed.add(uploaded.get(idx));
+				result.addChild(diag);
+			}
+		}
+		return failed.size();
+	}
+
+	/**
+	 * Probes the given modules concurrently. The diagnostics of the probes are added to
+	 * <code>result</code> in the order of the modules.
+	 * 
+	 * @return The modules that have already been published at their current version
+	 */
+	private List<PublishItem> probeAll(List<PublishItem> items, final ReleaseIndex index, Diagnostic result)
+			throws IOException {
+		List<ForgeTaskScope.Subtask<Boolean>> probes = new ArrayList<ForgeTaskScope.Subtask<Boolean>>(items.size());
+		List<Diagnostic> probeResults = new ArrayList<Diagnostic>(items.size());
+		ForgeTaskScope scope = createTaskScope("probe");
+		try {
+			for(final PublishItem item : items) {
+				final Diagnostic probeResult = new Diagnostic();
+				probeResults.add(probeResult);
+				probes.add(scope.fork(new Callable<Boolean>() {
+					@Override
+					public Boolean call() throws Exception {
+						return Boolean.valueOf(probe(item.metadata, index, probeResult));
+					}
+				}));
+			}
+			scope.join();
+		}
+		finally {
+			scope.close();
+		}
+
+		List<PublishItem> published = new ArrayList<PublishItem>();
+		for(int idx = 0; idx < probes.size(); ++idx) {
+			result.addChildren(probeResults.get(idx).getChildren());
+			if(probes.get(idx).get().booleanValue())
+				published.add(items.get(idx));
+		}
+		return published;
+	}
+
+	/**
+	 * Checks if the module has already been published at its current version and adds a warning to
+	 * <code>result</code> if it has. The index is consulted first. A release that the index lists is
+	 * known to be published. Otherwise the Forge is asked, since the listing may be incomplete or
+	 * out of date and a miss must not lead to an upload of a published release.
+	 * 
+	 * @return <code>true</code> if the module has already been published
+	 */
+	private boolean probe(Metadata metadata, ReleaseIndex index, Diagnostic result) throws Exception {
+		try {
+			QName qname = metadata.getName();
+			Boolean published = qname == null
+					? null
+					: index.isPublished(qname.getQualifier(), qname.getName(), metadata.getVersion());
+			if(!Boolean.TRUE.equals(published))
+				published = Boolean.valueOf(isPublished(metadata));
+			if(published.booleanValue()) {
+				Diagnostic diag = new Diagnostic(Diagnostic.WARNING, DiagnosticType.PUBLISHER, "Module " +
+						metadata.getName() + ':' + metadata.getVersion() + " has already been published");
+				diag.setIssue(ALREADY_PUBLISHED);
+				result.addChild(diag);
+				return true;
+			}
+		}
+		catch(HttpResponseException e) {
+			if(e.getStatusCode() != HttpStatus.SC_NOT_FOUND) {
+				if(!dryRun)
+					throw e;
+				getLog().warn(e);
 			}
+			// This is expected. It just means that the module hasn't
+			// been published yet.
+		}
+		catch(Exception e) {
+			if(!dryRun)
+				throw e;
+			getLog().warn(e);
+		}
+		return false;
+	}
+
+	/**
+	 * Records the outcome of an upload in the manifest. A failure to record it is returned as an
+	 * error instead of being thrown, so that it doesn't cancel the other uploads of the level.
+	 * 
+	 * @return The diagnostic of the upload, or an error if the outcome could not be recorded
+	 */
+	private Diagnostic record(PublishManifest manifest, PublishItem item, PublishManifest.State state, String message,
+			Diagnostic diag) {
+		if(manifest == null)
+			return diag;
+		try {
+			manifest.put(createEntry(item, state, message));
+			return diag;
+		}
+		catch(IOException e) {
+			return new Diagnostic(Diagnostic.ERROR, DiagnosticType.PUBLISHER, diag.getMessage() +
+					". The outcome could not be recorded in " + manifest.getFile().getName() + ": " + e.getMessage());
+		}
+	}
+
+	void setDryRun(boolean dryRun) {
+		this.dryRun = dryRun;
+	}
+
+	private void upload(final File archive, final String owner, final String name) throws IOException {
+		MetricsRegistry.Timer timer = getMetrics().start(MetricsRegistry.UPLOAD);
+		try {
+			// Not idempotent. Only retried when the Forge is known not to have processed the call
+			getCallExecutor().execute(MetricsRegistry.UPLOAD, false, new ForgeCall<Release>() {
+				@Override
+				public Release call() throws IOException {
+					InputStream gzInput = new FileInputStream(archive);
+					try {
+						return getReleaseService().create(
+							owner, name, "Published using GitHub trigger", gzInput, archive.length());
+					}
+					finally {
+						StreamUtil.close(gzInput);
+					}
+				}
+			});
+		}
+		finally {
+			PhaseMetrics upload = timer.stop();
+			upload.addCount(1);
+			upload.addBytes(archive.length());
+			upload.addRemoteCalls(1);
+		}
+	}
+
+	private Diagnostic uploadItem(PublishItem item, PublishManifest manifest) {
+		try {
+			upload(item.archive, item.names[0], item.names[1]);
+		}
+		catch(IOException e) {
+			// Recorded so that a resumed batch retries this module
+			return record(manifest, item, PublishManifest.State.FAILED, e.getMessage(), new Diagnostic(
+				Diagnostic.ERROR, DiagnosticType.PUBLISHER, "Unable to publish module " + item.archive.getName() + ":" +
+						e.getMessage()));
 		}
+		return record(manifest, item, PublishManifest.State.PUBLISHED, null, new Diagnostic(
+			Diagnostic.INFO, DiagnosticType.PUBLISHER, "Module file " + item.archive.getName() + " has been uploaded"));
 	}
 }
@@ -0,0 +1,402 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.cloudsmith.geppetto.common.os.StreamUtil;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Records the outcome of a batch publish, one entry per module. Each change is appended to a
+ * journal next to the manifest so that an interrupted batch can be resumed without publishing,
+ * probing, or building the modules that already went out. The journal is folded into the manifest
+ * when the manifest is {@link #write() written}, and replayed when the manifest is read.
+ */
+public class PublishManifest {
+	/**
+	 * The outcome for one module.
+	 */
+	public static class Entry {
+		private final String module;
+
+		private final String name;
+
+		private final String version;
+
+		private final State state;
+
+		private final String archive;
+
+		private final long size;
+
+		private final String message;
+
+		public Entry(String module, String name, String version, State state, String archive, long size,
+				String message) {
+			this.module = module;
+			this.name = name;
+			this.version = version;
+			this.state = state;
+			this.archive = archive;
+			this.size = size;
+			this.message = message;
+		}
+
+		/**
+		 * @return The file name of the built archive or <code>null</code> if it wasn't built
+		 */
+		public String getArchive() {
+			return archive;
+		}
+
+		/**
+		 * @return A message explaining a failure or <code>null</code>
+		 */
+		public String getMessage() {
+			return message;
+		}
+
+		/**
+		 * @return The path of the module relative to the modules root
+		 */
+		public String getModule() {
+			return module;
+		}
+
+		/**
+		 * @return The full name of the module
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return The size of the archive in bytes
+		 */
+		public long getSize() {
+			return size;
+		}
+
+		public State getState() {
+			return state;
+		}
+
+		public String getVersion() {
+			return version;
+		}
+
+		/**
+		 * @param otherVersion
+		 *            The version the module has now
+		 * @return <code>true</code> if this module has gone out to the Forge at the given version
+		 */
+		public boolean isDone(String otherVersion) {
+			return (state == State.PUBLISHED || state == State.ALREADY_PUBLISHED) && version != null &&
+					version.equals(otherVersion);
+		}
+	}
+
+	public enum State {
+		/**
+		 * The archive has been built but not uploaded
+		 */
+		BUILT,
+
+		/**
+		 * The archive has been uploaded
+		 */
+		PUBLISHED,
+
+		/**
+		 * The Forge already had the release
+		 */
+		ALREADY_PUBLISHED,
+
+		/**
+		 * The module could not be built or uploaded
+		 */
+		FAILED
+	}
+
+	static final String MANIFEST_FILE = "publish-manifest.json";
+
+	static final String JOURNAL_SUFFIX = ".journal";
+
+	/**
+	 * Reads the manifest from the given file and replays its journal. The journal is then folded
+	 * into the manifest, so that no partial line of an interrupted batch is appended to. An empty
+	 * manifest is returned if neither exists.
+	 * 
+	 * @param file
+	 *            The file to read from
+	 * @return The manifest
+	 * @throws IOException
+	 */
+	public static PublishManifest read(File file) throws IOException {
+		PublishManifest manifest = new PublishManifest(file);
+		manifest.readManifest();
+		if(manifest.getJournalFile().exists()) {
+			manifest.replayJournal();
+			manifest.write();
+		}
+		else
+			manifest.written = true;
+		return manifest;
+	}
+
+	private static Entry readEntry(JsonReader json) throws IOException {
+		String module = null;
+		String name = null;
+		String version = null;
+		State state = null;
+		String archive = null;
+		long size = 0;
+		String message = null;
+		json.beginObject();
+		while(json.hasNext()) {
+			String key = json.nextName();
+			if("module".equals(key))
+				module = json.nextString();
+			else if("name".equals(key))
+				name = json.nextString();
+			else if("version".equals(key))
+				version = json.nextString();
+			else if("state".equals(key))
+				state = State.valueOf(json.nextString());
+			else if("archive".equals(key))
+				archive = json.nextString();
+			else if("size".equals(key))
+				size = json.nextLong();
+			else if("message".equals(key))
+				message = json.nextString();
+			else
+				json.skipValue();
+		}
+		json.endObject();
+		return new Entry(module, name, version, state, archive, size, message);
+	}
+
+	private static void writeEntry(JsonWriter json, Entry entry) throws IOException {
+		json.beginObject();
+		json.name("module").value(entry.getModule());
+		writeOptional(json, "name", entry.getName());
+		writeOptional(json, "version", entry.getVersion());
+		json.name("state").value(entry.getState().name());
+		writeOptional(json, "archive", entry.getArchive());
+		if(entry.getSize() > 0)
+			json.name("size").value(entry.getSize());
+		writeOptional(json, "message", entry.getMessage());
+		json.endObject();
+	}
+
+	private static void writeOptional(JsonWriter json, String name, String value) throws IOException {
+		if(value != null)
+			json.name(name).value(value);
+	}
+
+	private final File file;
+
+	private final Map<String, Entry> entries = new TreeMap<String, Entry>();
+
+	/**
+	 * <code>true</code> when the file on disk, together with the journal, holds the entries of
+	 * this manifest
+	 */
+	private boolean written;
+
+	/**
+	 * Creates an empty manifest that will be written to the given file.
+	 * 
+	 * @param file
+	 *            The file to write to
+	 */
+	public PublishManifest(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * @param module
+	 *            The path of the module relative to the modules root
+	 * @return The entry for the module or <code>null</code> if the module has no entry
+	 */
+	public synchronized Entry getEntry(String module) {
+		return entries.get(module);
+	}
+
+	/**
+	 * @return A snapshot of all entries sorted on module path
+	 */
+	public synchronized List<Entry> getEntries() {
+		return new ArrayList<Entry>(entries.values());
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return The file that changes are appended to until the manifest is written
+	 */
+	public File getJournalFile() {
+		return new File(file.getPath() + JOURNAL_SUFFIX);
+	}
+
+	/**
+	 * Adds or replaces the entry for a module and appends it to the journal. The first change of a
+	 * new manifest writes the whole manifest instead, so that what an earlier batch left on disk is
+	 * replaced.
+	 * 
+	 * @param entry
+	 *            The new entry
+	 * @throws IOException
+	 */
+	public synchronized void put(Entry entry) throws IOException {
+		entries.put(entry.getModule(), entry);
+		if(!written) {
+			write();
+			return;
+		}
+
+		StringWriter line = new StringWriter();
+		writeEntry(new JsonWriter(line), entry);
+		line.write('\n');
+		Writer out = new OutputStreamWriter(new FileOutputStream(getJournalFile(), true), AbstractForgeMojo.UTF_8);
+		try {
+			out.write(line.toString());
+		}
+		finally {
+			StreamUtil.close(out);
+		}
+	}
+
+	private void readManifest() throws IOException {
+		Reader reader;
+		try {
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), AbstractForgeMojo.UTF_8));
+		}
+		catch(FileNotFoundException e) {
+			return;
+		}
+		try {
+			JsonReader json = new JsonReader(reader);
+			json.beginObject();
+			while(json.hasNext()) {
+				if(!"modules".equals(json.nextName())) {
+					json.skipValue();
+					continue;
+				}
+				json.beginArray();
+				while(json.hasNext()) {
+					Entry entry = readEntry(json);
+					if(entry.getModule() != null && entry.getState() != null)
+						entries.put(entry.getModule(), entry);
+				}
+				json.endArray();
+			}
+			json.endObject();
+		}
+		catch(RuntimeException e) {
+			throw new IOException("Unable to read " + file.getAbsolutePath() + ": " + e.getMessage());
+		}
+		finally {
+			StreamUtil.close(reader);
+		}
+	}
+
+	private void replayJournal() throws IOException {
+		BufferedReader reader;
+		try {
+			reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(getJournalFile()), AbstractForgeMojo.UTF_8));
+		}
+		catch(FileNotFoundException e) {
+			return;
+		}
+		try {
+			String line;
+			while((line = reader.readLine()) != null) {
+				Entry entry;
+				try {
+					entry = readEntry(new JsonReader(new StringReader(line)));
+				}
+				catch(RuntimeException e) {
+					// A line that was cut short when the batch was interrupted
+					break;
+				}
+				catch(IOException e) {
+					break;
+				}
+				if(entry.getModule() != null && entry.getState() != null)
+					entries.put(entry.getModule(), entry);
+			}
+		}
+		finally {
+			StreamUtil.close(reader);
+		}
+	}
+
+	/**
+	 * Writes the manifest and removes the journal. The file is replaced atomically so that a crash
+	 * never leaves a truncated manifest behind.
+	 * 
+	 * @throws IOException
+	 */
+	public synchronized void write() throws IOException {
+		File dir = file.getParentFile();
+		if(dir != null && !(dir.mkdirs() || dir.isDirectory()))
+			throw new IOException("Unable to create directory " + dir.getAbsolutePath());
+
+		File tmpFile = new File(file.getPath() + ".tmp");
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile), AbstractForgeMojo.UTF_8));
+		try {
+			JsonWriter json = new JsonWriter(out);
+			json.setIndent("  ");
+			json.beginObject();
+			json.name("modules").beginArray();
+			for(Entry entry : entries.values())
+				writeEntry(json, entry);
+			json.endArray();
+			json.endObject();
+			json.flush();
+		}
+		finally {
+			StreamUtil.close(out);
+		}
+		if(!(tmpFile.renameTo(file) || file.delete() && tmpFile.renameTo(file)))
+			throw new IOException("Unable to rename " + tmpFile + " to " + file);
+		File journal = getJournalFile();
+		if(!journal.delete() && journal.exists())
+			throw new IOException("Unable to delete " + journal);
+		written = true;
+	}
+}
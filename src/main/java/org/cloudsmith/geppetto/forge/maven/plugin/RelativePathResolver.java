@@ -0,0 +1,94 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.io.File;
+import java.nio.file.Path;
+
+/**
+ * Computes the paths of files relative to a root directory, such as the modules root, with
+ * <tt>/</tt> as separator. The normalized root is computed once. A path below the root is then
+ * cut out of the absolute path of the file with a plain prefix comparison. Other paths, i.e. paths
+ * with <tt>.</tt> or <tt>..</tt> segments or paths outside of the root, are relativized with
+ * {@link Path#relativize(Path)}. The results are interned in a
+ * {@link StringPool} since the same paths are produced over and over for diagnostics. A resolver
+ * is immutable and thread safe.
+ */
+public class RelativePathResolver {
+	private static String toPortable(String path) {
+		return File.separatorChar == '/'
+				? path
+				: path.replace(File.separatorChar, '/');
+	}
+
+	private final Path root;
+
+	private final String rootPath;
+
+	private final String rootPrefix;
+
+	private final StringPool pool;
+
+	/**
+	 * @param root
+	 *            The directory that paths are made relative to
+	 * @param pool
+	 *            The pool that the relative paths are interned in
+	 */
+	public RelativePathResolver(File root, StringPool pool) {
+		this.root = root.getAbsoluteFile().toPath().normalize();
+		this.pool = pool;
+		String path = toPortable(this.root.toString());
+		rootPath = path;
+		rootPrefix = path.endsWith("/")
+				? path
+				: path + '/';
+	}
+
+	/**
+	 * @param file
+	 *            The file or directory
+	 * @return The path of the file relative to the root. Empty if the file is the root and starting
+	 *         with <tt>../</tt> if the file is outside of the root
+	 */
+	public String getRelativePath(File file) {
+		String path = toPortable(file.getAbsolutePath());
+		if(path.startsWith(rootPrefix) && isNormal(path, rootPrefix.length()))
+			return pool.intern(path.substring(rootPrefix.length()));
+		if(path.equals(rootPath))
+			return "";
+		return pool.intern(toPortable(root.relativize(file.getAbsoluteFile().toPath().normalize()).toString()));
+	}
+
+	/**
+	 * Checks that the path from <code>start</code> has no empty, <tt>.</tt>, or <tt>..</tt>
+	 * segments and no trailing separator, i.e. that it needs no normalization.
+	 */
+	private boolean isNormal(String path, int start) {
+		int length = path.length();
+		int segmentStart = start;
+		for(int idx = start; idx <= length; ++idx) {
+			if(idx < length && path.charAt(idx) != '/')
+				continue;
+			int segmentLength = idx - segmentStart;
+			if(segmentLength == 0)
+				return false;
+			if(path.charAt(segmentStart) == '.' &&
+					(segmentLength == 1 || segmentLength == 2 && path.charAt(segmentStart + 1) == '.'))
+				return false;
+			segmentStart = idx + 1;
+		}
+		return true;
+	}
+}
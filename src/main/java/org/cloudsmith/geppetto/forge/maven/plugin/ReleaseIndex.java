@@ -0,0 +1,284 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+import org.cloudsmith.geppetto.common.os.StreamUtil;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * An in-memory index of the releases that the Forge has for a set of owners. Each owner's release
+ * listing is fetched once, page by page, and parsed as a stream so that only module names and
+ * versions are kept. Questions about whether a module has been published can then be answered
+ * without a call per module. Owner and module names are matched without regard to case.
+ * <p>
+ * A listing is either a plain array of releases or an object with the releases in
+ * <tt>results</tt> and the <tt>next</tt> and <tt>total</tt> of the listing in
+ * <tt>pagination</tt>. The <tt>next</tt> link is followed when present. Plain arrays are read
+ * until an empty page is returned, since the Forge may return fewer releases than requested.
+ * Reading also stops at a page that adds no new releases, so a server that ignores the offset
+ * can't keep the listing going forever.
+ * </p>
+ */
+public class ReleaseIndex {
+	/**
+	 * One page of a release listing
+	 */
+	private static class Page {
+		int count;
+
+		boolean paginated;
+
+		String next;
+
+		int total = -1;
+	}
+
+	static final int DEFAULT_PAGE_SIZE = 100;
+
+	private static String encode(String segment) throws UnsupportedEncodingException {
+		return URLEncoder.encode(segment, "UTF-8").replace("+", "%20");
+	}
+
+	private static String key(String name, String version) {
+		return name.toLowerCase(Locale.ENGLISH) + '@' + version;
+	}
+
+	private static String ownerKey(String owner) {
+		return owner.toLowerCase(Locale.ENGLISH);
+	}
+
+	private static String readModuleName(JsonReader json) throws IOException {
+		String name = null;
+		json.beginObject();
+		while(json.hasNext()) {
+			if("name".equals(json.nextName()) && json.peek() == JsonToken.STRING)
+				name = json.nextString();
+			else
+				json.skipValue();
+		}
+		json.endObject();
+		return name;
+	}
+
+	private final String baseURL;
+
+	private final HttpTransport transport;
+
+	private final ForgeCallExecutor executor;
+
+	private final int pageSize;
+
+	private final Map<String, Set<String>> releasesByOwner = new ConcurrentHashMap<String, Set<String>>();
+
+	private final AtomicInteger pageCount = new AtomicInteger();
+
+	/**
+	 * @param baseURL
+	 *            The base URL of the v2 API, ending with a slash
+	 * @param transport
+	 *            The transport used for the listing calls
+	 * @param executor
+	 *            The executor that retries and rate limits the listing calls
+	 * @param pageSize
+	 *            The number of releases to request per page
+	 */
+	public ReleaseIndex(String baseURL, HttpTransport transport, ForgeCallExecutor executor, int pageSize) {
+		this.baseURL = baseURL;
+		this.transport = transport;
+		this.executor = executor;
+		this.pageSize = pageSize;
+	}
+
+	private URL createPageURL(String owner, int offset) throws IOException {
+		return new URL(baseURL + "users/" + encode(owner) + "/releases?offset=" + offset + "&limit=" + pageSize);
+	}
+
+	/**
+	 * @return The number of pages fetched so far
+	 */
+	public int getPageCount() {
+		return pageCount.get();
+	}
+
+	/**
+	 * @param owner
+	 *            The owner of the module
+	 * @param name
+	 *            The name of the module without owner
+	 * @param version
+	 *            The version of the release
+	 * @return {@link Boolean#TRUE} if the release is published, {@link Boolean#FALSE} if it isn't, or
+	 *         <code>null</code> if the owner hasn't been {@link #load(String) loaded}
+	 */
+	public Boolean isPublished(String owner, String name, String version) {
+		Set<String> releases = owner == null
+				? null
+				: releasesByOwner.get(ownerKey(owner));
+		if(releases == null || name == null || version == null)
+			return null;
+		return Boolean.valueOf(releases.contains(key(name, version)));
+	}
+
+	/**
+	 * Fetches all releases of the given owner. Owners that have already been loaded are not fetched
+	 * again.
+	 * 
+	 * @param owner
+	 *            The owner
+	 * @return <code>true</code> if the owner was loaded, <code>false</code> if the Forge has no
+	 *         listing for the owner, in which case each release must be resolved by itself
+	 * @throws IOException
+	 */
+	public boolean load(final String owner) throws IOException {
+		if(releasesByOwner.containsKey(ownerKey(owner)))
+			return true;
+
+		final Set<String> releases = new HashSet<String>();
+		int seen = 0;
+		URL url = createPageURL(owner, 0);
+		for(;;) {
+			final URL pageURL = url;
+			int known = releases.size();
+			Page page;
+			try {
+				page = executor.execute("list", true, new ForgeCall<Page>() {
+					@Override
+					public Page call() throws IOException {
+						return readPage(pageURL, owner, releases);
+					}
+				});
+			}
+			catch(HttpResponseException e) {
+				if(e.getStatusCode() == HttpStatus.SC_NOT_FOUND && seen == 0)
+					return false;
+				throw e;
+			}
+			seen += page.count;
+			if(page.count == 0 || page.total >= 0 && seen >= page.total)
+				break;
+			if(releases.size() == known)
+				// Nothing new, e.g. from a server or proxy that ignores the offset
+				break;
+			if(page.next != null)
+				url = new URL(pageURL, page.next);
+			else if(page.paginated)
+				// The last page of a paginated listing has no next link
+				break;
+			else
+				url = createPageURL(owner, seen);
+		}
+		releasesByOwner.put(ownerKey(owner), releases);
+		return true;
+	}
+
+	private Page readPage(URL url, String owner, Set<String> releases) throws IOException {
+		pageCount.incrementAndGet();
+		HttpURLConnection conn = transport.open(url);
+		conn.setRequestProperty("Accept", "application/json");
+		int status = conn.getResponseCode();
+		if(status != HttpURLConnection.HTTP_OK) {
+			InputStream err = conn.getErrorStream();
+			if(err != null)
+				StreamUtil.close(err);
+			throw new HttpResponseException(status, "Unable to list releases of " + owner + ": " +
+					conn.getResponseMessage());
+		}
+
+		InputStream in = conn.getInputStream();
+		try {
+			JsonReader json = new JsonReader(new BufferedReader(new InputStreamReader(in, AbstractForgeMojo.UTF_8)));
+			Page page = new Page();
+			if(json.peek() == JsonToken.BEGIN_ARRAY)
+				readReleases(json, releases, page);
+			else {
+				json.beginObject();
+				while(json.hasNext()) {
+					String field = json.nextName();
+					if("results".equals(field) && json.peek() == JsonToken.BEGIN_ARRAY)
+						readReleases(json, releases, page);
+					else if("pagination".equals(field) && json.peek() == JsonToken.BEGIN_OBJECT)
+						readPagination(json, page);
+					else
+						json.skipValue();
+				}
+				json.endObject();
+			}
+			return page;
+		}
+		catch(RuntimeException e) {
+			throw new IOException("Unable to parse release listing of " + owner + ": " + e.getMessage());
+		}
+		finally {
+			StreamUtil.close(in);
+		}
+	}
+
+	private void readPagination(JsonReader json, Page page) throws IOException {
+		page.paginated = true;
+		json.beginObject();
+		while(json.hasNext()) {
+			String field = json.nextName();
+			if("next".equals(field) && json.peek() == JsonToken.STRING)
+				page.next = json.nextString();
+			else if("total".equals(field) && json.peek() == JsonToken.NUMBER)
+				page.total = json.nextInt();
+			else
+				json.skipValue();
+		}
+		json.endObject();
+	}
+
+	private void readReleases(JsonReader json, Set<String> releases, Page page) throws IOException {
+		json.beginArray();
+		while(json.hasNext()) {
+			String name = null;
+			String version = null;
+			json.beginObject();
+			while(json.hasNext()) {
+				String field = json.nextName();
+				if("version".equals(field) && json.peek() == JsonToken.STRING)
+					version = json.nextString();
+				else if("module".equals(field) && json.peek() == JsonToken.BEGIN_OBJECT)
+					name = readModuleName(json);
+				else
+					// Metadata and other large members are never materialized
+					json.skipValue();
+			}
+			json.endObject();
+			if(name != null && version != null)
+				releases.add(key(name, version));
+			++page.count;
+		}
+		json.endArray();
+	}
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+/**
+ * The machine readable formats in which the diagnostic result of a goal can be reported.
+ */
+public enum ReportFormat {
+	/**
+	 * The diagnostic tree in plain JSON
+	 */
+	JSON("json") {
+		@Override
+		public DiagnosticReportWriter createWriter() {
+			return new JsonReportWriter();
+		}
+	},
+
+	/**
+	 * Static Analysis Results Interchange Format, version 2.1.0
+	 */
+	SARIF("sarif") {
+		@Override
+		public DiagnosticReportWriter createWriter() {
+			return new SarifReportWriter();
+		}
+	},
+
+	/**
+	 * JUnit XML, as understood by most CI servers
+	 */
+	JUNIT("junit.xml") {
+		@Override
+		public DiagnosticReportWriter createWriter() {
+			return new JUnitReportWriter();
+		}
+	};
+
+	private final String fileExtension;
+
+	private ReportFormat(String fileExtension) {
+		this.fileExtension = fileExtension;
+	}
+
+	public abstract DiagnosticReportWriter createWriter();
+
+	/**
+	 * @return The extension, without leading dot, used for report files of this format
+	 */
+	public String getFileExtension() {
+		return fileExtension;
+	}
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+
+/**
+ * Decides if a failed Forge call should be retried and how long to wait before the next attempt. The
+ * wait grows exponentially from the initial delay up to the maximum delay and a random part of it,
+ * controlled by the jitter, is removed so that concurrent callers do not retry in lockstep.
+ */
+public class RetryPolicy {
+	/**
+	 * Too Many Requests, not defined by {@link HttpStatus}
+	 */
+	public static final int SC_TOO_MANY_REQUESTS = 429;
+
+	private final int maxRetries;
+
+	private final long initialDelay;
+
+	private final long maxDelay;
+
+	private final double jitter;
+
+	private final int[] retryableStatusCodes;
+
+	private final Random random = new Random();
+
+	/**
+	 * @param maxRetries
+	 *            The maximum number of retries after the first attempt
+	 * @param initialDelay
+	 *            The delay in milliseconds before the first retry
+	 * @param maxDelay
+	 *            The upper bound in milliseconds of the delay
+	 * @param jitter
+	 *            The fraction, between 0 and 1, of the delay that is randomized
+	 * @param retryableStatusCodes
+	 *            The HTTP status codes that denote a transient failure
+	 */
+	public RetryPolicy(int maxRetries, long initialDelay, long maxDelay, double jitter, int[] retryableStatusCodes) {
+		this.maxRetries = Math.max(0, maxRetries);
+		this.initialDelay = Math.max(0, initialDelay);
+		this.maxDelay = Math.max(this.initialDelay, maxDelay);
+		this.jitter = Math.min(1.0, Math.max(0.0, jitter));
+		this.retryableStatusCodes = retryableStatusCodes == null
+				? new int[0]
+				: retryableStatusCodes.clone();
+		Arrays.sort(this.retryableStatusCodes);
+	}
+
+	/**
+	 * Computes the delay before the retry that follows the given number of retries.
+	 *
+	 * @param retries
+	 *            The number of retries performed so far
+	 * @return The delay in milliseconds
+	 */
+	public long getDelay(int retries) {
+		long delay = initialDelay;
+		for(int idx = 0; idx < retries && delay < maxDelay; ++idx)
+			delay <<= 1;
+		delay = Math.min(delay, maxDelay);
+		double randomPart;
+		synchronized(random) {
+			randomPart = random.nextDouble();
+		}
+		return delay - (long) (delay * jitter * randomPart);
+	}
+
+	public int getMaxRetries() {
+		return maxRetries;
+	}
+
+	/**
+	 * Checks if the given failure was caused by a condition that is likely to go away, such as a
+	 * broken connection, a timeout, or a retryable status code.
+	 *
+	 * @param e
+	 *            The failure
+	 * @return <code>true</code> if the failure is transient
+	 */
+	public boolean isTransient(IOException e) {
+		if(e instanceof HttpResponseException)
+			return isRetryableStatus(((HttpResponseException) e).getStatusCode());
+		return !(e instanceof UnknownHostException || e instanceof CircuitBreaker.OpenException);
+	}
+
+	/**
+	 * Checks if a call that failed with the given exception can be retried. A call that is not
+	 * idempotent is only retried when it is certain that the Forge did not process it, i.e. when the
+	 * connection could not be established or the Forge asked the client to come back later.
+	 *
+	 * @param e
+	 *            The failure
+	 * @param idempotent
+	 *            <code>true</code> if the call can be repeated without side effects
+	 * @return <code>true</code> if the call can be retried
+	 */
+	public boolean isRetryable(IOException e, boolean idempotent) {
+		if(!isTransient(e))
+			return false;
+		if(idempotent || e instanceof ConnectException)
+			return true;
+		if(e instanceof HttpResponseException) {
+			int status = ((HttpResponseException) e).getStatusCode();
+			return status == HttpStatus.SC_SERVICE_UNAVAILABLE || status == SC_TOO_MANY_REQUESTS;
+		}
+		return false;
+	}
+
+	public boolean isRetryableStatus(int status) {
+		return Arrays.binarySearch(retryableStatusCodes, status) >= 0;
+	}
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes all diagnostics that carry a message as results of a SARIF 2.1.0 log.
+ */
+public class SarifReportWriter extends DiagnosticReportWriter {
+	static final String SARIF_SCHEMA = "https://json.schemastore.org/sarif-2.1.0.json";
+
+	static final String TOOL_NAME = "forge-maven-plugin";
+
+	private static String getLevel(Diagnostic diagnostic) {
+		switch(diagnostic.getSeverity()) {
+			case Diagnostic.FATAL:
+			case Diagnostic.ERROR:
+				return "error";
+			case Diagnostic.WARNING:
+				return "warning";
+			case Diagnostic.INFO:
+				return "note";
+			default:
+				return "none";
+		}
+	}
+
+	private static void writeResult(JsonWriter json, Diagnostic diagnostic) throws IOException {
+		json.beginObject();
+		String ruleId = diagnostic.getIssue();
+		if(ruleId == null)
+			ruleId = diagnostic.getType().name();
+		json.name("ruleId").value(ruleId);
+		json.name("level").value(getLevel(diagnostic));
+		json.name("message").beginObject().name("text").value(diagnostic.getMessage()).endObject();
+
+		String resourcePath = diagnostic.getResourcePath();
+		if(resourcePath != null) {
+			json.name("locations").beginArray().beginObject();
+			json.name("physicalLocation").beginObject();
+			json.name("artifactLocation").beginObject().name("uri").value(resourcePath).endObject();
+			int line = diagnostic.getLine();
+			int offset = diagnostic.getOffset();
+			if(line > 0 || offset >= 0) {
+				json.name("region").beginObject();
+				if(line > 0)
+					json.name("startLine").value(line);
+				if(offset >= 0) {
+					json.name("charOffset").value(offset);
+					if(diagnostic.getLength() >= 0)
+						json.name("charLength").value(diagnostic.getLength());
+				}
+				json.endObject();
+			}
+			json.endObject();
+			json.endObject().endArray();
+		}
+		json.endObject();
+	}
+
+	@Override
+	public void write(Diagnostic diagnostic, String name, Writer out) throws IOException {
+		JsonWriter json = new JsonWriter(out);
+		json.beginObject();
+		json.name("version").value("2.1.0");
+		json.name("$schema").value(SARIF_SCHEMA);
+		json.name("runs").beginArray().beginObject();
+		json.name("tool").beginObject().name("driver").beginObject();
+		json.name("name").value(TOOL_NAME);
+		json.endObject().endObject();
+		json.name("automationDetails").beginObject().name("id").value(name).endObject();
+		json.name("results").beginArray();
+
+		DiagnosticTreeIterator itor = new DiagnosticTreeIterator(diagnostic);
+		while(itor.hasNext()) {
+			Diagnostic diag = itor.next();
+			if(diag.getMessage() != null)
+				writeResult(json, diag);
+		}
+		json.endArray();
+		json.endObject().endArray();
+		json.endObject();
+		json.flush();
+	}
+}
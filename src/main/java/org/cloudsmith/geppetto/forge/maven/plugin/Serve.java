@@ -0,0 +1,461 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.security.MessageDigest;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.cloudsmith.geppetto.common.os.StreamUtil;
+import org.cloudsmith.geppetto.pp.dsl.validation.IValidationAdvisor.ComplianceLevel;
+import org.cloudsmith.geppetto.validation.DiagnosticType;
+
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Goal which runs a local HTTP service that validates and publishes on request. The JVM, the
+ * Puppet injectors, and the connection to the Forge stay initialized between requests, so a
+ * request pays only for the work itself. The service understands:
+ * <ul>
+ * <li><tt>POST /validate?modulesRoot={dir}[&amp;complianceLevel={level}]</tt></li>
+ * <li><tt>POST /publish?modulesRoot={dir}[&amp;dryRun=true]</tt></li>
+ * <li><tt>GET /status</tt></li>
+ * <li><tt>POST /shutdown</tt></li>
+ * </ul>
+ * Validation and publishing respond with the diagnostic as JSON, as written by
+ * {@link JsonReportWriter}, and with the {@link Diagnostic#getHttpCode() HTTP code} of the
+ * diagnostic. Validation uses the validation parameters of this goal.
+ * <p>
+ * Every request must carry the <tt>X-Forge-Serve-Token</tt> header with the configured
+ * {@link #token}. Requests with an <tt>Origin</tt> header are rejected, so web pages can't make
+ * the service validate or publish.
+ * </p>
+ * <p>
+ * Requests are queued on a {@link JobScheduler}, keyed on the goal and the optional
+ * <tt>repository</tt> and <tt>branch</tt> parameters. A webhook that fires once per push
+ * therefore only causes work for the latest commit: a queued request is answered with status 409
+ * when a newer request with the same key arrives, and a running validation is canceled and
+ * answered with what it found so far. A running publish is always completed since stopping it
+ * could leave a partially published set of modules. The repository defaults to the modules root.
+ * The jobs themselves are run one at a time since the Puppet injectors are registered globally.
+ * </p>
+ */
+@Mojo(name = "serve", requiresProject = false)
+public class Serve extends Validate {
+	static final String TOKEN_HEADER = "X-Forge-Serve-Token";
+
+	private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+		Map<String, String> params = new HashMap<String, String>();
+		if(query == null)
+			return params;
+		for(String pair : query.split("&")) {
+			int eq = pair.indexOf('=');
+			if(eq > 0)
+				params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"), URLDecoder.decode(
+					pair.substring(eq + 1), "UTF-8"));
+		}
+		return params;
+	}
+
+	/**
+	 * A request that runs one of the executions of this service.
+	 */
+	private abstract class ServeJob extends JobScheduler.Job<Diagnostic> {
+		private final String root;
+
+		private volatile AbstractForgeMojo execution;
+
+		private volatile boolean stopped;
+
+		ServeJob(String repository, String key, String root) {
+			super(repository, key);
+			this.root = root;
+		}
+
+		@Override
+		public Diagnostic call() throws Exception {
+			synchronized(jobLock) {
+				if(isSuperseded())
+					return null;
+
+				AbstractForgeMojo current = prepare();
+				jobCount.incrementAndGet();
+				current.setModulesRoot(new File(root));
+				if(current instanceof Validate)
+					((Validate) current).clearCancel();
+				long start = System.nanoTime();
+				execution = current;
+				try {
+					Diagnostic diagnostic = current.run();
+					stopped = current instanceof Validate && ((Validate) current).wasCanceled();
+					return diagnostic;
+				}
+				finally {
+					execution = null;
+					getLog().info(
+						current.getActionName() + " of " + root + " took " + (System.nanoTime() - start) / 1000000 +
+								" ms");
+				}
+			}
+		}
+
+		@Override
+		protected void cancel() {
+			// Only a validation can be stopped halfway without leaving anything behind. The
+			// execution is only set while this job holds the job lock, so another job is never
+			// canceled by mistake
+			AbstractForgeMojo current = execution;
+			if(current instanceof Validate)
+				((Validate) current).cancel();
+		}
+
+		String getActionName() {
+			AbstractForgeMojo current = execution;
+			return current == null
+					? Serve.this.getActionName()
+					: current.getActionName();
+		}
+
+		/**
+		 * @return <code>true</code> if the job was stopped halfway since it was superseded
+		 */
+		boolean isStopped() {
+			return stopped;
+		}
+
+		/**
+		 * Configures the execution that runs this job. Called while holding the job lock.
+		 */
+		abstract AbstractForgeMojo prepare();
+	}
+
+	/**
+	 * The address that the service listens on. Requests name directories on this host, so the
+	 * service should not be reachable from other hosts.
+	 */
+	@Parameter(property = "forge.serve.host", defaultValue = "127.0.0.1")
+	private String host = "127.0.0.1";
+
+	/**
+	 * The port that the service listens on. Zero selects a free port.
+	 */
+	@Parameter(property = "forge.serve.port", defaultValue = "8077")
+	private int port = 8077;
+
+	/**
+	 * The shared secret that clients must send in the <tt>X-Forge-Serve-Token</tt> header. When no
+	 * token is configured, the header must still be present. Browsers don't send such a header to
+	 * another origin without a preflight request, which the service never approves.
+	 */
+	@Parameter(property = "forge.serve.token")
+	private String token;
+
+	/**
+	 * The number of requests that may be scheduled at the same time. The jobs still take turns on
+	 * the Puppet injectors, so more workers mostly helps when requests wait for the Forge.
+	 */
+	@Parameter(property = "forge.serve.workers", defaultValue = "1")
+	private int workers = 1;
+
+	private final Object jobLock = new Object();
+
+	private final Map<ComplianceLevel, Validate> validators = new EnumMap<ComplianceLevel, Validate>(
+		ComplianceLevel.class);
+
+	private final AtomicInteger jobCount = new AtomicInteger();
+
+	private final CountDownLatch stopped = new CountDownLatch(1);
+
+	private transient Publish publisher;
+
+	private transient JobScheduler scheduler;
+
+	private transient volatile HttpServer server;
+
+	private transient long startTime;
+
+	@Override
+	protected String getActionName() {
+		return "Serving";
+	}
+
+	private Publish getPublisher() {
+		if(publisher == null) {
+			publisher = new Publish();
+			publisher.configureFrom(this);
+		}
+		return publisher;
+	}
+
+	/**
+	 * @return The address that the service listens on, or <code>null</code> if it isn't running
+	 */
+	InetSocketAddress getServerAddress() {
+		HttpServer current = server;
+		return current == null
+				? null
+				: current.getAddress();
+	}
+
+	private Validate getValidator(ComplianceLevel level) {
+		// One execution per level so that each keeps its own injector warm
+		Validate validator = validators.get(level);
+		if(validator == null) {
+			validator = new Validate();
+			validator.configureFrom(this);
+			validator.setComplianceLevel(level);
+			validators.put(level, validator);
+		}
+		return validator;
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			if(!isAuthorized(exchange)) {
+				sendError(exchange, 403, "Requests must carry a valid " + TOKEN_HEADER + " header and no Origin header");
+				return;
+			}
+
+			String method = exchange.getRequestMethod();
+			String path = exchange.getRequestURI().getPath();
+			if("/status".equals(path)) {
+				StringWriter body = new StringWriter();
+				JsonWriter json = new JsonWriter(body);
+				json.beginObject();
+				json.name("jobs").value(jobCount.get());
+				json.name("queued").value(scheduler.getQueuedCount());
+				json.name("coalesced").value(scheduler.getCoalescedCount());
+				json.name("cancelled").value(scheduler.getCancelledCount());
+				json.name("uptimeMillis").value(System.currentTimeMillis() - startTime);
+				json.endObject();
+				json.flush();
+				send(exchange, 200, body.toString());
+				return;
+			}
+
+			if(!"POST".equals(method)) {
+				sendError(exchange, 405, "Method not allowed");
+				return;
+			}
+
+			if("/shutdown".equals(path)) {
+				send(exchange, 200, "{}");
+				stopped.countDown();
+				return;
+			}
+
+			boolean validate = "/validate".equals(path);
+			if(!(validate || "/publish".equals(path))) {
+				sendError(exchange, 404, "Not found");
+				return;
+			}
+
+			Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+			String root = params.get("modulesRoot");
+			if(root == null || !new File(root).isDirectory()) {
+				sendError(exchange, 400, "The modulesRoot parameter must name a directory");
+				return;
+			}
+
+			ServeJob job;
+			String repository = params.containsKey("repository")
+					? params.get("repository")
+					: new File(root).getAbsolutePath();
+			String key = path + ':' + repository + ':' + (params.containsKey("branch")
+					? params.get("branch")
+					: "");
+			if(validate) {
+				ComplianceLevel level = getComplianceLevel();
+				try {
+					if(params.containsKey("complianceLevel"))
+						level = ComplianceLevel.valueOf(params.get("complianceLevel"));
+				}
+				catch(IllegalArgumentException e) {
+					sendError(exchange, 400, "Invalid complianceLevel: " + params.get("complianceLevel"));
+					return;
+				}
+				final ComplianceLevel jobLevel = level;
+				job = new ServeJob(repository, key, root) {
+					@Override
+					AbstractForgeMojo prepare() {
+						return getValidator(jobLevel);
+					}
+				};
+			}
+			else {
+				final boolean dryRun = Boolean.parseBoolean(params.get("dryRun"));
+				job = new ServeJob(repository, key, root) {
+					@Override
+					AbstractForgeMojo prepare() {
+						Publish publish = getPublisher();
+						publish.setDryRun(dryRun);
+						return publish;
+					}
+				};
+			}
+
+			Diagnostic diagnostic;
+			try {
+				diagnostic = scheduler.submit(job).get();
+			}
+			catch(CancellationException e) {
+				diagnostic = null;
+			}
+			catch(ExecutionException e) {
+				getLog().warn(job.getActionName() + " of " + root + " failed", e.getCause());
+				sendError(exchange, 500, job.getActionName() + " failed: " + e.getCause().getMessage());
+				return;
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				sendError(exchange, 503, "The service is shutting down");
+				return;
+			}
+
+			if(diagnostic == null || job.isStopped()) {
+				// Dropped or stopped halfway. The caller is expected to act on the response to the
+				// newer request instead. A superseded publish that ran to completion is reported as is
+				if(diagnostic == null)
+					diagnostic = new Diagnostic();
+				diagnostic.addChild(new Diagnostic(
+					Diagnostic.WARNING, DiagnosticType.GEPPETTO, "Superseded by a newer request for " + key));
+				sendDiagnostic(exchange, 409, diagnostic, job.getActionName());
+				return;
+			}
+			sendDiagnostic(exchange, diagnostic.getHttpCode(), diagnostic, job.getActionName());
+		}
+		finally {
+			exchange.close();
+		}
+	}
+
+	private boolean isAuthorized(HttpExchange exchange) {
+		Headers headers = exchange.getRequestHeaders();
+		if(headers.containsKey("Origin"))
+			return false;
+		String presented = headers.getFirst(TOKEN_HEADER);
+		if(presented == null)
+			return false;
+		// Constant time comparison so that the token can't be guessed from response times
+		return isNull(token) || MessageDigest.isEqual(presented.getBytes(UTF_8), token.getBytes(UTF_8));
+	}
+
+	@Override
+	protected void invoke(Diagnostic result) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(host, port), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				Serve.this.handle(exchange);
+			}
+		});
+		scheduler = new JobScheduler(Math.max(1, workers));
+		ExecutorService executor = Executors.newCachedThreadPool();
+		server.setExecutor(executor);
+		startTime = System.currentTimeMillis();
+		server.start();
+		try {
+			InetSocketAddress address = server.getAddress();
+			getLog().info(
+				"Serving validation requests on http://" + address.getHostString() + ':' + address.getPort() + '/');
+			stopped.await();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			server.stop(0);
+			server = null;
+			scheduler.shutdown();
+			executor.shutdownNow();
+		}
+		result.addChild(new Diagnostic(Diagnostic.INFO, DiagnosticType.GEPPETTO, "Served " + jobCount.get() +
+				" request(s)"));
+	}
+
+	private void send(HttpExchange exchange, int status, String json) throws IOException {
+		byte[] bytes = json.getBytes(UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		try {
+			out.write(bytes);
+		}
+		finally {
+			StreamUtil.close(out);
+		}
+	}
+
+	private void sendDiagnostic(HttpExchange exchange, int status, Diagnostic diagnostic, String actionName)
+			throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, 0);
+		Writer out = new BufferedWriter(
+			new OutputStreamWriter(exchange.getResponseBody(), UTF_8), DiagnosticReportWriter.BUFFER_SIZE);
+		try {
+			new JsonReportWriter().write(diagnostic, actionName, out);
+		}
+		finally {
+			StreamUtil.close(out);
+		}
+	}
+
+	private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		sendDiagnostic(
+			exchange, status, new Diagnostic(Diagnostic.ERROR, DiagnosticType.GEPPETTO, message), getActionName());
+	}
+
+	/**
+	 * Sets the port when the goal is used outside of Maven, i.e. from tests.
+	 * 
+	 * @param port
+	 *            The port to listen on. Zero selects a free port
+	 */
+	void setPort(int port) {
+		this.port = port;
+	}
+
+	/**
+	 * Sets the token when the goal is used outside of Maven, i.e. from tests.
+	 * 
+	 * @param token
+	 *            The shared secret that requests must carry
+	 */
+	void setToken(String token) {
+		this.token = token;
+	}
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A thread safe pool of strings. Strings that are repeated many times, such as the resource paths of
+ * diagnostics, are kept as one single instance. Unlike {@link String#intern()}, the pool does not
+ * use the JVM's string table. The strings are held weakly, so a string leaves the pool once nothing
+ * else refers to it and a long running service does not accumulate the paths of every run.
+ */
+public class StringPool {
+	/**
+	 * The pool shared by all diagnostics
+	 */
+	public static final StringPool SHARED = new StringPool();
+
+	private static final int SEGMENT_COUNT = 16;
+
+	// Segments keep threads that intern different strings from contending for one lock
+	private final Map<String, WeakReference<String>>[] segments;
+
+	@SuppressWarnings("unchecked")
+	public StringPool() {
+		segments = new Map[SEGMENT_COUNT];
+		for(int idx = 0; idx < SEGMENT_COUNT; ++idx)
+			segments[idx] = new WeakHashMap<String, WeakReference<String>>();
+	}
+
+	/**
+	 * Returns the pooled instance of the given string. The string is added to the pool if it is
+	 * not already present.
+	 *
+	 * @param str
+	 *            The string to intern. Can be <code>null</code>
+	 * @return The pooled instance or <code>null</code> if <code>str</code> is <code>null</code>
+	 */
+	public String intern(String str) {
+		if(str == null)
+			return null;
+
+		int hash = str.hashCode();
+		Map<String, WeakReference<String>> segment = segments[(hash ^ hash >>> 16) & (SEGMENT_COUNT - 1)];
+		synchronized(segment) {
+			WeakReference<String> ref = segment.get(str);
+			String pooled = ref == null
+					? null
+					: ref.get();
+			if(pooled != null)
+				return pooled;
+			segment.put(str, new WeakReference<String>(str));
+			return str;
+		}
+	}
+
+	/**
+	 * @return The number of strings currently in the pool
+	 */
+	public int size() {
+		int size = 0;
+		for(Map<String, WeakReference<String>> segment : segments)
+			synchronized(segment) {
+				size += segment.size();
+			}
+		return size;
+	}
+}
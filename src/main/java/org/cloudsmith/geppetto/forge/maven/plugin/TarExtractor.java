@@ -0,0 +1,327 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Extracts gzipped tar archives, such as the release archives of the Forge. The archive is
+ * inflated through one large buffer that is reused for all entries, files are written through a
+ * {@link FileChannel} after their length has been set, and each directory is created only once.
+ * Unpacking an archive with many small files is therefore dominated by the disk rather than by
+ * the overhead per file.
+ * <p>
+ * Regular files and directories are extracted, including names in the ustar prefix field, GNU
+ * long names, and PAX <tt>path</tt> records. Links and other special entries are skipped. An
+ * extractor is not thread safe but may be used for any number of archives.
+ * </p>
+ */
+public class TarExtractor {
+	/**
+	 * The size of the buffer used for inflating and writing
+	 */
+	public static final int BUFFER_SIZE = 256 * 1024;
+
+	private static final int BLOCK_SIZE = 512;
+
+	private static final int NAME_OFFSET = 0;
+
+	private static final int NAME_LENGTH = 100;
+
+	private static final int MODE_OFFSET = 100;
+
+	private static final int MODE_LENGTH = 8;
+
+	private static final int SIZE_OFFSET = 124;
+
+	private static final int SIZE_LENGTH = 12;
+
+	private static final int TYPE_OFFSET = 156;
+
+	private static final int MAGIC_OFFSET = 257;
+
+	private static final int PREFIX_OFFSET = 345;
+
+	private static final int PREFIX_LENGTH = 155;
+
+	private static boolean isEndOfArchive(byte[] header) {
+		for(byte b : header)
+			if(b != 0)
+				return false;
+		return true;
+	}
+
+	private static boolean isUstar(byte[] header) {
+		// POSIX archives have "ustar\0". GNU archives have "ustar  \0" and no prefix field
+		return header[MAGIC_OFFSET] == 'u' && header[MAGIC_OFFSET + 1] == 's' && header[MAGIC_OFFSET + 2] == 't' &&
+				header[MAGIC_OFFSET + 3] == 'a' && header[MAGIC_OFFSET + 4] == 'r' && header[MAGIC_OFFSET + 5] == 0;
+	}
+
+	private static long padded(long size) {
+		return (size + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+	}
+
+	private static long parseNumber(byte[] header, int offset, int length) throws IOException {
+		if((header[offset] & 0x80) != 0) {
+			// GNU base-256 encoding of large values
+			long value = header[offset] & 0x7f;
+			for(int idx = 1; idx < length; ++idx)
+				value = (value << 8) | (header[offset + idx] & 0xff);
+			return value;
+		}
+
+		long value = 0;
+		int idx = offset;
+		int end = offset + length;
+		while(idx < end && header[idx] == ' ')
+			++idx;
+		for(; idx < end; ++idx) {
+			byte b = header[idx];
+			if(b == 0 || b == ' ')
+				break;
+			if(b < '0' || b > '7')
+				throw new IOException("Malformed tar header: invalid octal number");
+			value = (value << 3) | (b - '0');
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the value of the PAX <tt>path</tt> record, or <code>null</code> if there is none.
+	 * Records have the form <tt>&lt;length&gt; &lt;key&gt;=&lt;value&gt;\n</tt>.
+	 */
+	private static String parsePaxPath(byte[] data, int length) throws IOException {
+		int pos = 0;
+		while(pos < length) {
+			int space = pos;
+			while(space < length && data[space] != ' ')
+				++space;
+			int recordLength;
+			try {
+				recordLength = Integer.parseInt(new String(data, pos, space - pos, AbstractForgeMojo.UTF_8));
+			}
+			catch(NumberFormatException e) {
+				throw new IOException("Malformed PAX header");
+			}
+			if(recordLength <= 0 || pos + recordLength > length)
+				throw new IOException("Malformed PAX header");
+			String record = new String(data, space + 1, pos + recordLength - space - 2, AbstractForgeMojo.UTF_8);
+			if(record.startsWith("path="))
+				return record.substring(5);
+			pos += recordLength;
+		}
+		return null;
+	}
+
+	private static String parseString(byte[] header, int offset, int length) {
+		int end = offset;
+		int max = offset + length;
+		while(end < max && header[end] != 0)
+			++end;
+		return new String(header, offset, end - offset, AbstractForgeMojo.UTF_8);
+	}
+
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+
+	private final byte[] header = new byte[BLOCK_SIZE];
+
+	private final Set<File> directories = new HashSet<File>();
+
+	private long fileCount;
+
+	private long byteCount;
+
+	private void createDirectory(File dir) throws IOException {
+		// Parents are visited first so that each directory costs one call, even for deep trees
+		if(dir == null || directories.contains(dir))
+			return;
+		createDirectory(dir.getParentFile());
+		if(!(dir.mkdir() || dir.isDirectory()))
+			throw new IOException("Unable to create directory " + dir.getAbsolutePath());
+		directories.add(dir);
+	}
+
+	/**
+	 * Extracts a gzipped tar archive.
+	 * 
+	 * @param gzipped
+	 *            The archive. It is not closed
+	 * @param destDir
+	 *            The directory to extract into. Created if it doesn't exist
+	 * @param skipTopFolder
+	 *            <code>true</code> to strip the first segment of each name, i.e. the folder that
+	 *            Forge archives wrap their content in
+	 * @throws IOException
+	 *             if the archive is malformed, an entry would end up outside of
+	 *             <code>destDir</code>, or a file cannot be written
+	 */
+	public void extract(InputStream gzipped, File destDir, boolean skipTopFolder) throws IOException {
+		InputStream in = new GZIPInputStream(gzipped, BUFFER_SIZE);
+		File root = destDir.getCanonicalFile();
+		directories.clear();
+		createDirectory(root);
+
+		String longName = null;
+		for(;;) {
+			if(!readBlock(in, header)) {
+				// Some writers omit the end-of-archive blocks
+				break;
+			}
+			if(isEndOfArchive(header))
+				break;
+
+			long size = parseNumber(header, SIZE_OFFSET, SIZE_LENGTH);
+			byte type = header[TYPE_OFFSET];
+			if(type == 'L' || type == 'x') {
+				// The name of the next entry
+				if(size > BUFFER_SIZE)
+					throw new IOException("Malformed tar header: extended header too large");
+				readFully(in, buffer, (int) padded(size));
+				String name = type == 'L'
+						? parseString(buffer, 0, (int) size)
+						: parsePaxPath(buffer, (int) size);
+				if(name != null)
+					longName = name;
+				continue;
+			}
+
+			String name = longName;
+			longName = null;
+			if(name == null) {
+				name = parseString(header, NAME_OFFSET, NAME_LENGTH);
+				if(isUstar(header) && header[PREFIX_OFFSET] != 0)
+					name = parseString(header, PREFIX_OFFSET, PREFIX_LENGTH) + '/' + name;
+			}
+
+			boolean file = type == '0' || type == 0 || type == '7';
+			if(!(file || type == '5')) {
+				skip(in, padded(size));
+				continue;
+			}
+
+			if(skipTopFolder) {
+				int slash = name.indexOf('/');
+				name = slash < 0
+						? ""
+						: name.substring(slash + 1);
+			}
+			while(name.endsWith("/"))
+				name = name.substring(0, name.length() - 1);
+			if(name.length() == 0) {
+				skip(in, padded(size));
+				continue;
+			}
+
+			// Checked by name rather than by canonical path to save a file system lookup per entry.
+			// That is enough since links are never extracted
+			if(name.startsWith("/") || ("/" + name + '/').contains("/../"))
+				throw new IOException("Archive entry " + name + " would be extracted outside of " + root);
+			File target = new File(root, name);
+
+			if(file) {
+				createDirectory(target.getParentFile());
+				writeFile(in, target, size);
+				if((parseNumber(header, MODE_OFFSET, MODE_LENGTH) & 0100) != 0)
+					target.setExecutable(true);
+				skip(in, padded(size) - size);
+			}
+			else {
+				createDirectory(target);
+				skip(in, padded(size));
+			}
+		}
+	}
+
+	/**
+	 * @return The number of bytes written to files by this extractor
+	 */
+	public long getByteCount() {
+		return byteCount;
+	}
+
+	/**
+	 * @return The number of files written by this extractor
+	 */
+	public long getFileCount() {
+		return fileCount;
+	}
+
+	/**
+	 * Reads a block. Returns <code>false</code> if the stream ends before the block starts.
+	 */
+	private boolean readBlock(InputStream in, byte[] block) throws IOException {
+		int cnt = in.read(block, 0, block.length);
+		if(cnt < 0)
+			return false;
+		int pos = cnt;
+		while(pos < block.length) {
+			cnt = in.read(block, pos, block.length - pos);
+			if(cnt < 0)
+				throw new EOFException("Unexpected end of tar archive");
+			pos += cnt;
+		}
+		return true;
+	}
+
+	private void readFully(InputStream in, byte[] buf, int length) throws IOException {
+		int pos = 0;
+		while(pos < length) {
+			int cnt = in.read(buf, pos, length - pos);
+			if(cnt < 0)
+				throw new EOFException("Unexpected end of tar archive");
+			pos += cnt;
+		}
+	}
+
+	private void skip(InputStream in, long count) throws IOException {
+		while(count > 0) {
+			int chunk = (int) Math.min(count, buffer.length);
+			readFully(in, buffer, chunk);
+			count -= chunk;
+		}
+	}
+
+	private void writeFile(InputStream in, File target, long size) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(target, "rw");
+		try {
+			// Setting the length up front lets the file system allocate the file in one go. It also
+			// truncates a file that is left from an earlier extraction
+			raf.setLength(size);
+			FileChannel channel = raf.getChannel();
+			long remaining = size;
+			while(remaining > 0) {
+				int chunk = (int) Math.min(remaining, buffer.length);
+				readFully(in, buffer, chunk);
+				ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, chunk);
+				while(bytes.hasRemaining())
+					channel.write(bytes);
+				remaining -= chunk;
+			}
+		}
+		finally {
+			raf.close();
+		}
+		++fileCount;
+		byteCount += size;
+	}
+}
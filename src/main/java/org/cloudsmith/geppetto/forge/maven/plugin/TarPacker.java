@@ -0,0 +1,285 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Packs a directory into a gzipped tar archive, such as the release archives of the Forge. The tar
+ * stream is assembled in one large buffer: headers are copied into it and file content is read
+ * straight into it from the {@link FileChannel} of the file. The buffer is handed to the
+ * compressor only when it is full, so packing many small files costs a few large reads and
+ * writes rather than several small ones per file.
+ * <p>
+ * Entries are sorted on name so that packing the same content twice gives the same archive. Names
+ * longer than 100 characters use the ustar prefix field when possible and a GNU long name
+ * otherwise. A packer is not thread safe.
+ * </p>
+ */
+public class TarPacker {
+	/**
+	 * The default size of the buffer used for reading and compressing
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+	private static final int BLOCK_SIZE = 512;
+
+	private static final int NAME_LENGTH = 100;
+
+	private static final int PREFIX_LENGTH = 155;
+
+	private static final long MAX_OCTAL_SIZE = 077777777777L;
+
+	private static void putNumber(byte[] header, int offset, int length, long value) {
+		if(value > MAX_OCTAL_SIZE && length == 12) {
+			// GNU base-256 encoding of large values
+			for(int idx = offset + length - 1; idx > offset; --idx) {
+				header[idx] = (byte) value;
+				value >>>= 8;
+			}
+			header[offset] = (byte) 0x80;
+			return;
+		}
+		String octal = Long.toOctalString(value);
+		int pad = length - 1 - octal.length();
+		for(int idx = 0; idx < pad; ++idx)
+			header[offset + idx] = '0';
+		for(int idx = 0; idx < octal.length(); ++idx)
+			header[offset + pad + idx] = (byte) octal.charAt(idx);
+		header[offset + length - 1] = 0;
+	}
+
+	private static void putString(byte[] header, int offset, int length, byte[] value) {
+		System.arraycopy(value, 0, header, offset, Math.min(length, value.length));
+	}
+
+	private final ExcludeMatcher excludes;
+
+	private final byte[] buffer;
+
+	private final byte[] header = new byte[BLOCK_SIZE];
+
+	private OutputStream out;
+
+	private int position;
+
+	private long fileCount;
+
+	private long byteCount;
+
+	/**
+	 * @param excludes
+	 *            Files and directories with names that this matcher matches are left out. Can be
+	 *            <code>null</code>
+	 * @param bufferSize
+	 *            The size of the buffer used for reading and compressing. At least one block of 512
+	 *            bytes is used
+	 */
+	public TarPacker(ExcludeMatcher excludes, int bufferSize) {
+		this.excludes = excludes;
+		buffer = new byte[Math.max(BLOCK_SIZE, bufferSize / BLOCK_SIZE * BLOCK_SIZE)];
+	}
+
+	private void flushBuffer() throws IOException {
+		out.write(buffer, 0, position);
+		position = 0;
+	}
+
+	/**
+	 * @return The number of bytes of file content packed by this packer
+	 */
+	public long getByteCount() {
+		return byteCount;
+	}
+
+	/**
+	 * @return The number of files packed by this packer
+	 */
+	public long getFileCount() {
+		return fileCount;
+	}
+
+	/**
+	 * Packs the content of a directory.
+	 * 
+	 * @param sourceDir
+	 *            The directory to pack
+	 * @param topFolder
+	 *            The folder that the content is wrapped in, i.e. <tt>owner-name-version</tt>
+	 * @param archive
+	 *            The archive to create
+	 */
+	public void pack(File sourceDir, String topFolder, File archive) throws IOException {
+		out = new GZIPOutputStream(new FileOutputStream(archive), buffer.length);
+		try {
+			position = 0;
+			writeHeader(topFolder + '/', '5', 0755, 0, sourceDir.lastModified());
+			packDirectory(sourceDir, topFolder + '/');
+
+			// End of archive
+			writeZeros(2 * BLOCK_SIZE);
+			flushBuffer();
+			out.close();
+			out = null;
+		}
+		finally {
+			if(out != null) {
+				try {
+					out.close();
+				}
+				catch(IOException e) {
+					// Ignored since an earlier failure is being reported
+				}
+				out = null;
+			}
+		}
+	}
+
+	private void packDirectory(File dir, String path) throws IOException {
+		File[] files = dir.listFiles();
+		if(files == null)
+			throw new IOException("Unable to list the content of " + dir.getAbsolutePath());
+		Arrays.sort(files);
+		for(File file : files) {
+			String name = file.getName();
+			if(excludes != null && excludes.matches(name))
+				continue;
+			if(file.isDirectory()) {
+				writeHeader(path + name + '/', '5', 0755, 0, file.lastModified());
+				packDirectory(file, path + name + '/');
+			}
+			else
+				packFile(file, path + name);
+		}
+	}
+
+	private void packFile(File file, String path) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			long size = channel.size();
+			writeHeader(path, '0', file.canExecute()
+					? 0755
+					: 0644, size, file.lastModified());
+
+			// Read straight into the buffer so that the content is copied only by the compressor
+			long remaining = size;
+			while(remaining > 0) {
+				if(position == buffer.length)
+					flushBuffer();
+				int chunk = (int) Math.min(remaining, buffer.length - position);
+				ByteBuffer view = ByteBuffer.wrap(buffer, position, chunk);
+				while(view.hasRemaining())
+					if(channel.read(view) < 0)
+						throw new EOFException(file.getAbsolutePath() + " was truncated while it was packed");
+				position += chunk;
+				remaining -= chunk;
+			}
+			writeZeros((int) ((BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE));
+			++fileCount;
+			byteCount += size;
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private void write(byte[] bytes, int length) throws IOException {
+		int offset = 0;
+		while(offset < length) {
+			if(position == buffer.length)
+				flushBuffer();
+			int chunk = Math.min(length - offset, buffer.length - position);
+			System.arraycopy(bytes, offset, buffer, position, chunk);
+			position += chunk;
+			offset += chunk;
+		}
+	}
+
+	private void writeHeader(String path, char type, int mode, long size, long lastModified) throws IOException {
+		byte[] name = path.getBytes(AbstractForgeMojo.UTF_8);
+		byte[] prefix = null;
+		if(name.length > NAME_LENGTH) {
+			// Split at a slash so that the prefix and the name fit their fields
+			int split = path.lastIndexOf('/', path.length() - 2);
+			while(split > 0) {
+				byte[] candidatePrefix = path.substring(0, split).getBytes(AbstractForgeMojo.UTF_8);
+				byte[] candidateName = path.substring(split + 1).getBytes(AbstractForgeMojo.UTF_8);
+				if(candidateName.length > NAME_LENGTH)
+					break;
+				if(candidatePrefix.length <= PREFIX_LENGTH) {
+					prefix = candidatePrefix;
+					name = candidateName;
+					break;
+				}
+				split = path.lastIndexOf('/', split - 1);
+			}
+			if(prefix == null) {
+				// GNU long name. The entry that follows carries a truncated name
+				byte[] longName = Arrays.copyOf(name, name.length + 1);
+				writeHeader("././@LongLink", 'L', 0644, longName.length, 0, null, null);
+				write(longName, longName.length);
+				writeZeros((BLOCK_SIZE - longName.length % BLOCK_SIZE) % BLOCK_SIZE);
+			}
+		}
+		writeHeader(null, type, mode, size, lastModified, name, prefix);
+	}
+
+	private void writeHeader(String plainName, char type, int mode, long size, long lastModified, byte[] name,
+			byte[] prefix) throws IOException {
+		Arrays.fill(header, (byte) 0);
+		putString(header, 0, NAME_LENGTH, name == null
+				? plainName.getBytes(AbstractForgeMojo.UTF_8)
+				: name);
+		putNumber(header, 100, 8, mode);
+		putNumber(header, 108, 8, 0);
+		putNumber(header, 116, 8, 0);
+		putNumber(header, 124, 12, size);
+		putNumber(header, 136, 12, lastModified / 1000);
+		header[156] = (byte) type;
+		// POSIX ustar magic and version
+		putString(header, 257, 8, new byte[] { 'u', 's', 't', 'a', 'r', 0, '0', '0' });
+		if(prefix != null)
+			putString(header, 345, PREFIX_LENGTH, prefix);
+
+		// The checksum is computed with the checksum field set to spaces
+		Arrays.fill(header, 148, 156, (byte) ' ');
+		int checksum = 0;
+		for(byte b : header)
+			checksum += b & 0xff;
+		putNumber(header, 148, 7, checksum);
+		header[155] = ' ';
+		write(header, BLOCK_SIZE);
+	}
+
+	private void writeZeros(int count) throws IOException {
+		while(count > 0) {
+			if(position == buffer.length)
+				flushBuffer();
+			int chunk = Math.min(count, buffer.length - position);
+			Arrays.fill(buffer, position, position + chunk, (byte) 0);
+			position += chunk;
+			count -= chunk;
+		}
+	}
+}
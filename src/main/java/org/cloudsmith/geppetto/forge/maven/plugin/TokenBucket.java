@@ -0,0 +1,78 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket that limits the rate of requests. Tokens are added at a fixed rate up to the
+ * capacity of the bucket, which allows short bursts. A caller that finds the bucket empty reserves
+ * the next token and waits until it becomes available, so waiting callers are served in order.
+ */
+public class TokenBucket {
+	private final double nanosPerToken;
+
+	private final double capacity;
+
+	private double tokens;
+
+	private long lastRefill;
+
+	/**
+	 * @param tokensPerSecond
+	 *            The sustained rate. Zero or less means no limit
+	 * @param capacity
+	 *            The maximum number of tokens that can be used in a burst
+	 */
+	public TokenBucket(double tokensPerSecond, int capacity) {
+		this.nanosPerToken = tokensPerSecond > 0
+				? TimeUnit.SECONDS.toNanos(1) / tokensPerSecond
+				: 0;
+		this.capacity = Math.max(1, capacity);
+		this.tokens = this.capacity;
+		this.lastRefill = System.nanoTime();
+	}
+
+	/**
+	 * Takes one token from the bucket, waiting for it if necessary.
+	 *
+	 * @throws InterruptedIOException
+	 *             if the thread is interrupted while waiting
+	 */
+	public void acquire() throws InterruptedIOException {
+		if(nanosPerToken == 0)
+			return;
+
+		long waitNanos;
+		synchronized(this) {
+			long now = System.nanoTime();
+			tokens = Math.min(capacity, tokens + (now - lastRefill) / nanosPerToken);
+			lastRefill = now;
+			tokens -= 1;
+			waitNanos = tokens >= 0
+					? 0
+					: (long) (-tokens * nanosPerToken);
+		}
+		if(waitNanos > 0) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(waitNanos);
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for the rate limiter");
+			}
+		}
+	}
+}
@@ -16,24 +16,25 @@ import static org.cloudsmith.geppetto.pp.dsl.validation.ValidationPreference.WAR
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.zip.GZIPInputStream;
+import java.util.concurrent.Callable;
 
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.cloudsmith.geppetto.common.os.StreamUtil.OpenBAStream;
-import org.cloudsmith.geppetto.forge.util.TarUtils;
 import org.cloudsmith.geppetto.forge.v2.MetadataRepository;
 import org.cloudsmith.geppetto.forge.v2.model.Dependency;
 import org.cloudsmith.geppetto.forge.v2.model.Metadata;
 import org.cloudsmith.geppetto.forge.v2.model.Module;
 import org.cloudsmith.geppetto.forge.v2.model.Release;
-import org.cloudsmith.geppetto.forge.v2.service.ReleaseService;
 import org.cloudsmith.geppetto.pp.dsl.target.PptpResourceUtil;
 import org.cloudsmith.geppetto.pp.dsl.validation.IPotentialProblemsAdvisor;
 import org.cloudsmith.geppetto.pp.dsl.validation.IValidationAdvisor.ComplianceLevel;
@@ -50,7 +51,8 @@ import org.cloudsmith.geppetto.validation.ValidationOptions;
 import org.cloudsmith.geppetto.validation.ValidationServiceFactory;
 import org.cloudsmith.geppetto.validation.runner.IEncodingProvider;
 import org.cloudsmith.geppetto.validation.runner.PPDiagnosticsSetup;
-import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.emf.common.util.BasicDiagnostic;
 import org.eclipse.emf.common.util.URI;
 
@@ -59,6 +61,10 @@ import org.eclipse.emf.common.util.URI;
  */
 @Mojo(name = "validate")
 public class Validate extends AbstractForgeMojo {
+	private static WeakReference<Validate> warmExecution;
+
+	private static ComplianceLevel warmComplianceLevel;
+
 	private static int getSeverity(Issue issue) {
 		switch(issue.getSeverity()) {
 			case ERROR:
@@ -86,28 +92,6 @@ public class Validate extends AbstractForgeMojo {
 		return severity;
 	}
 
-	private static String locationLabel(DetailedDiagnosticData detail) {
-		int lineNumber = detail.getLineNumber();
-		int offset = detail.getOffset();
-		int length = detail.getLength();
-		StringBuilder builder = new StringBuilder();
-		if(lineNumber > 0)
-			builder.append(lineNumber);
-		else
-			builder.append("-");
-
-		if(offset >= 0) {
-			builder.append("(");
-			builder.append(offset);
-			if(length >= 0) {
-				builder.append(",");
-				builder.append(length);
-			}
-			builder.append(")");
-		}
-		return builder.toString();
-	}
-
 	/**
 	 * Set to <tt>true</tt> to enable validation using puppet-lint
 	 */
@@ -127,6 +111,20 @@ public class Validate extends AbstractForgeMojo {
 	@Parameter(property = "forge.validation.environment", defaultValue = "production")
 	private String environment = "production";
 
+	/**
+	 * Stop the validation as soon as <tt>errorThreshold</tt> errors have been found. Dependency downloads, Geppetto
+	 * validation, and puppet-lint validation are all interrupted but the diagnostics collected up to that point are
+	 * still reported.
+	 */
+	@Parameter(property = "forge.validation.failFast", defaultValue = "false")
+	private boolean failFast = false;
+
+	/**
+	 * The number of errors that will stop a validation when <tt>failFast</tt> is enabled.
+	 */
+	@Parameter(property = "forge.validation.errorThreshold", defaultValue = "1")
+	private int errorThreshold = 1;
+
 	/**
 	 * Check the module layout.
 	 */
@@ -235,6 +233,35 @@ public class Validate extends AbstractForgeMojo {
 	@Parameter(property = "forge.lint.options")
 	private PuppetLintRunner.Option[] puppetLintOptions;
 
+	/**
+	 * The minimum severity of the diagnostics that are collected. One of <tt>OK</tt>, <tt>INFO</tt>, <tt>WARNING</tt>,
+	 * or <tt>ERROR</tt>. Diagnostics with a lower severity are dropped before they are converted and only their number
+	 * is reported.
+	 */
+	@Parameter(property = "forge.validation.minimumSeverity", defaultValue = "OK")
+	private String minimumSeverity = "OK";
+
+	/**
+	 * If set, only diagnostics of the given types are collected.
+	 */
+	@Parameter(property = "forge.validation.includeTypes")
+	private DiagnosticType[] includeTypes;
+
+	/**
+	 * Diagnostics of the given types are not collected. A puppet-lint validation is not performed at all when the type
+	 * <tt>PUPPET_LINT</tt> is excluded.
+	 */
+	@Parameter(property = "forge.validation.excludeTypes")
+	private DiagnosticType[] excludeTypes;
+
+	private transient DiagnosticFilter diagnosticFilter;
+
+	private transient volatile ValidationMonitor monitor;
+
+	private transient volatile boolean cancelRequested;
+
+	private transient volatile boolean canceled;
+
 	private final IPotentialProblemsAdvisor potentialProblemsAdvisor = new IPotentialProblemsAdvisor() {
 		@Override
 		public ValidationPreference assignmentToVarNamedString() {
@@ -307,64 +334,149 @@ public class Validate extends AbstractForgeMojo {
 		}
 	};
 
+	/**
+	 * Asks a running validation to stop. Called from another thread, i.e. when the service
+	 * receives a newer request for the same repository. The validation reports what it found
+	 * so far. The request is kept until {@link #clearCancel()} is called, so it also stops a
+	 * validation that has not created its monitor yet.
+	 */
+	void cancel() {
+		cancelRequested = true;
+		ValidationMonitor current = monitor;
+		if(current != null)
+			current.setCanceled(true);
+	}
+
+	/**
+	 * Forgets a cancel request of an earlier run. Called before the execution is handed to a new
+	 * request.
+	 */
+	void clearCancel() {
+		cancelRequested = false;
+	}
+
 	private Diagnostic convertPuppetLintDiagnostic(File moduleRoot, Issue issue) {
+		int severity = getSeverity(issue);
+		if(!diagnosticFilter.accept(severity, DiagnosticType.PUPPET_LINT))
+			return null;
+
 		Diagnostic diagnostic = new Diagnostic();
-		diagnostic.setSeverity(getSeverity(issue));
+		diagnostic.setSeverity(severity);
 		diagnostic.setMessage(issue.getMessage());
 		diagnostic.setType(DiagnosticType.PUPPET_LINT);
 		diagnostic.setResourcePath(getRelativePath(new File(moduleRoot, issue.getPath())));
-		diagnostic.setLocationLabel(Integer.toString(issue.getLineNumber()));
+		diagnostic.setLocation(issue.getLineNumber(), -1, -1);
 		return diagnostic;
 	}
 
-	private Diagnostic convertValidationDiagnostic(org.eclipse.emf.common.util.Diagnostic validationDiagnostic) {
+	/**
+	 * @param affectedPaths
+	 *            The relative paths of the modules that diagnostics are reported for or <code>null</code> to report
+	 *            diagnostics for all modules
+	 */
+	private Diagnostic convertValidationDiagnostic(org.eclipse.emf.common.util.Diagnostic validationDiagnostic,
+			Set<String> affectedPaths) {
 
 		Object dataObj = validationDiagnostic.getData().get(0);
+		DetailedDiagnosticData details = null;
 		String resourcePath = null;
-		String locationLabel = null;
 		if(dataObj instanceof DetailedDiagnosticData) {
-			DetailedDiagnosticData details = (DetailedDiagnosticData) dataObj;
+			details = (DetailedDiagnosticData) dataObj;
 			resourcePath = details.getFile().getPath();
-			if(resourcePath != null && resourcePath.startsWith(BUILD_DIR))
-				// We don't care about warnings/errors from imported modules
-				return null;
-			locationLabel = locationLabel(details);
+			if(resourcePath != null) {
+				if(resourcePath.startsWith(BUILD_DIR))
+					// We don't care about warnings/errors from imported modules
+					return null;
+				String path = resourcePath.replace(File.separatorChar, '/');
+				if(affectedPaths != null && GitChangeSet.getContainingModule(path, affectedPaths) == null)
+					// Modules that are unaffected by the changes are only validated for their references
+					return null;
+			}
 		}
 
+		int severity = getSeverity(validationDiagnostic);
+		DiagnosticType type = DiagnosticType.getByCode(validationDiagnostic.getCode());
+		if(!diagnosticFilter.accept(severity, type))
+			return null;
+
 		Diagnostic diagnostic = new Diagnostic();
-		diagnostic.setSeverity(getSeverity(validationDiagnostic));
-		diagnostic.setType(DiagnosticType.getByCode(validationDiagnostic.getCode()));
+		diagnostic.setSeverity(severity);
+		diagnostic.setType(type);
 		diagnostic.setMessage(validationDiagnostic.getMessage());
 		diagnostic.setResourcePath(resourcePath);
-		diagnostic.setLocationLabel(locationLabel);
+		if(details != null)
+			diagnostic.setLocation(details.getLineNumber(), details.getOffset(), details.getLength());
 		return diagnostic;
 	}
 
-	private File downloadAndInstall(ReleaseService releaseService, File modulesRoot, Release release,
-			Diagnostic diagnostic) throws IOException {
-		OpenBAStream content = new OpenBAStream();
-		Module module = release.getModule();
-		releaseService.download(module.getOwner().getUsername(), module.getName(), release.getVersion(), content);
-		File moduleDir = new File(modulesRoot, module.getName());
-		TarUtils.unpack(new GZIPInputStream(content.getInputStream()), moduleDir, false);
-		return moduleDir;
+	private void addDiagnostic(Diagnostic result, Diagnostic diag) {
+		result.addChild(diag);
+		monitor.reported(diag);
 	}
 
-	private void geppettoValidation(List<File> moduleLocations, Diagnostic result) throws IOException {
+	private File downloadAndInstall(File modulesRoot, final Release release) throws IOException {
+		MetricsRegistry.Timer timer = getMetrics().start(MetricsRegistry.DOWNLOAD);
+		final OpenBAStream content = new OpenBAStream();
+		PhaseMetrics phase = getMetrics().getPhase(MetricsRegistry.DOWNLOAD);
+		try {
+			final Module module = release.getModule();
+			getCallExecutor().execute(MetricsRegistry.DOWNLOAD, true, new ForgeCall<Void>() {
+				@Override
+				public Void call() throws IOException {
+					// Discard what a failed attempt may have written
+					content.reset();
+					getReleaseService().download(
+						module.getOwner().getUsername(), module.getName(), release.getVersion(), content);
+					return null;
+				}
+			});
+			phase.addRemoteCalls(1);
+			File moduleDir = new File(modulesRoot, module.getName());
+			new TarExtractor().extract(content.getInputStream(), moduleDir, false);
+			return moduleDir;
+		}
+		finally {
+			timer.stop();
+			phase.addCount(1);
+			phase.addBytes(content.size());
+		}
+	}
 
-		MetadataRepository metadataRepo = getForge().createMetadataRepository();
+	/**
+	 * Validates all modules but only reports diagnostics for the affected modules. Diagnostics that aren't tied to a
+	 * file are always reported.
+	 */
+	private void geppettoValidation(List<File> moduleLocations, List<File> affectedModuleLocations,
+			final Diagnostic result) throws IOException {
+
+		MetadataRepository metadataRepo = getMetadataRepository();
+
+		final Set<String> affectedPaths;
+		if(affectedModuleLocations.size() == moduleLocations.size())
+			affectedPaths = null;
+		else {
+			affectedPaths = new HashSet<String>();
+			for(File moduleRoot : affectedModuleLocations)
+				affectedPaths.add(getRelativePath(moduleRoot));
+		}
 
 		List<File> importedModuleLocations = null;
 		List<Metadata> metadatas = new ArrayList<Metadata>();
 		for(File moduleRoot : moduleLocations)
-			metadatas.add(getModuleMetadata(moduleRoot, result));
+			metadatas.add(getModuleMetadata(moduleRoot, affectedPaths == null ||
+					affectedPaths.contains(getRelativePath(moduleRoot))
+					? result
+					: new Diagnostic()));
 
 		if(result.getSeverity() == Diagnostic.ERROR)
 			return;
 
 		if(checkReferences) {
 			Set<Dependency> unresolvedCollector = new HashSet<Dependency>();
-			Set<Release> releasesToDownload = resolveDependencies(metadataRepo, metadatas, unresolvedCollector);
+			Set<Release> releasesToDownload = resolveDependencies(metadataRepo, metadatas, unresolvedCollector, monitor);
+			if(monitor.isCanceled())
+				return;
+
 			for(Dependency unresolved : unresolvedCollector)
 				result.addChild(new Diagnostic(Diagnostic.WARNING, DiagnosticType.GEPPETTO, String.format(
 					"Unable to resolve dependency: %s:%s", unresolved.getName(),
@@ -373,15 +485,9 @@ public class Validate extends AbstractForgeMojo {
 			if(!releasesToDownload.isEmpty()) {
 				File importedModulesDir = new File(getBuildDir(), IMPORTED_MODULES_ROOT);
 				importedModulesDir.mkdirs();
-				importedModuleLocations = new ArrayList<File>();
-
-				ReleaseService releaseService = getForge().createReleaseService();
-				for(Release release : releasesToDownload) {
-					result.addChild(new Diagnostic(
-						Diagnostic.INFO, DiagnosticType.GEPPETTO, "Installing dependent module " +
-								release.getFullName() + ':' + release.getVersion()));
-					importedModuleLocations.add(downloadAndInstall(releaseService, importedModulesDir, release, result));
-				}
+				importedModuleLocations = installDependencies(importedModulesDir, releasesToDownload, result);
+				if(monitor.isCanceled())
+					return;
 			}
 			else {
 				if(unresolvedCollector.isEmpty())
@@ -391,20 +497,49 @@ public class Validate extends AbstractForgeMojo {
 		}
 		if(importedModuleLocations == null)
 			importedModuleLocations = Collections.emptyList();
-		BasicDiagnostic diagnostics = new BasicDiagnostic();
-
-		RubyHelper.setRubyServicesFactory(JRubyServices.FACTORY);
-		ValidationOptions options = getValidationOptions(moduleLocations, importedModuleLocations);
-		new PPDiagnosticsSetup(complianceLevel, options.getProblemsAdvisor()).createInjectorAndDoEMFRegistration();
 
-		ValidationServiceFactory.createValidationService().validate(
-			diagnostics, getModulesRoot(), options,
-			importedModuleLocations.toArray(new File[importedModuleLocations.size()]), new NullProgressMonitor());
+		// Diagnostics are converted as they arrive so that the monitor can cancel the validation
+		// as soon as the error threshold is reached
+		BasicDiagnostic diagnostics = new BasicDiagnostic() {
+			@Override
+			public void add(org.eclipse.emf.common.util.Diagnostic diagnostic) {
+				super.add(diagnostic);
+				Diagnostic diag = convertValidationDiagnostic(diagnostic, affectedPaths);
+				if(diag != null)
+					addDiagnostic(result, diag);
+			}
+		};
+
+		MetricsRegistry.Timer timer = getMetrics().start(MetricsRegistry.INJECTOR_SETUP);
+		ValidationOptions options;
+		try {
+			RubyHelper.setRubyServicesFactory(JRubyServices.FACTORY);
+			options = getValidationOptions(moduleLocations, importedModuleLocations);
+			synchronized(Validate.class) {
+				// The injector is bound to the problems advisor of this execution. It is reused when
+				// the same execution validates again, i.e. in the validation daemon
+				if(warmExecution == null || warmExecution.get() != this || warmComplianceLevel != complianceLevel) {
+					new PPDiagnosticsSetup(complianceLevel, options.getProblemsAdvisor()).createInjectorAndDoEMFRegistration();
+					warmExecution = new WeakReference<Validate>(this);
+					warmComplianceLevel = complianceLevel;
+				}
+			}
+		}
+		finally {
+			timer.stop();
+		}
 
-		for(org.eclipse.emf.common.util.Diagnostic diagnostic : diagnostics.getChildren()) {
-			Diagnostic diag = convertValidationDiagnostic(diagnostic);
-			if(diag != null)
-				result.addChild(diag);
+		timer = getMetrics().start(MetricsRegistry.VALIDATION);
+		try {
+			ValidationServiceFactory.createValidationService().validate(
+				diagnostics, getModulesRoot(), options,
+				importedModuleLocations.toArray(new File[importedModuleLocations.size()]), monitor);
+		}
+		catch(OperationCanceledException e) {
+			// Diagnostics collected so far are already in the result
+		}
+		finally {
+			timer.stop().addCount(moduleLocations.size());
 		}
 	}
 
@@ -413,6 +548,10 @@ public class Validate extends AbstractForgeMojo {
 		return "Validation";
 	}
 
+	ComplianceLevel getComplianceLevel() {
+		return complianceLevel;
+	}
+
 	private String getSearchPath(List<File> moduleLocations, List<File> importedModuleLocations) {
 		StringBuilder searchPath = new StringBuilder();
 
@@ -459,6 +598,62 @@ public class Validate extends AbstractForgeMojo {
 		return options;
 	}
 
+	/**
+	 * Downloads and unpacks the given releases concurrently. Releases are installed once per owner, name and
+	 * version. Releases that share a module name unpack into the same directory and are therefore installed one
+	 * after the other by the same task.
+	 * 
+	 * @return The directories of the installed modules
+	 */
+	private List<File> installDependencies(final File importedModulesDir, Set<Release> releases, Diagnostic result)
+			throws IOException {
+		Set<String> seen = new HashSet<String>();
+		Map<String, List<Release>> releasesByName = new LinkedHashMap<String, List<Release>>();
+		for(Release release : releases) {
+			String fullName = release.getFullName() + ':' + release.getVersion();
+			if(!seen.add(fullName))
+				continue;
+			result.addChild(new Diagnostic(
+				Diagnostic.INFO, DiagnosticType.GEPPETTO, "Installing dependent module " + fullName));
+			String name = release.getModule().getName();
+			List<Release> sameName = releasesByName.get(name);
+			if(sameName == null) {
+				sameName = new ArrayList<Release>(1);
+				releasesByName.put(name, sameName);
+			}
+			sameName.add(release);
+		}
+
+		List<ForgeTaskScope.Subtask<File>> installed = new ArrayList<ForgeTaskScope.Subtask<File>>(
+			releasesByName.size());
+		ForgeTaskScope scope = createTaskScope("download");
+		try {
+			for(final List<Release> sameName : releasesByName.values())
+				installed.add(scope.fork(new Callable<File>() {
+					@Override
+					public File call() throws IOException {
+						File moduleDir = null;
+						for(Release release : sameName) {
+							if(monitor.isCanceled())
+								break;
+							moduleDir = downloadAndInstall(importedModulesDir, release);
+						}
+						return moduleDir;
+					}
+				}));
+			scope.join();
+		}
+		finally {
+			scope.close();
+		}
+
+		List<File> moduleDirs = new ArrayList<File>(installed.size());
+		for(ForgeTaskScope.Subtask<File> moduleDir : installed)
+			if(moduleDir.get() != null)
+				moduleDirs.add(moduleDir.get());
+		return moduleDirs;
+	}
+
 	@Override
 	protected void invoke(Diagnostic result) throws IOException {
 		List<File> moduleRoots = findModuleRoots();
@@ -467,11 +662,53 @@ public class Validate extends AbstractForgeMojo {
 			return;
 		}
 
+		int minSeverity;
+		try {
+			minSeverity = Diagnostic.getSeverity(minimumSeverity);
+		}
+		catch(IllegalArgumentException e) {
+			result.addChild(new Diagnostic(Diagnostic.ERROR, DiagnosticType.GEPPETTO, "Invalid minimumSeverity: " +
+					e.getMessage()));
+			return;
+		}
+		diagnosticFilter = new DiagnosticFilter(minSeverity, includeTypes, excludeTypes);
+		canceled = false;
+		monitor = new ValidationMonitor(failFast
+				? errorThreshold
+				: 0);
+		if(cancelRequested)
+			monitor.setCanceled(true);
+
+		List<File> affectedModuleRoots = selectAffectedModuleRoots(moduleRoots);
+		if(affectedModuleRoots.isEmpty()) {
+			result.addChild(new Diagnostic(
+				Diagnostic.INFO, DiagnosticType.GEPPETTO, "No modules are affected by the changes"));
+			return;
+		}
+
+		// The Geppetto validation always covers the whole modules root since references are
+		// resolved across all modules
 		if(checkLayout || checkModuleSemantics || checkReferences)
-			geppettoValidation(moduleRoots, result);
+			geppettoValidation(moduleRoots, affectedModuleRoots, result);
+
+		if(enablePuppetLintValidation && diagnosticFilter.acceptsType(DiagnosticType.PUPPET_LINT) &&
+				!monitor.isCanceled())
+			lintValidation(affectedModuleRoots, result);
 
-		if(enablePuppetLintValidation)
-			lintValidation(moduleRoots, result);
+		if(monitor.isCanceled()) {
+			if(failFast && monitor.getErrorCount() >= errorThreshold)
+				result.addChild(new Diagnostic(Diagnostic.WARNING, DiagnosticType.GEPPETTO, "Validation stopped after " +
+						monitor.getErrorCount() + " error(s). Remaining checks were skipped since failFast is enabled"));
+			else {
+				canceled = true;
+				result.addChild(new Diagnostic(
+					Diagnostic.WARNING, DiagnosticType.GEPPETTO, "Validation was canceled. Remaining checks were skipped"));
+			}
+		}
+
+		Diagnostic suppressed = diagnosticFilter.createSummary(DiagnosticType.GEPPETTO);
+		if(suppressed != null)
+			result.addChild(suppressed);
 	}
 
 	private void lintValidation(List<File> moduleLocations, Diagnostic result) throws IOException {
@@ -480,16 +717,27 @@ public class Validate extends AbstractForgeMojo {
 		if(puppetLintOptions == null)
 			puppetLintOptions = new PuppetLintRunner.Option[0];
 		for(File moduleRoot : moduleLocations) {
-			for(PuppetLintRunner.Issue issue : runner.run(moduleRoot, puppetLintOptions)) {
+			MetricsRegistry.Timer timer = getMetrics().start(MetricsRegistry.LINT);
+			List<PuppetLintRunner.Issue> issues;
+			try {
+				issues = runner.run(moduleRoot, puppetLintOptions);
+			}
+			finally {
+				timer.stop().addCount(1);
+				getMetrics().addModuleTime(getRelativePath(moduleRoot), timer.getElapsedNanos());
+			}
+			for(PuppetLintRunner.Issue issue : issues) {
 				Diagnostic diag = convertPuppetLintDiagnostic(moduleRoot, issue);
 				if(diag != null)
-					result.addChild(diag);
+					addDiagnostic(result, diag);
 			}
+			if(monitor.isCanceled())
+				break;
 		}
 	}
 
-	private Set<Release> resolveDependencies(MetadataRepository metadataRepo, List<Metadata> metadatas,
-			Set<Dependency> unresolvedCollector) throws IOException {
+	Set<Release> resolveDependencies(final MetadataRepository metadataRepo, List<Metadata> metadatas,
+			Set<Dependency> unresolvedCollector, final IProgressMonitor monitor) throws IOException {
 		// Resolve missing dependencies
 		Set<Dependency> deps = new HashSet<Dependency>();
 		for(Metadata metadata : metadatas)
@@ -507,10 +755,59 @@ public class Validate extends AbstractForgeMojo {
 				}
 		}
 
-		// Resolve remaining dependencies
+		// Resolve remaining dependencies concurrently. Each task collects its own unresolved
+		// dependencies since the collector isn't thread safe
 		Set<Release> releasesToDownload = new HashSet<Release>();
-		for(Dependency dep : deps)
-			releasesToDownload.addAll(metadataRepo.deepResolve(dep, unresolvedCollector));
+		MetricsRegistry.Timer timer = getMetrics().start(MetricsRegistry.DEPENDENCY_RESOLUTION);
+		final PhaseMetrics phase = getMetrics().getPhase(MetricsRegistry.DEPENDENCY_RESOLUTION);
+		ForgeTaskScope scope = createTaskScope("resolve");
+		try {
+			final ForgeCallExecutor executor = getCallExecutor();
+			List<ForgeTaskScope.Subtask<Set<Release>>> resolved = new ArrayList<ForgeTaskScope.Subtask<Set<Release>>>(
+				deps.size());
+			final List<Set<Dependency>> unresolved = new ArrayList<Set<Dependency>>(deps.size());
+			for(final Dependency dep : deps) {
+				final Set<Dependency> depUnresolved = new HashSet<Dependency>();
+				unresolved.add(depUnresolved);
+				resolved.add(scope.fork(new Callable<Set<Release>>() {
+					@Override
+					public Set<Release> call() throws IOException {
+						if(monitor.isCanceled())
+							return Collections.emptySet();
+						Set<Release> releases = executor.execute("resolve", true, new ForgeCall<Set<Release>>() {
+							@Override
+							public Set<Release> call() throws IOException {
+								depUnresolved.clear();
+								return metadataRepo.deepResolve(dep, depUnresolved);
+							}
+						});
+						phase.addRemoteCalls(1);
+						return releases;
+					}
+				}));
+			}
+			scope.join();
+			for(int idx = 0; idx < resolved.size(); ++idx) {
+				releasesToDownload.addAll(resolved.get(idx).get());
+				unresolvedCollector.addAll(unresolved.get(idx));
+			}
+		}
+		finally {
+			scope.close();
+			timer.stop();
+			phase.addCount(deps.size());
+		}
 		return releasesToDownload;
 	}
+
+	void setComplianceLevel(ComplianceLevel complianceLevel) {
+		this.complianceLevel = complianceLevel;
+	}
+
+	/**
+	 * @return <code>true</code> if the last run skipped checks because of {@link #cancel()}
+	 */
+	boolean wasCanceled() {
+		return canceled;
+	}
 }
@@ -0,0 +1,60 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+/**
+ * A progress monitor that counts the errors that are collected during a validation and cancels
+ * itself once a given number of errors have been seen. Long running steps are expected to poll
+ * {@link #isCanceled()} and stop when it returns <code>true</code>.
+ */
+public class ValidationMonitor extends NullProgressMonitor {
+	private final int errorThreshold;
+
+	private final AtomicInteger errorCount = new AtomicInteger();
+
+	/**
+	 * @param errorThreshold
+	 *            The number of errors that will cancel this monitor or &lt;= 0 if errors never
+	 *            should cancel it.
+	 */
+	public ValidationMonitor(int errorThreshold) {
+		this.errorThreshold = errorThreshold;
+	}
+
+	/**
+	 * @return The number of errors seen so far
+	 */
+	public int getErrorCount() {
+		return errorCount.get();
+	}
+
+	/**
+	 * Registers a collected diagnostic. The monitor is canceled if the diagnostic is an error and the error
+	 * threshold is reached.
+	 * 
+	 * @param diagnostic
+	 *            The diagnostic that was collected
+	 */
+	public void reported(Diagnostic diagnostic) {
+		if(diagnostic.getSeverity() >= Diagnostic.ERROR) {
+			int count = errorCount.incrementAndGet();
+			if(errorThreshold > 0 && count >= errorThreshold)
+				setCanceled(true);
+		}
+	}
+}
@@ -38,6 +38,42 @@ import org.junit.Assert;
 import org.junit.Before;
 
 public class AbstractForgeTestMojo extends AbstractMojoTestCase {
+	private static ForgeStandIn forgeStandIn;
+
+	/**
+	 * Returns the URL of the Forge to test against. The URL is taken from the system property
+	 * <tt>forge.base.url</tt>. When that property is not set, a {@link ForgeStandIn} is started and
+	 * shared by all tests in the JVM.
+	 *
+	 * @return The Forge URL, ending with a slash
+	 */
+	static synchronized String getForgeServiceURL() throws Exception {
+		String url = getTestProperty("forge.base.url", null);
+		if(url != null)
+			return url;
+
+		if(forgeStandIn == null) {
+			ForgeStandIn standIn = new ForgeStandIn();
+			standIn.addUser(getTestProperty("forge.login", "bob"), getTestProperty("forge.password", "bobbobbob"));
+			standIn.addUser(
+				getTestProperty("forge.login.second", "ben"), getTestProperty("forge.password.second", "benbenben"));
+			standIn.start();
+			forgeStandIn = standIn;
+		}
+		return forgeStandIn.getServiceURL();
+	}
+
+	/**
+	 * Returns the value of a system property or the given default when the property is unset or holds
+	 * an unresolved Maven expression.
+	 */
+	static String getTestProperty(String key, String defaultValue) {
+		String value = System.getProperty(key);
+		return value == null || value.isEmpty() || value.startsWith("${")
+				? defaultValue
+				: value;
+	}
+
 	File pom;
 
 	ProjectBuildingRequest buildingRequest;
@@ -94,25 +130,32 @@ public class AbstractForgeTestMojo extends AbstractMojoTestCase {
 		return mojo;
 	}
 
-	protected void setTestForgeModulesRoot(String project) {
-		File projectFile = getTestFile("src/test/resources/workspace/" + project);
+	protected String getTestPomPath() {
+		return "src/test/resources/unit/publisher/pom.xml";
+	}
+
+	protected void setTestForgeModulesRoot(File projectFile) {
 		String absPath = projectFile.getAbsolutePath();
 		assertTrue("Project file " + absPath + " is not a directory", projectFile.isDirectory());
 		userProps.put("testForgeModulesRoot", absPath);
 	}
 
+	protected void setTestForgeModulesRoot(String project) {
+		setTestForgeModulesRoot(getTestFile("src/test/resources/workspace/" + project));
+	}
+
 	@Override
 	@Before
 	public void setUp() throws Exception {
 		super.setUp();
-		pom = getTestFile("src/test/resources/unit/publisher/pom.xml");
+		pom = getTestFile(getTestPomPath());
 		Assert.assertNotNull(pom);
 		Assert.assertTrue(pom.exists());
 		MavenExecutionRequest request = new DefaultMavenExecutionRequest();
 
 		buildingRequest = request.getProjectBuildingRequest();
 		userProps = new Properties();
-		userProps.put("testForgeServiceURL", System.getProperty("forge.base.url"));
+		userProps.put("testForgeServiceURL", getForgeServiceURL());
 	}
 
 	@Override
@@ -0,0 +1,80 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class AdaptiveConcurrencyLimiterTest {
+	@Test
+	public void limitGrowsAdditivelyAndShrinksMultiplicatively() throws Exception {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 8);
+		for(int idx = 0; idx < 40; ++idx) {
+			limiter.acquire();
+			limiter.release("probe", 1000000, false);
+		}
+		assertEquals(8, limiter.getLimit());
+
+		limiter.acquire();
+		limiter.release("probe", 1000000, true);
+		assertEquals(4, limiter.getLimit());
+		assertEquals(1, limiter.getDecreaseCount());
+
+		// Much slower than the average of the same operation
+		TimeUnit.MILLISECONDS.sleep(5);
+		limiter.acquire();
+		limiter.release("probe", 50000000, false);
+		assertEquals(2, limiter.getLimit());
+
+		// Slow uploads are not compared with fast probes
+		limiter.acquire();
+		limiter.release("upload", 500000000, false);
+		assertEquals(2, limiter.getLimit());
+	}
+
+	@Test
+	public void ignoredOperationsOnlyReactToThrottling() throws Exception {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 8);
+		limiter.ignoreLatency("upload");
+		limiter.acquire();
+		limiter.release("upload", 1000000, false);
+
+		// A large module takes much longer than a small one without any congestion
+		limiter.acquire();
+		limiter.release("upload", 500000000, false);
+		assertEquals(0, limiter.getDecreaseCount());
+		assertTrue(limiter.getLimit() >= 4);
+
+		limiter.acquire();
+		limiter.release("upload", 1000000, true);
+		assertEquals(1, limiter.getDecreaseCount());
+		assertEquals(2, limiter.getLimit());
+	}
+
+	@Test
+	public void tokenBucketLimitsRate() throws Exception {
+		TokenBucket bucket = new TokenBucket(100, 5);
+		long start = System.nanoTime();
+		for(int idx = 0; idx < 15; ++idx)
+			bucket.acquire();
+
+		// The first 5 are a burst, the other 10 take at least 100 ms at 100 per second
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertTrue("Elapsed " + elapsed, elapsed >= 90);
+	}
+}
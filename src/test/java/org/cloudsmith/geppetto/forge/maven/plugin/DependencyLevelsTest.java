@@ -0,0 +1,54 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class DependencyLevelsTest {
+	@Test
+	public void cyclesAreLastLevel() {
+		String a = "a", b = "b", c = "c", d = "d";
+		Map<String, List<String>> deps = new HashMap<String, List<String>>();
+		deps.put(b, asList(c));
+		deps.put(c, asList(b));
+		deps.put(d, asList(c, a));
+
+		DependencyLevels<String> levels = new DependencyLevels<String>(asList(a, b, c, d), deps);
+		assertEquals(asList(asList(a), asList(b, c, d)), levels.getLevels());
+		assertEquals(asList(b, c, d), levels.getUnordered());
+	}
+
+	@Test
+	public void dependenciesComeFirst() {
+		String a = "a", b = "b", c = "c", d = "d", e = "e";
+		Map<String, List<String>> deps = new HashMap<String, List<String>>();
+		deps.put(a, asList(b, c));
+		deps.put(b, asList(d));
+		deps.put(c, asList(d, "not_in_workspace"));
+
+		DependencyLevels<String> levels = new DependencyLevels<String>(asList(a, b, c, d, e), deps);
+		assertEquals(asList(asList(d, e), asList(b, c), asList(a)), levels.getLevels());
+		assertTrue(levels.getUnordered().isEmpty());
+		assertEquals("Dependencies outside of the nodes are ignored", 1, levels.getDependencies(c).size());
+		assertTrue(levels.getDependencies(e).isEmpty());
+	}
+}
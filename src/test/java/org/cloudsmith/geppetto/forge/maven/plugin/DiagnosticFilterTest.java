@@ -0,0 +1,56 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.cloudsmith.geppetto.validation.DiagnosticType;
+import org.junit.Test;
+
+public class DiagnosticFilterTest {
+	@Test
+	public void filtersOnSeverity() {
+		DiagnosticFilter filter = new DiagnosticFilter(Diagnostic.ERROR, null, null);
+		assertTrue(filter.accept(Diagnostic.ERROR, DiagnosticType.GEPPETTO));
+		assertFalse(filter.accept(Diagnostic.WARNING, DiagnosticType.GEPPETTO));
+		assertFalse(filter.accept(Diagnostic.INFO, DiagnosticType.GEPPETTO));
+		assertFalse(filter.accept(Diagnostic.INFO, DiagnosticType.PUPPET_LINT));
+		assertEquals(3, filter.getSuppressedCount());
+		assertEquals(
+			"Suppressed 3 diagnostics (1 WARNING, 2 INFO)", filter.createSummary(DiagnosticType.GEPPETTO).getMessage());
+	}
+
+	@Test
+	public void filtersOnType() {
+		DiagnosticFilter filter = new DiagnosticFilter(
+			Diagnostic.OK, null, new DiagnosticType[] { DiagnosticType.PUPPET_LINT });
+		assertTrue(filter.accept(Diagnostic.WARNING, DiagnosticType.GEPPETTO));
+		assertFalse(filter.accept(Diagnostic.ERROR, DiagnosticType.PUPPET_LINT));
+		assertFalse(filter.acceptsType(DiagnosticType.PUPPET_LINT));
+
+		filter = new DiagnosticFilter(Diagnostic.OK, new DiagnosticType[] { DiagnosticType.PUPPET_LINT }, null);
+		assertFalse(filter.accept(Diagnostic.WARNING, DiagnosticType.GEPPETTO));
+		assertTrue(filter.accept(Diagnostic.ERROR, DiagnosticType.PUPPET_LINT));
+	}
+
+	@Test
+	public void noSummaryWhenNothingSuppressed() {
+		DiagnosticFilter filter = new DiagnosticFilter(Diagnostic.OK, null, null);
+		assertTrue(filter.accept(Diagnostic.INFO, DiagnosticType.GEPPETTO));
+		assertNull(filter.createSummary(DiagnosticType.GEPPETTO));
+	}
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cloudsmith.geppetto.validation.DiagnosticType;
+import org.junit.Test;
+
+public class DiagnosticRendererTest {
+	private static Diagnostic createError(String path, int line, String msg) {
+		Diagnostic diag = new Diagnostic(Diagnostic.ERROR, DiagnosticType.GEPPETTO, msg);
+		diag.setResourcePath(path);
+		diag.setLocation(line, -1, -1);
+		return diag;
+	}
+
+	@Test
+	public void errorTextIsCapped() {
+		Diagnostic root = new Diagnostic();
+		for(int idx = 1; idx <= 5; ++idx)
+			root.addChild(createError("a/init.pp", idx, "Error " + idx));
+		assertEquals(
+			"ERROR:a/init.pp:1:Error 1\nERROR:a/init.pp:2:Error 2\n... and 3 more diagnostics", root.getErrorText(2));
+		assertEquals(5, root.getErrorText().split("\n").length);
+	}
+
+	@Test
+	public void errorTextOmitsLowerSeverities() {
+		Diagnostic root = new Diagnostic();
+		root.addChild(new Diagnostic(Diagnostic.WARNING, DiagnosticType.GEPPETTO, "Just a warning"));
+		Diagnostic parent = new Diagnostic(Diagnostic.INFO, DiagnosticType.PUBLISHER, "Module a");
+		parent.addChild(createError("a/init.pp", 3, "Broken"));
+		root.addChild(parent);
+		assertEquals("ERROR:Module a\n    ERROR:a/init.pp:3:Broken", root.getErrorText());
+	}
+
+	@Test
+	public void logIsBatchedPerModuleAndSeverity() {
+		final List<String> messages = new ArrayList<String>();
+		NOPLogger logger = new NOPLogger() {
+			@Override
+			public void error(String msg) {
+				messages.add(msg);
+			}
+
+			@Override
+			public void warn(String msg) {
+				messages.add(msg);
+			}
+		};
+		Diagnostic root = new Diagnostic();
+		root.addChild(createError("a/init.pp", 1, "One"));
+		root.addChild(createError("a/other.pp", 2, "Two"));
+		root.addChild(createError("b/init.pp", 3, "Three"));
+		root.addChild(new Diagnostic(Diagnostic.WARNING, DiagnosticType.PUBLISHER, "Four"));
+		DiagnosticRenderer.log(logger, root);
+		assertEquals(3, messages.size());
+		assertEquals("GEPPETTO: One\nGEPPETTO: Two", messages.get(0));
+		assertEquals("GEPPETTO: Three", messages.get(1));
+		assertEquals("PUBLISHER: Four", messages.get(2));
+	}
+}
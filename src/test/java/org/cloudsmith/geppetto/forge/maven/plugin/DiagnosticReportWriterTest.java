@@ -0,0 +1,100 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.cloudsmith.geppetto.validation.DiagnosticType;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+public class DiagnosticReportWriterTest {
+	private static Diagnostic createDiagnostic() {
+		Diagnostic root = new Diagnostic();
+		Diagnostic error = new Diagnostic(Diagnostic.ERROR, DiagnosticType.GEPPETTO, "Unknown class 'foo'");
+		error.setResourcePath("test_module/manifests/init.pp");
+		error.setLocation(4, 27, 5);
+		root.addChild(error);
+		Diagnostic warning = new Diagnostic(Diagnostic.WARNING, DiagnosticType.PUPPET_LINT, "Line has <tabs> & \"quotes\"");
+		warning.setResourcePath("test_module/manifests/init.pp");
+		warning.setLocation(9, -1, -1);
+		root.addChild(warning);
+		root.addChild(new Diagnostic(Diagnostic.INFO, DiagnosticType.GEPPETTO, "No additional dependencies were detected"));
+		return root;
+	}
+
+	private static String write(ReportFormat format) throws Exception {
+		StringWriter out = new StringWriter();
+		format.createWriter().write(createDiagnostic(), "Validation", out);
+		return out.toString();
+	}
+
+	@Test
+	public void json() throws Exception {
+		JsonObject report = new JsonParser().parse(write(ReportFormat.JSON)).getAsJsonObject();
+		assertEquals("ERROR", report.get("severity").getAsString());
+		JsonObject first = report.getAsJsonObject("diagnostic").getAsJsonArray("children").get(0).getAsJsonObject();
+		assertEquals(4, first.get("line").getAsInt());
+		assertEquals(27, first.get("offset").getAsInt());
+	}
+
+	@Test
+	public void junit() throws Exception {
+		Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(
+			new InputSource(new StringReader(write(ReportFormat.JUNIT))));
+		assertEquals("3", doc.getDocumentElement().getAttribute("tests"));
+		assertEquals("1", doc.getDocumentElement().getAttribute("failures"));
+		assertEquals(1, doc.getElementsByTagName("failure").getLength());
+	}
+
+	@Test
+	public void junitCaseHoldsOnlyItsOwnText() throws Exception {
+		Diagnostic root = new Diagnostic();
+		Diagnostic parent = new Diagnostic(Diagnostic.ERROR, DiagnosticType.PUBLISHER, "Publishing failed");
+		Diagnostic child = new Diagnostic(Diagnostic.ERROR, DiagnosticType.PUBLISHER, "Upload was rejected");
+		child.setResourcePath("test_module/metadata.json");
+		parent.addChild(child);
+		root.addChild(parent);
+		StringWriter out = new StringWriter();
+		ReportFormat.JUNIT.createWriter().write(root, "Publishing", out);
+		Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(
+			new InputSource(new StringReader(out.toString())));
+		NodeList failures = doc.getElementsByTagName("failure");
+		assertEquals(2, failures.getLength());
+		assertEquals("ERROR:Publishing failed", failures.item(0).getTextContent());
+		assertEquals("ERROR:test_module/metadata.json:Upload was rejected", failures.item(1).getTextContent());
+	}
+
+	@Test
+	public void sarif() throws Exception {
+		JsonObject report = new JsonParser().parse(write(ReportFormat.SARIF)).getAsJsonObject();
+		assertEquals("2.1.0", report.get("version").getAsString());
+		JsonObject run = report.getAsJsonArray("runs").get(0).getAsJsonObject();
+		assertEquals(3, run.getAsJsonArray("results").size());
+		JsonObject first = run.getAsJsonArray("results").get(0).getAsJsonObject();
+		assertEquals("error", first.get("level").getAsString());
+		assertTrue(first.toString().contains("\"startLine\":4"));
+	}
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.cloudsmith.geppetto.validation.DiagnosticType;
+import org.junit.Test;
+
+public class DiagnosticTest {
+	@Test
+	public void locationLabelIsFormattedFromLocation() {
+		Diagnostic diag = new Diagnostic(Diagnostic.ERROR, DiagnosticType.GEPPETTO, "msg");
+		assertNull(diag.getLocationLabel());
+		assertEquals(0, diag.getLine());
+
+		diag.setLocation(12, 40, 3);
+		assertEquals("12(40,3)", diag.getLocationLabel());
+		assertEquals(12, diag.getLine());
+
+		diag.setLocation(12, 40, -1);
+		assertEquals("12(40)", diag.getLocationLabel());
+
+		diag.setLocation(-1, -1, -1);
+		assertEquals("-", diag.getLocationLabel());
+		assertEquals(0, diag.getLine());
+	}
+
+	@Test
+	public void locationLabelIsParsed() {
+		Diagnostic diag = new Diagnostic();
+		diag.setLocationLabel("7(120,5)");
+		assertEquals(7, diag.getLine());
+		assertEquals(120, diag.getOffset());
+		assertEquals(5, diag.getLength());
+		assertEquals("7(120,5)", diag.getLocationLabel());
+
+		diag.setLocationLabel("-(3)");
+		assertEquals(0, diag.getLine());
+		assertEquals(3, diag.getOffset());
+		assertEquals(-1, diag.getLength());
+		assertEquals("-(3)", diag.getLocationLabel());
+	}
+
+	@Test
+	public void nonConformingLocationLabelIsRetained() {
+		Diagnostic diag = new Diagnostic();
+		diag.setLocationLabel("42:some column");
+		assertEquals(42, diag.getLine());
+		assertEquals("42:some column", diag.getLocationLabel());
+
+		diag.setLocationLabel("unknown");
+		assertEquals(0, diag.getLine());
+		assertEquals("unknown", diag.getLocationLabel());
+	}
+
+	@Test
+	public void resourcePathsArePooled() {
+		Diagnostic a = new Diagnostic();
+		Diagnostic b = new Diagnostic();
+		a.setResourcePath(new String("manifests/init.pp"));
+		b.setResourcePath(new String("manifests/init.pp"));
+		assertSame(a.getResourcePath(), b.getResourcePath());
+	}
+
+	@Test
+	public void toStringIncludesLocation() {
+		Diagnostic diag = new Diagnostic(Diagnostic.WARNING, DiagnosticType.GEPPETTO, "Unquoted title");
+		diag.setResourcePath("manifests/init.pp");
+		diag.setLocation(3, 17, 4);
+		assertEquals("WARNING:manifests/init.pp:3(17,4):Unquoted title", diag.toString());
+	}
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class ExcludeMatcherTest {
+	private static Pattern toRegex(String glob) {
+		StringBuilder bld = new StringBuilder();
+		for(char c : glob.toCharArray())
+			if(c == '*')
+				bld.append(".*");
+			else if(c == '?')
+				bld.append('.');
+			else
+				bld.append(Pattern.quote(String.valueOf(c)));
+		return Pattern.compile(bld.toString());
+	}
+
+	@Test
+	public void agreesWithRegularExpressions() {
+		List<String> globs = asList("*a*b?c", "?", "x*y*z", "**", "a?*", "*.*.bak");
+		List<String> names = asList(
+			"", "a", "ab", "abc", "aXbYc", "aabbc", "xyz", "xaybz", "xzy", "x.y.bak", "x.bak", "ab.", "q");
+		for(String glob : globs) {
+			ExcludeMatcher matcher = new ExcludeMatcher(Collections.singletonList(glob));
+			Pattern regex = toRegex(glob);
+			for(String name : names)
+				assertEquals(glob + " vs " + name, regex.matcher(name).matches(), matcher.matches(name));
+		}
+	}
+
+	@Test
+	public void matchesLiteralsPrefixesAndSuffixes() {
+		ExcludeMatcher matcher = new ExcludeMatcher(asList(".git", "CVS", "*~", ".#*", "#*#", ".geppetto"));
+		assertTrue(matcher.matches(".git"));
+		assertTrue(matcher.matches("CVS"));
+		assertTrue(matcher.matches("init.pp~"));
+		assertTrue(matcher.matches(".#init.pp"));
+		assertTrue(matcher.matches("#init.pp#"));
+		assertTrue(matcher.matches(".geppetto"));
+		assertFalse(matcher.matches(".gitignore.pp"));
+		assertFalse(matcher.matches("cvs"));
+		assertFalse(matcher.matches("#init.pp"));
+		assertFalse(matcher.matches("manifests"));
+	}
+
+	@Test
+	public void withAddsPatterns() {
+		ExcludeMatcher defaults = new ExcludeMatcher(asList(".git"));
+		assertSame(defaults, defaults.with(Collections.<String> emptyList()));
+
+		ExcludeMatcher matcher = defaults.with(asList("spec", "*.orig"));
+		assertEquals(asList(".git", "spec", "*.orig"), matcher.getPatterns());
+		assertTrue(matcher.matches(".git"));
+		assertTrue(matcher.matches("spec"));
+		assertTrue(matcher.matches("init.pp.orig"));
+		assertFalse(defaults.matches("spec"));
+	}
+}
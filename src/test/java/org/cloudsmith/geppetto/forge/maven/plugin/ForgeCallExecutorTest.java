@@ -0,0 +1,184 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.client.HttpResponseException;
+import org.cloudsmith.geppetto.validation.DiagnosticType;
+import org.junit.Test;
+
+public class ForgeCallExecutorTest {
+	private static final int[] STATUS_CODES = { 500, 502, 503, 504 };
+
+	private static ForgeCall<String> failing(final AtomicInteger calls, final int failures, final int status) {
+		return new ForgeCall<String>() {
+			@Override
+			public String call() throws IOException {
+				if(calls.incrementAndGet() <= failures)
+					throw new HttpResponseException(status, "Failure " + calls.get());
+				return "OK";
+			}
+		};
+	}
+
+	@Test
+	public void circuitOpensAfterConsecutiveFailures() throws Exception {
+		ForgeCallExecutor executor = new ForgeCallExecutor(
+			new RetryPolicy(0, 0, 0, 0, STATUS_CODES), new CircuitBreaker(2, 60000));
+		AtomicInteger calls = new AtomicInteger();
+		for(int idx = 0; idx < 2; ++idx) {
+			try {
+				executor.execute("probe", true, failing(calls, 10, 503));
+				fail("Expected failure");
+			}
+			catch(HttpResponseException e) {
+				assertEquals(503, e.getStatusCode());
+			}
+		}
+		try {
+			executor.execute("probe", true, failing(calls, 10, 503));
+			fail("Expected open circuit");
+		}
+		catch(CircuitBreaker.OpenException e) {
+		}
+		assertEquals(2, calls.get());
+		assertEquals(Diagnostic.WARNING, executor.createSummary(DiagnosticType.PUBLISHER).getSeverity());
+	}
+
+	@Test
+	public void latencyIsRecordedPerAttempt() throws Exception {
+		ForgeCallExecutor executor = new ForgeCallExecutor(
+			new RetryPolicy(3, 200, 200, 0, STATUS_CODES), new CircuitBreaker(0, 0));
+		LatencyRecorder latencies = new LatencyRecorder();
+		executor.setLatencyRecorder(latencies);
+		AtomicInteger calls = new AtomicInteger();
+		assertEquals("OK", executor.execute("probe", true, failing(calls, 2, 503)));
+		assertEquals(3, latencies.getCount());
+		// The delays between the attempts are not part of the latency
+		assertTrue(latencies.getMax() < TimeUnit.MILLISECONDS.toNanos(200));
+	}
+
+	@Test
+	public void nonIdempotentCallIsNotRetriedOnServerError() throws Exception {
+		ForgeCallExecutor executor = new ForgeCallExecutor(
+			new RetryPolicy(3, 0, 0, 0, STATUS_CODES), new CircuitBreaker(0, 0));
+		AtomicInteger calls = new AtomicInteger();
+		try {
+			executor.execute("upload", false, failing(calls, 1, 500));
+			fail("Expected failure");
+		}
+		catch(HttpResponseException e) {
+			assertEquals(500, e.getStatusCode());
+		}
+		assertEquals(1, calls.get());
+
+		calls.set(0);
+		assertEquals("OK", executor.execute("upload", false, failing(calls, 1, 503)));
+		assertEquals(2, calls.get());
+	}
+
+	@Test
+	public void transientFailuresAreRetried() throws Exception {
+		ForgeCallExecutor executor = new ForgeCallExecutor(
+			new RetryPolicy(3, 0, 0, 0, STATUS_CODES), new CircuitBreaker(5, 60000));
+		AtomicInteger calls = new AtomicInteger();
+		assertEquals("OK", executor.execute("download", true, failing(calls, 2, 502)));
+		assertEquals(3, calls.get());
+		assertEquals(2, executor.getRetryCount());
+
+		// 404 is a definite answer
+		calls.set(0);
+		try {
+			executor.execute("probe", true, failing(calls, 1, 404));
+			fail("Expected failure");
+		}
+		catch(HttpResponseException e) {
+			assertEquals(404, e.getStatusCode());
+		}
+		assertEquals(1, calls.get());
+
+		Diagnostic summary = executor.createSummary(DiagnosticType.PUBLISHER);
+		assertEquals(Diagnostic.INFO, summary.getSeverity());
+		assertTrue(summary.getMessage().contains("download: 2"));
+		assertNull(new ForgeCallExecutor(
+			new RetryPolicy(3, 0, 0, 0, STATUS_CODES), new CircuitBreaker(5, 0)).createSummary(DiagnosticType.PUBLISHER));
+	}
+
+	@Test
+	public void canceledTrialAllowsAnotherTrial() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker(1, 0);
+		assertFalse(breaker.acquire());
+		breaker.recordFailure();
+		assertTrue(breaker.acquire());
+		breaker.cancelTrial();
+		assertTrue(breaker.acquire());
+		breaker.recordSuccess();
+		assertFalse(breaker.isOpen());
+	}
+
+	@Test
+	public void circuitIsSettledByRuntimeException() throws Exception {
+		ForgeCallExecutor executor = new ForgeCallExecutor(
+			new RetryPolicy(0, 0, 0, 0, STATUS_CODES), new CircuitBreaker(1, 0));
+		AtomicInteger calls = new AtomicInteger();
+		try {
+			executor.execute("probe", true, failing(calls, 1, 503));
+			fail("Expected failure");
+		}
+		catch(HttpResponseException e) {
+		}
+		assertTrue(executor.getCircuitBreaker().isOpen());
+
+		try {
+			executor.execute("probe", true, new ForgeCall<String>() {
+				@Override
+				public String call() {
+					throw new IllegalStateException("Unexpected response");
+				}
+			});
+			fail("Expected failure");
+		}
+		catch(IllegalStateException e) {
+		}
+		assertTrue(executor.getCircuitBreaker().isOpen());
+
+		// The failed trial must not block the next one
+		assertEquals("OK", executor.execute("probe", true, failing(calls, 1, 503)));
+		assertFalse(executor.getCircuitBreaker().isOpen());
+	}
+
+	@Test
+	public void delayGrowsExponentially() {
+		RetryPolicy policy = new RetryPolicy(5, 100, 1000, 0, STATUS_CODES);
+		assertEquals(100, policy.getDelay(0));
+		assertEquals(200, policy.getDelay(1));
+		assertEquals(800, policy.getDelay(3));
+		assertEquals(1000, policy.getDelay(4));
+
+		policy = new RetryPolicy(5, 100, 1000, 0.5, STATUS_CODES);
+		for(int idx = 0; idx < 20; ++idx) {
+			long delay = policy.getDelay(1);
+			assertTrue(delay > 100 && delay <= 200);
+		}
+	}
+}
@@ -0,0 +1,785 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An in-process stand-in for the Forge that implements the parts of the v2 REST API that the plug-in
+ * and its tests use:
+ * <ul>
+ * <li><tt>POST oauth/token</tt></li>
+ * <li><tt>POST v2/modules</tt></li>
+ * <li><tt>GET v2/users/{owner}/releases?offset={offset}&amp;limit={limit}</tt>, paginated</li>
+ * <li><tt>GET v2/users/{owner}/modules/{name}</tt></li>
+ * <li><tt>GET|POST v2/users/{owner}/modules/{name}/releases</tt></li>
+ * <li><tt>GET v2/users/{owner}/modules/{name}/releases/{version}</tt></li>
+ * <li><tt>GET v2/users/{owner}/modules/{name}/releases/{version}/download</tt></li>
+ * </ul>
+ * All state is kept in memory. Latency and failures can be injected to exercise retrying, caching,
+ * and concurrent code paths without a real Forge.
+ */
+public class ForgeStandIn {
+	private static class StoredModule {
+		final String owner;
+
+		final String name;
+
+		final String description;
+
+		final Map<String, StoredRelease> releases = new LinkedHashMap<String, StoredRelease>();
+
+		StoredModule(String owner, String name, String description) {
+			this.owner = owner;
+			this.name = name;
+			this.description = description;
+		}
+
+		JsonObject toJson() {
+			JsonObject ownerJson = new JsonObject();
+			ownerJson.addProperty("username", owner);
+			JsonObject json = new JsonObject();
+			json.addProperty("name", name);
+			json.addProperty("full_name", owner + '/' + name);
+			json.addProperty("description", description);
+			json.add("owner", ownerJson);
+			return json;
+		}
+	}
+
+	private static class StoredRelease {
+		final StoredModule module;
+
+		final String version;
+
+		final JsonObject metadata;
+
+		final byte[] archive;
+
+		final String notes;
+
+		StoredRelease(StoredModule module, String version, JsonObject metadata, byte[] archive, String notes) {
+			this.module = module;
+			this.version = version;
+			this.metadata = metadata;
+			this.archive = archive;
+			this.notes = notes;
+		}
+
+		JsonObject toJson() {
+			JsonObject json = new JsonObject();
+			json.addProperty("version", version);
+			json.addProperty("notes", notes);
+			json.addProperty("file_size", archive.length);
+			json.add("module", module.toJson());
+			if(metadata != null)
+				json.add("metadata", metadata);
+			return json;
+		}
+	}
+
+	private static class StatusException extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		final int status;
+
+		StatusException(int status, String message) {
+			super(message);
+			this.status = status;
+		}
+	}
+
+	public static final String TOKEN = "token";
+
+	public static final String MODULE = "module";
+
+	public static final String MODULE_CREATE = "module_create";
+
+	public static final String RELEASES = "releases";
+
+	public static final String RELEASE = "release";
+
+	public static final String RELEASE_CREATE = "release_create";
+
+	public static final String DOWNLOAD = "download";
+
+	public static final String OWNER_RELEASES = "owner_releases";
+
+	private static final int TAR_BLOCK = 512;
+
+	private static int indexOf(byte[] data, byte[] pattern, int start) {
+		int last = data.length - pattern.length;
+		nextPos: for(int idx = start; idx <= last; ++idx) {
+			for(int pdx = 0; pdx < pattern.length; ++pdx)
+				if(data[idx + pdx] != pattern[pdx])
+					continue nextPos;
+			return idx;
+		}
+		return -1;
+	}
+
+	private static Map<String, String> parseForm(String body) throws UnsupportedEncodingException {
+		Map<String, String> params = new HashMap<String, String>();
+		for(String pair : body.split("&")) {
+			int eq = pair.indexOf('=');
+			if(eq > 0)
+				params.put(
+					URLDecoder.decode(pair.substring(0, eq), "UTF-8"), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+		}
+		return params;
+	}
+
+	/**
+	 * Extracts the multipart fields of the given body. File fields are returned as raw bytes and all
+	 * other fields as UTF-8 strings.
+	 */
+	private static Map<String, Object> parseMultipart(String contentType, byte[] body) throws StatusException {
+		int bdx = contentType.indexOf("boundary=");
+		if(bdx < 0)
+			throw new StatusException(400, "Missing multipart boundary");
+		String boundary = contentType.substring(bdx + 9);
+		int semi = boundary.indexOf(';');
+		if(semi >= 0)
+			boundary = boundary.substring(0, semi);
+		if(boundary.startsWith("\""))
+			boundary = boundary.substring(1, boundary.length() - 1);
+
+		byte[] delimiter = ("--" + boundary).getBytes(AbstractForgeMojo.UTF_8);
+		byte[] headerEnd = "\r\n\r\n".getBytes(AbstractForgeMojo.UTF_8);
+		Map<String, Object> fields = new HashMap<String, Object>();
+		int start = indexOf(body, delimiter, 0);
+		while(start >= 0) {
+			int headersStart = start + delimiter.length + 2;
+			int next = indexOf(body, delimiter, headersStart);
+			if(next < 0)
+				break;
+			int dataStart = indexOf(body, headerEnd, headersStart);
+			if(dataStart < 0 || dataStart > next)
+				break;
+			String headers = new String(body, headersStart, dataStart - headersStart, AbstractForgeMojo.UTF_8);
+			dataStart += headerEnd.length;
+			int dataEnd = next - 2; // CRLF before the delimiter
+			int ndx = headers.indexOf("name=\"");
+			if(ndx >= 0) {
+				String name = headers.substring(ndx + 6, headers.indexOf('"', ndx + 6));
+				byte[] data = new byte[Math.max(0, dataEnd - dataStart)];
+				System.arraycopy(body, dataStart, data, 0, data.length);
+				fields.put(name, headers.contains("filename=")
+						? data
+						: new String(data, AbstractForgeMojo.UTF_8));
+			}
+			start = next;
+		}
+		return fields;
+	}
+
+	private static String parseOctal(byte[] header, int offset, int length) {
+		StringBuilder bld = new StringBuilder(length);
+		for(int idx = offset; idx < offset + length; ++idx) {
+			byte b = header[idx];
+			if(b >= '0' && b <= '7')
+				bld.append((char) b);
+		}
+		return bld.toString();
+	}
+
+	private static String parseString(byte[] header, int offset, int length) {
+		int end = offset;
+		while(end < offset + length && header[end] != 0)
+			++end;
+		return new String(header, offset, end - offset, AbstractForgeMojo.UTF_8);
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[8192];
+		int cnt;
+		while((cnt = in.read(buf)) > 0)
+			out.write(buf, 0, cnt);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Finds the <tt>metadata.json</tt> at the top level of the module in a gzipped tar archive
+	 *
+	 * @return The parsed metadata or <code>null</code> if not found
+	 */
+	static JsonObject readArchiveMetadata(byte[] archive) throws IOException {
+		byte[] tar = readAll(new GZIPInputStream(new ByteArrayInputStream(archive)));
+		String longName = null;
+		for(int pos = 0; pos + TAR_BLOCK <= tar.length;) {
+			String name = parseString(tar, pos, 100);
+			if(name.isEmpty())
+				break;
+			String sizeStr = parseOctal(tar, pos + 124, 12);
+			int size = sizeStr.isEmpty()
+					? 0
+					: Integer.parseInt(sizeStr, 8);
+			byte type = tar[pos + 156];
+			String prefix = parseString(tar, pos + 345, 155);
+			int dataStart = pos + TAR_BLOCK;
+			pos = dataStart + (size + TAR_BLOCK - 1) / TAR_BLOCK * TAR_BLOCK;
+
+			if(type == 'L') {
+				longName = parseString(tar, dataStart, size);
+				continue;
+			}
+			if(longName != null) {
+				name = longName;
+				longName = null;
+			}
+			else if(!prefix.isEmpty())
+				name = prefix + '/' + name;
+
+			int slash = name.indexOf('/');
+			if(slash > 0 && name.substring(slash + 1).equals("metadata.json"))
+				return new JsonParser().parse(new String(tar, dataStart, size, AbstractForgeMojo.UTF_8)).getAsJsonObject();
+		}
+		return null;
+	}
+
+	private final HttpServer server;
+
+	private final ExecutorService executor;
+
+	private final ConcurrentMap<String, String> passwords = new ConcurrentHashMap<String, String>();
+
+	private final ConcurrentMap<String, String> tokens = new ConcurrentHashMap<String, String>();
+
+	private final ConcurrentMap<String, StoredModule> modules = new ConcurrentHashMap<String, StoredModule>();
+
+	private final ConcurrentMap<String, AtomicInteger> requestCounts = new ConcurrentHashMap<String, AtomicInteger>();
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	private final AtomicInteger maxInFlight = new AtomicInteger();
+
+	private final AtomicInteger failNextCount = new AtomicInteger();
+
+	private volatile int failNextStatus = 503;
+
+	private volatile long minLatencyMillis;
+
+	private volatile long maxLatencyMillis;
+
+	private volatile double failureRate;
+
+	private volatile int failureStatus = 503;
+
+	private volatile int maxListingLimit = Integer.MAX_VALUE;
+
+	private volatile boolean paginatedListing = true;
+
+	private volatile boolean ignoreListingOffset;
+
+	/**
+	 * Creates a stand-in that listens on an ephemeral port of the loopback interface. The server is
+	 * not started until {@link #start()} is called.
+	 *
+	 * @throws IOException
+	 */
+	public ForgeStandIn() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0), 0);
+		executor = Executors.newCachedThreadPool(new ThreadFactory() {
+			private final AtomicInteger counter = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "forge-stand-in-" + counter.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		server.setExecutor(executor);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				ForgeStandIn.this.handle(exchange);
+			}
+		});
+	}
+
+	/**
+	 * Adds a module owned by the given user
+	 */
+	public void addModule(String owner, String name) {
+		modules.putIfAbsent(owner + '/' + name, new StoredModule(owner, name, null));
+	}
+
+	/**
+	 * Adds a release to an existing module. The metadata of the release is read from the archive.
+	 *
+	 * @throws IOException
+	 *             if the archive is not a gzipped tar file
+	 */
+	public void addRelease(String owner, String name, String version, byte[] archive) throws IOException {
+		StoredModule module = modules.get(owner + '/' + name);
+		if(module == null)
+			throw new IllegalArgumentException("No such module: " + owner + '/' + name);
+		synchronized(module) {
+			module.releases.put(version, new StoredRelease(module, version, readArchiveMetadata(archive), archive, null));
+		}
+	}
+
+	public void addUser(String login, String password) {
+		passwords.put(login, password);
+	}
+
+	private void checkInjectedFailure() throws StatusException {
+		int remaining = failNextCount.get();
+		while(remaining > 0) {
+			if(failNextCount.compareAndSet(remaining, remaining - 1))
+				throw new StatusException(failNextStatus, "Injected failure");
+			remaining = failNextCount.get();
+		}
+		if(failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate)
+			throw new StatusException(failureStatus, "Injected failure");
+	}
+
+	private JsonObject createModule(HttpExchange exchange) throws IOException, StatusException {
+		String owner = getAuthenticatedUser(exchange);
+		JsonObject template = new JsonParser().parse(
+			new String(readAll(exchange.getRequestBody()), AbstractForgeMojo.UTF_8)).getAsJsonObject();
+		JsonElement name = template.get("name");
+		if(name == null || name.isJsonNull())
+			throw new StatusException(400, "Module name is required");
+		JsonElement description = template.get("description");
+		StoredModule module = new StoredModule(owner, name.getAsString(), description == null ||
+				description.isJsonNull()
+				? null
+				: description.getAsString());
+		if(modules.putIfAbsent(owner + '/' + module.name, module) != null)
+			throw new StatusException(409, "Module already exists");
+		return module.toJson();
+	}
+
+	private JsonObject createRelease(HttpExchange exchange, StoredModule module) throws IOException, StatusException {
+		if(!module.owner.equals(getAuthenticatedUser(exchange)))
+			throw new StatusException(403, "Forbidden");
+
+		String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+		if(contentType == null || !contentType.startsWith("multipart/form-data"))
+			throw new StatusException(400, "Expected multipart/form-data");
+
+		Map<String, Object> fields = parseMultipart(contentType, readAll(exchange.getRequestBody()));
+		Object file = fields.get("file");
+		if(!(file instanceof byte[]))
+			throw new StatusException(400, "Missing file");
+
+		byte[] archive = (byte[]) file;
+		JsonObject metadata;
+		try {
+			metadata = readArchiveMetadata(archive);
+		}
+		catch(IOException e) {
+			throw new StatusException(400, "Invalid archive: " + e.getMessage());
+		}
+		if(metadata == null || !metadata.has("version"))
+			throw new StatusException(400, "Archive has no metadata.json");
+
+		String version = metadata.get("version").getAsString();
+		Object notes = fields.get("notes");
+		StoredRelease release = new StoredRelease(module, version, metadata, archive, notes instanceof String
+				? (String) notes
+				: null);
+		synchronized(module) {
+			if(module.releases.containsKey(version))
+				throw new StatusException(409, "Release " + version + " already exists");
+			module.releases.put(version, release);
+		}
+		return release.toJson();
+	}
+
+	private void delay() {
+		long min = minLatencyMillis;
+		long max = maxLatencyMillis;
+		if(max <= 0)
+			return;
+		long millis = max > min
+				? min + ThreadLocalRandom.current().nextLong(max - min + 1)
+				: max;
+		try {
+			Thread.sleep(millis);
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * The next <code>count</code> requests will fail with the given HTTP status
+	 */
+	public void failNext(int count, int status) {
+		failNextStatus = status;
+		failNextCount.set(count);
+	}
+
+	private String getAuthenticatedUser(HttpExchange exchange) throws StatusException {
+		String auth = exchange.getRequestHeaders().getFirst("Authorization");
+		String login = null;
+		if(auth != null)
+			login = tokens.get(auth.substring(auth.lastIndexOf(' ') + 1));
+		if(login == null)
+			throw new StatusException(401, "Unauthorized");
+		return login;
+	}
+
+	/**
+	 * @return The highest number of requests that have been processed concurrently
+	 */
+	public int getMaxConcurrentRequests() {
+		return maxInFlight.get();
+	}
+
+	private StoredModule getModule(String owner, String name) throws StatusException {
+		StoredModule module = modules.get(owner + '/' + name);
+		if(module == null)
+			throw new StatusException(404, "Module not found");
+		return module;
+	}
+
+	private StoredRelease getRelease(StoredModule module, String version) throws StatusException {
+		StoredRelease release;
+		synchronized(module) {
+			release = module.releases.get(version);
+		}
+		if(release == null)
+			throw new StatusException(404, "Release not found");
+		return release;
+	}
+
+	/**
+	 * @param endpoint
+	 *            One of the endpoint constants declared by this class
+	 * @return The number of requests received by the endpoint, including injected failures
+	 */
+	public int getRequestCount(String endpoint) {
+		AtomicInteger count = requestCounts.get(endpoint);
+		return count == null
+				? 0
+				: count.get();
+	}
+
+	/**
+	 * @return The URL to use as the <tt>serviceURL</tt> of the plug-in
+	 */
+	public String getServiceURL() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + '/';
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		int current = inFlight.incrementAndGet();
+		int max = maxInFlight.get();
+		while(current > max && !maxInFlight.compareAndSet(max, current))
+			max = maxInFlight.get();
+
+		try {
+			String method = exchange.getRequestMethod();
+			String[] segments = exchange.getRequestURI().getPath().substring(1).split("/");
+			int len = segments.length;
+			try {
+				if(len == 2 && "oauth".equals(segments[0]) && "token".equals(segments[1])) {
+					requireMethod(method, "POST");
+					respond(exchange, TOKEN, null);
+					return;
+				}
+				if(len >= 2 && "v2".equals(segments[0])) {
+					if(len == 2 && "modules".equals(segments[1])) {
+						requireMethod(method, "POST");
+						respond(exchange, MODULE_CREATE, null);
+						return;
+					}
+					if(len == 4 && "users".equals(segments[1]) && "releases".equals(segments[3])) {
+						requireMethod(method, "GET");
+						respond(exchange, OWNER_RELEASES, segments);
+						return;
+					}
+					if(len >= 5 && "users".equals(segments[1]) && "modules".equals(segments[3])) {
+						String endpoint;
+						switch(len) {
+							case 5:
+								endpoint = MODULE;
+								break;
+							case 6:
+								endpoint = "POST".equals(method)
+										? RELEASE_CREATE
+										: RELEASES;
+								break;
+							case 7:
+								endpoint = RELEASE;
+								break;
+							default:
+								endpoint = len == 8 && "download".equals(segments[7])
+										? DOWNLOAD
+										: null;
+						}
+						if(endpoint != null && (len < 6 || "releases".equals(segments[5]))) {
+							respond(exchange, endpoint, segments);
+							return;
+						}
+					}
+				}
+				throw new StatusException(404, "Not found");
+			}
+			catch(StatusException e) {
+				sendError(exchange, e);
+			}
+		}
+		finally {
+			inFlight.decrementAndGet();
+			exchange.close();
+		}
+	}
+
+	private JsonObject issueToken(HttpExchange exchange) throws IOException, StatusException {
+		String body = new String(readAll(exchange.getRequestBody()), AbstractForgeMojo.UTF_8);
+		Map<String, String> params;
+		String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+		if(contentType != null && contentType.startsWith("application/json")) {
+			params = new HashMap<String, String>();
+			for(Map.Entry<String, JsonElement> entry : new JsonParser().parse(body).getAsJsonObject().entrySet())
+				params.put(entry.getKey(), entry.getValue().getAsString());
+		}
+		else
+			params = parseForm(body);
+
+		String login = params.get("username");
+		String password = login == null
+				? null
+				: passwords.get(login);
+		if(password == null || !password.equals(params.get("password")))
+			throw new StatusException(401, "Invalid credentials");
+
+		String token = UUID.randomUUID().toString();
+		tokens.put(token, login);
+		JsonObject json = new JsonObject();
+		json.addProperty("access_token", token);
+		json.addProperty("token_type", "bearer");
+		json.addProperty("expires_in", 3600);
+		json.addProperty("refresh_token", UUID.randomUUID().toString());
+		return json;
+	}
+
+	private JsonElement listReleases(HttpExchange exchange, String owner) throws IOException, StatusException {
+		String query = exchange.getRequestURI().getRawQuery();
+		Map<String, String> params = query == null
+				? new HashMap<String, String>()
+				: parseForm(query);
+		int offset = params.containsKey("offset") && !ignoreListingOffset
+				? Integer.parseInt(params.get("offset"))
+				: 0;
+		int limit = Math.min(maxListingLimit, params.containsKey("limit")
+				? Integer.parseInt(params.get("limit"))
+				: 20);
+		if(!passwords.containsKey(owner))
+			throw new StatusException(404, "User not found");
+
+		List<StoredModule> owned = new ArrayList<StoredModule>();
+		for(StoredModule module : modules.values())
+			if(module.owner.equals(owner))
+				owned.add(module);
+		Collections.sort(owned, new Comparator<StoredModule>() {
+			@Override
+			public int compare(StoredModule a, StoredModule b) {
+				return a.name.compareTo(b.name);
+			}
+		});
+
+		List<StoredRelease> releases = new ArrayList<StoredRelease>();
+		for(StoredModule module : owned)
+			synchronized(module) {
+				releases.addAll(module.releases.values());
+			}
+		JsonArray array = new JsonArray();
+		for(int idx = offset; idx < releases.size() && idx < offset + limit; ++idx)
+			array.add(releases.get(idx).toJson());
+		if(!paginatedListing)
+			return array;
+
+		JsonObject pagination = new JsonObject();
+		pagination.addProperty("offset", offset);
+		pagination.addProperty("limit", limit);
+		pagination.addProperty("total", releases.size());
+		if(offset + limit < releases.size())
+			pagination.addProperty("next", exchange.getRequestURI().getRawPath() + "?offset=" + (offset + limit) +
+					"&limit=" + limit);
+		JsonObject page = new JsonObject();
+		page.add("pagination", pagination);
+		page.add("results", array);
+		return page;
+	}
+
+	private void requireMethod(String method, String expected) throws StatusException {
+		if(!expected.equals(method))
+			throw new StatusException(405, "Method not allowed");
+	}
+
+	private void respond(HttpExchange exchange, String endpoint, String[] segments) throws IOException,
+			StatusException {
+		AtomicInteger count = requestCounts.get(endpoint);
+		if(count == null) {
+			AtomicInteger newCount = new AtomicInteger();
+			count = requestCounts.putIfAbsent(endpoint, newCount);
+			if(count == null)
+				count = newCount;
+		}
+		count.incrementAndGet();
+		delay();
+		checkInjectedFailure();
+
+		JsonElement json;
+		if(TOKEN.equals(endpoint))
+			json = issueToken(exchange);
+		else if(MODULE_CREATE.equals(endpoint))
+			json = createModule(exchange);
+		else if(OWNER_RELEASES.equals(endpoint))
+			json = listReleases(exchange, segments[2]);
+		else {
+			StoredModule module = getModule(segments[2], segments[4]);
+			if(MODULE.equals(endpoint))
+				json = module.toJson();
+			else if(RELEASE_CREATE.equals(endpoint))
+				json = createRelease(exchange, module);
+			else if(RELEASES.equals(endpoint)) {
+				List<StoredRelease> releases;
+				synchronized(module) {
+					releases = new ArrayList<StoredRelease>(module.releases.values());
+				}
+				JsonArray array = new JsonArray();
+				for(StoredRelease release : releases)
+					array.add(release.toJson());
+				json = array;
+			}
+			else {
+				StoredRelease release = getRelease(module, segments[6]);
+				if(DOWNLOAD.equals(endpoint)) {
+					exchange.getResponseHeaders().set("Content-Type", "application/x-gzip");
+					exchange.sendResponseHeaders(200, release.archive.length);
+					OutputStream out = exchange.getResponseBody();
+					out.write(release.archive);
+					out.flush();
+					return;
+				}
+				json = release.toJson();
+			}
+		}
+		sendJson(exchange, 200, json);
+	}
+
+	private void sendError(HttpExchange exchange, StatusException e) throws IOException {
+		JsonObject json = new JsonObject();
+		json.addProperty("error", e.getMessage());
+		sendJson(exchange, e.status, json);
+	}
+
+	private void sendJson(HttpExchange exchange, int status, JsonElement json) throws IOException {
+		byte[] bytes = json.toString().getBytes(AbstractForgeMojo.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(bytes);
+		out.flush();
+	}
+
+	/**
+	 * Makes a random fraction of all requests fail with the given HTTP status
+	 *
+	 * @param failureRate
+	 *            A value between 0 (never fail) and 1 (always fail)
+	 * @param status
+	 *            The status to respond with
+	 */
+	public void setFailureRate(double failureRate, int status) {
+		this.failureStatus = status;
+		this.failureRate = failureRate;
+	}
+
+	/**
+	 * Makes owner release listings start at the first release, regardless of the requested offset
+	 */
+	public void setIgnoreListingOffset(boolean ignoreListingOffset) {
+		this.ignoreListingOffset = ignoreListingOffset;
+	}
+
+	/**
+	 * Makes owner release listings return at most the given number of releases per page, regardless
+	 * of the requested limit
+	 */
+	public void setListingLimit(int maxLimit) {
+		this.maxListingLimit = maxLimit;
+	}
+
+	/**
+	 * Makes owner release listings plain arrays without pagination metadata when <code>false</code>
+	 */
+	public void setPaginatedListing(boolean paginatedListing) {
+		this.paginatedListing = paginatedListing;
+	}
+
+	/**
+	 * Delays every request with a random number of milliseconds between the given bounds
+	 */
+	public void setLatency(long minMillis, long maxMillis) {
+		this.minLatencyMillis = minMillis;
+		this.maxLatencyMillis = maxMillis;
+	}
+
+	public void start() {
+		server.start();
+	}
+
+	public void stop() {
+		server.stop(0);
+		executor.shutdownNow();
+		try {
+			executor.awaitTermination(5, TimeUnit.SECONDS);
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
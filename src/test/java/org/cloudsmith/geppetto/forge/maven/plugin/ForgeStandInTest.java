@@ -0,0 +1,186 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+public class ForgeStandInTest {
+	private static byte[] createArchive(String dirName, String metadata) throws IOException {
+		byte[] content = metadata.getBytes(AbstractForgeMojo.UTF_8);
+		byte[] header = new byte[512];
+		byte[] name = (dirName + "/metadata.json").getBytes(AbstractForgeMojo.UTF_8);
+		System.arraycopy(name, 0, header, 0, name.length);
+		putOctal(header, 100, 8, 0644);
+		putOctal(header, 124, 12, content.length);
+		putOctal(header, 136, 12, 0);
+		header[156] = '0';
+		System.arraycopy("ustar\00000".getBytes(AbstractForgeMojo.UTF_8), 0, header, 257, 8);
+		for(int idx = 148; idx < 156; ++idx)
+			header[idx] = ' ';
+		int checksum = 0;
+		for(byte b : header)
+			checksum += b & 0xff;
+		putOctal(header, 148, 7, checksum);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		GZIPOutputStream out = new GZIPOutputStream(bytes);
+		out.write(header);
+		out.write(content);
+		out.write(new byte[(512 - content.length % 512) % 512 + 1024]);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private static void putOctal(byte[] header, int offset, int length, int value) {
+		String octal = Integer.toOctalString(value);
+		int pad = length - 1 - octal.length();
+		for(int idx = 0; idx < pad; ++idx)
+			header[offset + idx] = '0';
+		System.arraycopy(octal.getBytes(AbstractForgeMojo.UTF_8), 0, header, offset + pad, octal.length());
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buf = new byte[4096];
+			int cnt;
+			while((cnt = in.read(buf)) > 0)
+				out.write(buf, 0, cnt);
+			return out.toByteArray();
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private ForgeStandIn forge;
+
+	private HttpURLConnection open(String method, String path, String token) throws IOException {
+		HttpURLConnection conn = (HttpURLConnection) new URL(forge.getServiceURL() + path).openConnection();
+		conn.setRequestMethod(method);
+		if(token != null)
+			conn.setRequestProperty("Authorization", "Bearer " + token);
+		return conn;
+	}
+
+	private String post(String path, String token, String contentType, byte[] body, int expectedStatus)
+			throws IOException {
+		HttpURLConnection conn = open("POST", path, token);
+		conn.setDoOutput(true);
+		conn.setRequestProperty("Content-Type", contentType);
+		OutputStream out = conn.getOutputStream();
+		out.write(body);
+		out.close();
+		assertEquals(expectedStatus, conn.getResponseCode());
+		return new String(readAll(expectedStatus < 400
+				? conn.getInputStream()
+				: conn.getErrorStream()), AbstractForgeMojo.UTF_8);
+	}
+
+	private String login(String user, String password) throws IOException {
+		String body = post(
+			"oauth/token", null, "application/x-www-form-urlencoded",
+			("grant_type=password&username=" + user + "&password=" + password).getBytes(AbstractForgeMojo.UTF_8),
+			200);
+		return new JsonParser().parse(body).getAsJsonObject().get("access_token").getAsString();
+	}
+
+	@Test
+	public void failureInjection() throws Exception {
+		forge.addModule("bob", "test_module_a");
+		forge.failNext(2, 503);
+		assertEquals(503, open("GET", "v2/users/bob/modules/test_module_a", null).getResponseCode());
+		assertEquals(503, open("GET", "v2/users/bob/modules/test_module_a", null).getResponseCode());
+		assertEquals(200, open("GET", "v2/users/bob/modules/test_module_a", null).getResponseCode());
+		assertEquals(3, forge.getRequestCount(ForgeStandIn.MODULE));
+
+		forge.setFailureRate(1.0, 500);
+		assertEquals(500, open("GET", "v2/users/bob/modules/test_module_a", null).getResponseCode());
+	}
+
+	@Test
+	public void publishAndDownload() throws Exception {
+		String token = login("bob", "bobbobbob");
+		post("v2/modules", token, "application/json", "{\"name\":\"test_module_a\"}".getBytes(AbstractForgeMojo.UTF_8), 200);
+
+		byte[] archive = createArchive(
+			"bob-test_module_a-1.0.0", "{\"name\":\"bob-test_module_a\",\"version\":\"1.0.0\",\"dependencies\":[]}");
+		String boundary = "xyzzy";
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		body.write(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"notes\"\r\n\r\nTesting\r\n--" +
+				boundary + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"a.tar.gz\"\r\n" +
+				"Content-Type: application/octet-stream\r\n\r\n").getBytes(AbstractForgeMojo.UTF_8));
+		body.write(archive);
+		body.write(("\r\n--" + boundary + "--\r\n").getBytes(AbstractForgeMojo.UTF_8));
+		String contentType = "multipart/form-data; boundary=" + boundary;
+
+		// Only the owner may publish
+		post("v2/users/bob/modules/test_module_a/releases", login("ben", "benbenben"), contentType, body.toByteArray(), 403);
+		post("v2/users/bob/modules/test_module_a/releases", token, contentType, body.toByteArray(), 200);
+
+		HttpURLConnection conn = open("GET", "v2/users/bob/modules/test_module_a/releases", null);
+		JsonArray releases = new JsonParser().parse(
+			new String(readAll(conn.getInputStream()), AbstractForgeMojo.UTF_8)).getAsJsonArray();
+		assertEquals(1, releases.size());
+		JsonObject release = releases.get(0).getAsJsonObject();
+		assertEquals("1.0.0", release.get("version").getAsString());
+		assertEquals("Testing", release.get("notes").getAsString());
+		assertEquals("bob", release.getAsJsonObject("module").getAsJsonObject("owner").get("username").getAsString());
+
+		conn = open("GET", "v2/users/bob/modules/test_module_a/releases/1.0.0/download", null);
+		assertArrayEquals(archive, readAll(conn.getInputStream()));
+
+		assertEquals(404, open("GET", "v2/users/bob/modules/test_module_d", null).getResponseCode());
+	}
+
+	@Test
+	public void latencyIsApplied() throws Exception {
+		forge.addModule("bob", "test_module_a");
+		forge.setLatency(50, 50);
+		long start = System.nanoTime();
+		assertEquals(200, open("GET", "v2/users/bob/modules/test_module_a", null).getResponseCode());
+		assertTrue(System.nanoTime() - start >= 50000000L);
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		forge = new ForgeStandIn();
+		forge.addUser("bob", "bobbobbob");
+		forge.addUser("ben", "benbenben");
+		forge.start();
+	}
+
+	@After
+	public void tearDown() {
+		forge.stop();
+	}
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ForgeTaskScopeTest {
+	@Test
+	public void failureCancelsRemainingTasks() throws Exception {
+		final IOException failure = new IOException("Forge is down");
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final AtomicInteger terminated = new AtomicInteger();
+		ForgeTaskScope scope = new ForgeTaskScope("test", 2, true);
+		try {
+			scope.fork(new Callable<Void>() {
+				@Override
+				public Void call() {
+					blocked.countDown();
+					try {
+						Thread.sleep(60000);
+					}
+					catch(InterruptedException e) {
+						// Cancelled. Takes a while to wind down
+						try {
+							Thread.sleep(200);
+						}
+						catch(InterruptedException e2) {
+						}
+						terminated.incrementAndGet();
+					}
+					return null;
+				}
+			});
+			assertTrue(blocked.await(5, TimeUnit.SECONDS));
+			scope.fork(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					throw failure;
+				}
+			});
+			try {
+				scope.join();
+				fail("The failure was not propagated");
+			}
+			catch(IOException e) {
+				assertSame(failure, e);
+			}
+			// The cancelled task has terminated before the failure was thrown
+			assertEquals(1, terminated.get());
+		}
+		finally {
+			scope.close();
+		}
+	}
+
+	@Test
+	public void parallelismIsBounded() throws Exception {
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		List<ForgeTaskScope.Subtask<Integer>> results = new ArrayList<ForgeTaskScope.Subtask<Integer>>();
+		ForgeTaskScope scope = new ForgeTaskScope("test", 3, true);
+		try {
+			for(int idx = 0; idx < 20; ++idx) {
+				final int value = idx;
+				results.add(scope.fork(new Callable<Integer>() {
+					@Override
+					public Integer call() throws Exception {
+						int current = running.incrementAndGet();
+						synchronized(maxRunning) {
+							maxRunning.set(Math.max(maxRunning.get(), current));
+						}
+						Thread.sleep(5);
+						running.decrementAndGet();
+						return Integer.valueOf(value * value);
+					}
+				}));
+			}
+			scope.join();
+		}
+		finally {
+			scope.close();
+		}
+		assertTrue(maxRunning.get() <= 3);
+		for(int idx = 0; idx < 20; ++idx)
+			assertEquals(idx * idx, results.get(idx).get().intValue());
+	}
+
+	@Test
+	public void platformThreadsOnRequest() throws Exception {
+		ForgeTaskScope scope = new ForgeTaskScope("probe", 2, false);
+		ForgeTaskScope.Subtask<String> name;
+		try {
+			assertFalse(scope.isVirtual());
+			name = scope.fork(new Callable<String>() {
+				@Override
+				public String call() {
+					return Thread.currentThread().getName();
+				}
+			});
+			scope.join();
+		}
+		finally {
+			scope.close();
+		}
+		assertTrue(name.get().startsWith("forge-probe-"));
+	}
+
+	@Test
+	public void resultRequiresJoin() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		ForgeTaskScope scope = new ForgeTaskScope("test", 1, true);
+		try {
+			ForgeTaskScope.Subtask<Void> task = scope.fork(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					release.await();
+					return null;
+				}
+			});
+			try {
+				task.get();
+				fail("The result was available before the scope was joined");
+			}
+			catch(IllegalStateException e) {
+			}
+		}
+		finally {
+			release.countDown();
+			scope.close();
+		}
+	}
+
+	@Test
+	public void virtualThreadsWhenAvailable() throws Exception {
+		ForgeTaskScope scope = new ForgeTaskScope("resolve", 1, true);
+		try {
+			assertEquals(ForgeTaskScope.isVirtualThreadsAvailable(), scope.isVirtual());
+		}
+		finally {
+			scope.close();
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+public class GitChangeSetTest {
+	private static void git(File dir, String... args) throws Exception {
+		String[] command = new String[args.length + 5];
+		command[0] = "git";
+		command[1] = "-c";
+		command[2] = "user.name=test";
+		command[3] = "-c";
+		command[4] = "user.email=test@example.com";
+		System.arraycopy(args, 0, command, 5, args.length);
+		Process process = new ProcessBuilder(command).directory(dir).redirectErrorStream(true).start();
+		process.getInputStream().close();
+		assertEquals(0, process.waitFor());
+	}
+
+	private static void write(File file, String content) throws IOException {
+		file.getParentFile().mkdirs();
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes(AbstractForgeMojo.UTF_8));
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	@Test
+	public void changesAreMappedToModules() {
+		GitChangeSet changes = new GitChangeSet(asList(
+			"modules/apache/manifests/init.pp", "modules/apache/metadata.json", "modules/mysql/Modulefile",
+			"modules/mysql_common/manifests/init.pp", "README.md", "lib/facter/custom.rb"));
+		assertEquals(
+			new HashSet<String>(asList("modules/apache", "modules/mysql", "modules/mysql_common")),
+			changes.getChangedModules(asList("modules/apache", "modules/mysql", "modules/mysql_common", "modules/ntp")));
+	}
+
+	@Test
+	public void pathsWithSpecialCharactersAreNotQuoted() throws Exception {
+		File dir = File.createTempFile("changes", "");
+		dir.delete();
+		dir.mkdirs();
+		try {
+			git(dir, "init", "-q");
+			write(new File(dir, "modules/say \"hi\"/manifests/init.pp"), "class hi {}\n");
+			write(new File(dir, "modules/ntp/manifests/init.pp"), "class ntp {}\n");
+			git(dir, "add", ".");
+			git(dir, "commit", "-q", "-m", "initial");
+
+			write(new File(dir, "modules/say \"hi\"/manifests/init.pp"), "class hi { }\n");
+			write(new File(dir, "modules/ntp/files/tab\there.conf"), "\n");
+			GitChangeSet changes = GitChangeSet.read(dir, "HEAD");
+			assertEquals(
+				new HashSet<String>(asList("modules/say \"hi\"/manifests/init.pp", "modules/ntp/files/tab\there.conf")),
+				changes.getPaths());
+			assertEquals(
+				new HashSet<String>(asList("modules/say \"hi\"", "modules/ntp")),
+				changes.getChangedModules(asList("modules/say \"hi\"", "modules/ntp")));
+		}
+		finally {
+			WorkspaceGenerator.delete(dir);
+		}
+	}
+
+	@Test
+	public void moduleAtTopContainsAllChanges() {
+		GitChangeSet changes = new GitChangeSet(asList("manifests/init.pp"));
+		assertEquals(Collections.singleton(""), changes.getChangedModules(asList("")));
+		assertTrue(new GitChangeSet(Collections.<String> emptyList()).getChangedModules(asList("")).isEmpty());
+	}
+}
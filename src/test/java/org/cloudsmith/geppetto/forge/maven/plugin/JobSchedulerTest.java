@@ -0,0 +1,139 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JobSchedulerTest {
+	private static class RecordingJob extends JobScheduler.Job<String> {
+		private final String name;
+
+		private final List<String> log;
+
+		private final CountDownLatch release;
+
+		private final CountDownLatch started = new CountDownLatch(1);
+
+		private volatile boolean cancelled;
+
+		RecordingJob(String repository, String branch, String name, List<String> log, CountDownLatch release) {
+			super(repository, repository + ':' + branch);
+			this.name = name;
+			this.log = log;
+			this.release = release;
+		}
+
+		@Override
+		public String call() throws Exception {
+			started.countDown();
+			if(release != null)
+				while(!cancelled && !release.await(10, TimeUnit.MILLISECONDS))
+					;
+			log.add(name);
+			return name;
+		}
+
+		@Override
+		protected void cancel() {
+			cancelled = true;
+		}
+	}
+
+	private JobScheduler scheduler;
+
+	private final List<String> log = new CopyOnWriteArrayList<String>();
+
+	@Test
+	public void queuedJobsAreCoalesced() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		RecordingJob blocker = new RecordingJob("other", "master", "blocker", log, release);
+		scheduler.submit(blocker);
+		assertTrue(blocker.started.await(5, TimeUnit.SECONDS));
+
+		Future<String> first = scheduler.submit(new RecordingJob("repo", "master", "first", log, null));
+		Future<String> second = scheduler.submit(new RecordingJob("repo", "master", "second", log, null));
+		Future<String> feature = scheduler.submit(new RecordingJob("repo", "feature", "feature", log, null));
+		release.countDown();
+
+		assertEquals("second", second.get(5, TimeUnit.SECONDS));
+		assertEquals("feature", feature.get(5, TimeUnit.SECONDS));
+		try {
+			first.get();
+			fail("Superseded job was run");
+		}
+		catch(CancellationException e) {
+			// Expected
+		}
+		assertEquals(asList("blocker", "second", "feature"), log);
+		assertEquals(1, scheduler.getCoalescedCount());
+	}
+
+	@Test
+	public void repositoriesTakeTurns() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		RecordingJob blocker = new RecordingJob("other", "master", "blocker", log, release);
+		scheduler.submit(blocker);
+		assertTrue(blocker.started.await(5, TimeUnit.SECONDS));
+
+		scheduler.submit(new RecordingJob("busy", "a", "busy-a", log, null));
+		scheduler.submit(new RecordingJob("busy", "b", "busy-b", log, null));
+		scheduler.submit(new RecordingJob("busy", "c", "busy-c", log, null));
+		Future<String> quiet = scheduler.submit(new RecordingJob("quiet", "a", "quiet-a", log, null));
+		Future<String> last = scheduler.submit(new RecordingJob("busy", "d", "busy-d", log, null));
+		release.countDown();
+
+		quiet.get(5, TimeUnit.SECONDS);
+		last.get(5, TimeUnit.SECONDS);
+		assertEquals(asList("blocker", "busy-a", "quiet-a", "busy-b", "busy-c", "busy-d"), log);
+	}
+
+	@Test
+	public void runningJobIsCancelled() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		RecordingJob running = new RecordingJob("repo", "master", "running", log, release);
+		Future<String> runningResult = scheduler.submit(running);
+		assertTrue(running.started.await(5, TimeUnit.SECONDS));
+
+		Future<String> newer = scheduler.submit(new RecordingJob("repo", "master", "newer", log, null));
+		assertEquals("running", runningResult.get(5, TimeUnit.SECONDS));
+		assertTrue(running.cancelled);
+		assertTrue(running.isSuperseded());
+		assertEquals("newer", newer.get(5, TimeUnit.SECONDS));
+		assertEquals(1, scheduler.getCancelledCount());
+	}
+
+	@Before
+	public void setUp() {
+		scheduler = new JobScheduler(1);
+	}
+
+	@After
+	public void tearDown() {
+		scheduler.shutdown();
+	}
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.apache.http.client.HttpResponseException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OAuthTokenCacheTest {
+	private static final HttpTransport TRANSPORT = new HttpTransport(5000, 5000);
+
+	private ForgeStandIn forge;
+
+	private File cacheDir;
+
+	private OAuthTokenCache.Credentials credentials(String password) {
+		return new OAuthTokenCache.Credentials(forge.getServiceURL() + "oauth/token", "id", "secret", "bob", password);
+	}
+
+	@Test
+	public void tokenIsCachedInMemory() throws Exception {
+		OAuthTokenCache cache = new OAuthTokenCache();
+		String token = cache.getAccessToken(credentials("bobbobbob"), TRANSPORT, null);
+		assertEquals(token, cache.getAccessToken(credentials("bobbobbob"), TRANSPORT, null));
+		assertEquals(1, forge.getRequestCount(ForgeStandIn.TOKEN));
+	}
+
+	@Test
+	public void tokenIsCachedOnDisk() throws Exception {
+		String token = new OAuthTokenCache().getAccessToken(credentials("bobbobbob"), TRANSPORT, cacheDir);
+		File[] files = cacheDir.listFiles();
+		assertEquals(1, files.length);
+		assertFalse(new String(Files.readAllBytes(files[0].toPath()), "ISO-8859-1").contains(token));
+
+		// A new JVM wide cache finds the token on disk
+		assertEquals(token, new OAuthTokenCache().getAccessToken(credentials("bobbobbob"), TRANSPORT, cacheDir));
+		assertEquals(1, forge.getRequestCount(ForgeStandIn.TOKEN));
+	}
+
+	@Test
+	public void wrongCredentialsFail() throws Exception {
+		new OAuthTokenCache().getAccessToken(credentials("bobbobbob"), TRANSPORT, cacheDir);
+		try {
+			new OAuthTokenCache().getAccessToken(credentials("wrong"), TRANSPORT, cacheDir);
+			fail("Token obtained with wrong password");
+		}
+		catch(HttpResponseException e) {
+			assertEquals(401, e.getStatusCode());
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		forge = new ForgeStandIn();
+		forge.addUser("bob", "bobbobbob");
+		forge.start();
+		cacheDir = File.createTempFile("tokens", "");
+		cacheDir.delete();
+	}
+
+	@After
+	public void tearDown() {
+		forge.stop();
+		WorkspaceGenerator.delete(cacheDir);
+	}
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.LineNumberReader;
+
+import org.junit.Test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+public class PerformanceReportTest {
+	private static int countLines(File file) throws Exception {
+		LineNumberReader reader = new LineNumberReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			while(reader.readLine() != null)
+				;
+			return reader.getLineNumber();
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void historyIsBounded() throws Exception {
+		File dir = File.createTempFile("perf", "");
+		dir.delete();
+		MetricsRegistry metrics = new MetricsRegistry();
+		metrics.start(MetricsRegistry.DISCOVERY).stop().addCount(3);
+		metrics.getPhase(MetricsRegistry.PROBE).addRemoteCalls(1);
+		metrics.getRemoteLatencies().record(2000000);
+		metrics.addModuleTime("module_a", 1000000);
+		for(int idx = 0; idx < 5; ++idx)
+			new PerformanceReport().write(dir, "Validation", "abc123", metrics, 3);
+
+		assertEquals(3, countLines(new File(dir, "validation-history.jsonl")));
+
+		InputStreamReader reader = new InputStreamReader(new FileInputStream(new File(dir, "validation.json")), "UTF-8");
+		try {
+			JsonObject report = new JsonParser().parse(reader).getAsJsonObject();
+			assertEquals("abc123", report.get("revision").getAsString());
+			assertEquals(1, report.getAsJsonObject("forgeLatency").get("attempts").getAsInt());
+			assertEquals(2.0, report.getAsJsonObject("forgeLatency").get("p50Millis").getAsDouble(), 0.0001);
+			assertTrue(report.getAsJsonObject("modules").has("module_a"));
+			assertTrue(report.getAsJsonObject("jvm").get("heapAtStartBytes").getAsLong() > 0);
+			assertTrue(report.getAsJsonObject("jvm").get("peakHeapIncreaseBytes").getAsLong() >= 0);
+			JsonArray excluded = report.getAsJsonArray("moduleTimesExclude");
+			assertEquals(2, excluded.size());
+			assertEquals(MetricsRegistry.DISCOVERY, excluded.get(0).getAsString());
+		}
+		finally {
+			reader.close();
+		}
+	}
+}
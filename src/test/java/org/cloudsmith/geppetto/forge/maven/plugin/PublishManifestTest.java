@@ -0,0 +1,106 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PublishManifestTest {
+	private File dir;
+
+	@Test
+	public void entriesAreReadBack() throws Exception {
+		File file = new File(dir, PublishManifest.MANIFEST_FILE);
+		PublishManifest manifest = new PublishManifest(file);
+		manifest.put(new PublishManifest.Entry(
+			"modules/a", "bob-a", "1.0.0", PublishManifest.State.PUBLISHED, "bob-a-1.0.0.tar.gz", 1234, null));
+		manifest.put(new PublishManifest.Entry(
+			"modules/b", "bob-b", "2.0.0", PublishManifest.State.FAILED, "bob-b-2.0.0.tar.gz", 4321,
+			"Service Unavailable"));
+
+		PublishManifest read = PublishManifest.read(file);
+		assertEquals(2, read.getEntries().size());
+		PublishManifest.Entry a = read.getEntry("modules/a");
+		assertEquals("bob-a", a.getName());
+		assertEquals(PublishManifest.State.PUBLISHED, a.getState());
+		assertEquals(1234, a.getSize());
+		assertNull(a.getMessage());
+		assertTrue(a.isDone("1.0.0"));
+		assertFalse("A new version must be published again", a.isDone("1.0.1"));
+
+		PublishManifest.Entry b = read.getEntry("modules/b");
+		assertEquals("Service Unavailable", b.getMessage());
+		assertFalse(b.isDone("2.0.0"));
+	}
+
+	@Test
+	public void journalIsReplayedUntilWritten() throws Exception {
+		File file = new File(dir, PublishManifest.MANIFEST_FILE);
+		PublishManifest manifest = new PublishManifest(file);
+		manifest.put(new PublishManifest.Entry(
+			"modules/a", "bob-a", "1.0.0", PublishManifest.State.BUILT, "bob-a-1.0.0.tar.gz", 1234, null));
+		manifest.put(new PublishManifest.Entry(
+			"modules/a", "bob-a", "1.0.0", PublishManifest.State.PUBLISHED, "bob-a-1.0.0.tar.gz", 1234, null));
+		manifest.put(new PublishManifest.Entry(
+			"modules/b", "bob-b", "2.0.0", PublishManifest.State.BUILT, "bob-b-2.0.0.tar.gz", 4321, null));
+		assertTrue(manifest.getJournalFile().isFile());
+
+		// An interrupted batch may leave a partial line behind
+		Writer out = new OutputStreamWriter(new FileOutputStream(manifest.getJournalFile(), true), "UTF-8");
+		try {
+			out.write("{\"module\":\"modules/b\",\"sta");
+		}
+		finally {
+			out.close();
+		}
+
+		PublishManifest read = PublishManifest.read(file);
+		assertEquals(PublishManifest.State.PUBLISHED, read.getEntry("modules/a").getState());
+		assertEquals(PublishManifest.State.BUILT, read.getEntry("modules/b").getState());
+
+		assertFalse(read.getJournalFile().exists());
+
+		read.put(new PublishManifest.Entry(
+			"modules/b", "bob-b", "2.0.0", PublishManifest.State.PUBLISHED, "bob-b-2.0.0.tar.gz", 4321, null));
+		assertTrue(PublishManifest.read(file).getEntry("modules/b").isDone("2.0.0"));
+	}
+
+	@Test
+	public void missingManifestIsEmpty() throws Exception {
+		assertTrue(PublishManifest.read(new File(dir, PublishManifest.MANIFEST_FILE)).getEntries().isEmpty());
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		dir = File.createTempFile("manifest", "");
+		dir.delete();
+		dir.mkdirs();
+	}
+
+	@After
+	public void tearDown() {
+		WorkspaceGenerator.delete(dir);
+	}
+}
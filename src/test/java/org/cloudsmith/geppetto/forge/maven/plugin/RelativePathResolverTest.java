@@ -0,0 +1,61 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class RelativePathResolverTest {
+	private File root;
+
+	private RelativePathResolver resolver;
+
+	@Test
+	public void pathsAreInterned() {
+		String first = resolver.getRelativePath(new File(root, "test_module_a/manifests/init.pp"));
+		String second = resolver.getRelativePath(new File(new File(root, "test_module_a"), "manifests/init.pp"));
+		assertEquals("test_module_a/manifests/init.pp", first);
+		assertSame(first, second);
+	}
+
+	@Test
+	public void pathsAreNormalized() {
+		assertEquals("test_module_b", resolver.getRelativePath(new File(root, "test_module_a/../test_module_b")));
+		assertEquals("test_module_a/init.pp", resolver.getRelativePath(new File(root, "./test_module_a/./init.pp")));
+		assertEquals("", resolver.getRelativePath(new File(root, "test_module_a/..")));
+	}
+
+	@Test
+	public void pathsOutsideOfRoot() {
+		assertEquals("../other/init.pp", resolver.getRelativePath(new File(root.getParentFile(), "other/init.pp")));
+		assertEquals("../modules-old", resolver.getRelativePath(new File(root.getParentFile(), "modules-old")));
+	}
+
+	@Test
+	public void rootIsEmpty() {
+		assertEquals("", resolver.getRelativePath(root));
+		assertEquals("", resolver.getRelativePath(root.getAbsoluteFile()));
+	}
+
+	@Before
+	public void setUp() {
+		root = new File("target/workspace/modules");
+		resolver = new RelativePathResolver(new File("target/workspace/../workspace/modules"), new StringPool());
+	}
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReleaseIndexTest {
+	private static final int[] STATUS_CODES = { 500, 502, 503, 504 };
+
+	private ForgeStandIn forge;
+
+	private ReleaseIndex index;
+
+	private void addReleases(String owner, int count) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		GZIPOutputStream out = new GZIPOutputStream(bytes);
+		out.write(new byte[1024]);
+		out.close();
+		for(int idx = 0; idx < count; ++idx) {
+			String name = String.format("module_%02d", idx);
+			forge.addModule(owner, name);
+			forge.addRelease(owner, name, "1.0.0", bytes.toByteArray());
+		}
+	}
+
+	@Test
+	public void cappedPagesAreFollowed() throws Exception {
+		addReleases("bob", 25);
+		forge.setListingLimit(4);
+		assertTrue(index.load("bob"));
+		assertEquals(7, index.getPageCount());
+		assertEquals(Boolean.TRUE, index.isPublished("bob", "module_24", "1.0.0"));
+	}
+
+	@Test
+	public void cappedPlainListingIsReadUntilEmptyPage() throws Exception {
+		addReleases("bob", 25);
+		forge.setListingLimit(4);
+		forge.setPaginatedListing(false);
+		assertTrue(index.load("bob"));
+		assertEquals(8, index.getPageCount());
+		assertEquals(Boolean.TRUE, index.isPublished("bob", "module_24", "1.0.0"));
+	}
+
+	@Test
+	public void listingThatIgnoresOffsetEnds() throws Exception {
+		addReleases("bob", 25);
+		forge.setListingLimit(4);
+		forge.setPaginatedListing(false);
+		forge.setIgnoreListingOffset(true);
+		assertTrue(index.load("bob"));
+		assertEquals(2, index.getPageCount());
+		assertEquals(Boolean.TRUE, index.isPublished("bob", "module_03", "1.0.0"));
+	}
+
+	@Test
+	public void namesAreMatchedWithoutRegardToCase() throws Exception {
+		addReleases("bob", 1);
+		assertTrue(index.load("bob"));
+		assertTrue(index.load("BOB"));
+		assertEquals(1, index.getPageCount());
+		assertEquals(Boolean.TRUE, index.isPublished("BOB", "Module_00", "1.0.0"));
+	}
+
+	@Test
+	public void ownerIsListedPageByPage() throws Exception {
+		addReleases("bob", 25);
+
+		assertTrue(index.load("bob"));
+		assertEquals(3, forge.getRequestCount(ForgeStandIn.OWNER_RELEASES));
+		assertEquals(3, index.getPageCount());
+		assertEquals(Boolean.TRUE, index.isPublished("bob", "module_24", "1.0.0"));
+		assertEquals(Boolean.FALSE, index.isPublished("bob", "module_24", "1.0.1"));
+		assertEquals(Boolean.FALSE, index.isPublished("bob", "module_25", "1.0.0"));
+
+		// Loaded owners are not fetched again
+		assertTrue(index.load("bob"));
+		assertEquals(3, forge.getRequestCount(ForgeStandIn.OWNER_RELEASES));
+	}
+
+	@Test
+	public void unknownOwnerIsNotIndexed() throws Exception {
+		assertTrue(index.load("ben"));
+		assertEquals(Boolean.FALSE, index.isPublished("ben", "module_00", "1.0.0"));
+
+		assertFalse(index.load("nobody"));
+		assertNull(index.isPublished("nobody", "module_00", "1.0.0"));
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		forge = new ForgeStandIn();
+		forge.addUser("bob", "bobbobbob");
+		forge.addUser("ben", "benbenben");
+		forge.start();
+		index = new ReleaseIndex(
+			forge.getServiceURL() + "v2/", new HttpTransport(5000, 5000), new ForgeCallExecutor(
+				new RetryPolicy(0, 0, 0, 0, STATUS_CODES), new CircuitBreaker(0, 0)), 10);
+	}
+
+	@After
+	public void tearDown() {
+		forge.stop();
+	}
+}
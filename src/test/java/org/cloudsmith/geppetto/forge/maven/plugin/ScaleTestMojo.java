@@ -0,0 +1,125 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.Mojo;
+import org.apache.maven.plugin.MojoFailureException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Runs the goals against a generated workspace. Each goal is first run against a small baseline workspace in the
+ * same JVM. The limits for the large workspace are that baseline scaled to the module count plus a margin, so the
+ * test follows the machine it runs on and fails when the time or the heap grows faster than the workspace. The
+ * size, the baseline, and the margin are controlled by the system properties <tt>forge.scale.modules</tt>,
+ * <tt>forge.scale.baselineModules</tt>, and <tt>forge.scale.marginPercent</tt>. The properties
+ * <tt>forge.scale.maxSeconds</tt> and <tt>forge.scale.maxHeapMB</tt> replace the derived limits with fixed ones.
+ */
+@RunWith(JUnit4.class)
+public class ScaleTestMojo extends AbstractForgeTestMojo {
+	private static class Usage {
+		long nanos;
+
+		long heapAtStart;
+
+		long heapIncrease;
+	}
+
+	private static final int MODULE_COUNT = Integer.getInteger("forge.scale.modules", 1000).intValue();
+
+	private static final int BASELINE_MODULE_COUNT = Integer.getInteger("forge.scale.baselineModules", 100).intValue();
+
+	private static final int MARGIN_PERCENT = Integer.getInteger("forge.scale.marginPercent", 50).intValue();
+
+	private static final int MAX_SECONDS = Integer.getInteger("forge.scale.maxSeconds", 0).intValue();
+
+	private static final int MAX_HEAP_MB = Integer.getInteger("forge.scale.maxHeapMB", 0).intValue();
+
+	private static long scale(long baseline) {
+		return baseline * MODULE_COUNT / BASELINE_MODULE_COUNT * (100 + MARGIN_PERCENT) / 100;
+	}
+
+	private void execute(String goal, String what) throws Exception {
+		Usage baseline = run(goal, what, BASELINE_MODULE_COUNT);
+		Usage usage = run(goal, what, MODULE_COUNT);
+		String prefix = what + " of " + MODULE_COUNT + " modules ";
+		String suffix = ", " + BASELINE_MODULE_COUNT + " modules took " +
+				TimeUnit.NANOSECONDS.toMillis(baseline.nanos) + " ms and " + (baseline.heapIncrease >> 20) +
+				" MB of heap";
+
+		long maxNanos = MAX_SECONDS > 0
+				? TimeUnit.SECONDS.toNanos(MAX_SECONDS)
+				: scale(baseline.nanos);
+		assertTrue(
+			prefix + "took " + TimeUnit.NANOSECONDS.toMillis(usage.nanos) + " ms" + suffix, usage.nanos <= maxNanos);
+
+		long maxHeap = MAX_HEAP_MB > 0
+				? (long) MAX_HEAP_MB << 20
+				: usage.heapAtStart + scale(baseline.heapIncrease);
+		long peakHeap = usage.heapAtStart + usage.heapIncrease;
+		assertTrue(prefix + "used " + (usage.heapIncrease >> 20) + " MB of heap" + suffix, peakHeap <= maxHeap);
+	}
+
+	private Usage run(String goal, String what, int moduleCount) throws Exception {
+		File root = new File(getBasedir(), "target/scale/" + goal + '_' + moduleCount);
+		WorkspaceGenerator generator = new WorkspaceGenerator();
+		generator.setModuleCount(moduleCount);
+		generator.generate(root);
+		setTestForgeModulesRoot(root);
+		Mojo mojo = lookupConfiguredMojo(createMavenSession(), newMojoExecution(goal));
+		assertNotNull(mojo);
+
+		// The plug-in leaves the peak counters alone, so the test resets them itself
+		System.gc();
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if(pool.getType() == MemoryType.HEAP && pool.isValid())
+				pool.resetPeakUsage();
+		Usage usage = new Usage();
+		usage.heapAtStart = PerformanceReport.getUsedHeap();
+		long start = System.nanoTime();
+		try {
+			mojo.execute();
+		}
+		catch(MojoFailureException e) {
+			fail(what + " of " + moduleCount + " generated modules failed: " + e.getMessage());
+		}
+		usage.nanos = System.nanoTime() - start;
+		usage.heapIncrease = Math.max(0, PerformanceReport.getPeakHeap() - usage.heapAtStart);
+		return usage;
+	}
+
+	@Override
+	protected String getTestPomPath() {
+		return "src/test/resources/unit/scale/pom.xml";
+	}
+
+	@Test
+	public void publishDryRunLargeWorkspace() throws Exception {
+		execute("publish", "Dry run publishing");
+		assertEquals(MODULE_COUNT, new File(getBasedir(), "target/scale/publish_" + MODULE_COUNT + '/' +
+				AbstractForgeMojo.BUILD_DIR + "/builtModules").list().length);
+	}
+
+	@Test
+	public void validateLargeWorkspace() throws Exception {
+		execute("validate", "Validation");
+	}
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ServeTest {
+	private static String readAll(InputStream in) throws IOException {
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buf = new byte[4096];
+			int cnt;
+			while((cnt = in.read(buf)) > 0)
+				out.write(buf, 0, cnt);
+			return new String(out.toByteArray(), AbstractForgeMojo.UTF_8);
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private Serve serve;
+
+	private Thread serveThread;
+
+	private final Diagnostic result = new Diagnostic();
+
+	private static final String TOKEN = "secret";
+
+	private HttpURLConnection open(String method, String path) throws IOException {
+		HttpURLConnection conn = openWithoutToken(method, path);
+		conn.setRequestProperty(Serve.TOKEN_HEADER, TOKEN);
+		return conn;
+	}
+
+	private HttpURLConnection openWithoutToken(String method, String path) throws IOException {
+		InetSocketAddress address = serve.getServerAddress();
+		HttpURLConnection conn = (HttpURLConnection) new URL("http://127.0.0.1:" + address.getPort() + path).openConnection();
+		conn.setRequestMethod(method);
+		return conn;
+	}
+
+	@Test
+	public void requestsWithoutTokenOrWithOriginAreRejected() throws Exception {
+		assertEquals(403, openWithoutToken("POST", "/shutdown").getResponseCode());
+
+		HttpURLConnection conn = openWithoutToken("POST", "/shutdown");
+		conn.setRequestProperty(Serve.TOKEN_HEADER, "guess");
+		assertEquals(403, conn.getResponseCode());
+
+		// HttpURLConnection doesn't send Origin, so the request is written by hand
+		Socket socket = new Socket("127.0.0.1", serve.getServerAddress().getPort());
+		try {
+			OutputStream out = socket.getOutputStream();
+			out.write(("POST /shutdown HTTP/1.1\r\nHost: 127.0.0.1\r\n" + Serve.TOKEN_HEADER + ": " + TOKEN +
+					"\r\nOrigin: http://example.com\r\nContent-Length: 0\r\nConnection: close\r\n\r\n").getBytes(
+				AbstractForgeMojo.UTF_8));
+			out.flush();
+			String response = readAll(socket.getInputStream());
+			assertTrue(response, response.startsWith("HTTP/1.1 403"));
+		}
+		finally {
+			socket.close();
+		}
+
+		assertTrue(serveThread.isAlive());
+		assertEquals(0, result.getChildren().size());
+	}
+
+	@Test
+	public void invalidRequestsAreRejected() throws Exception {
+		HttpURLConnection conn = open("POST", "/validate");
+		assertEquals(400, conn.getResponseCode());
+		String body = readAll(conn.getErrorStream());
+		assertTrue(body, body.contains("\"severity\":\"ERROR\""));
+		assertTrue(body, body.contains("modulesRoot"));
+
+		assertEquals(405, open("GET", "/validate").getResponseCode());
+		assertEquals(404, open("POST", "/nothing").getResponseCode());
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		serve = new Serve();
+		serve.setPort(0);
+		serve.setToken(TOKEN);
+		serveThread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					serve.invoke(result);
+				}
+				catch(IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+		serveThread.start();
+		for(int idx = 0; idx < 100 && serve.getServerAddress() == null; ++idx)
+			Thread.sleep(50);
+		assertNotNull("Service did not start", serve.getServerAddress());
+	}
+
+	@Test
+	public void statusAndShutdown() throws Exception {
+		HttpURLConnection conn = open("GET", "/status");
+		assertEquals(200, conn.getResponseCode());
+		assertTrue(readAll(conn.getInputStream()).contains("\"jobs\":0"));
+
+		assertEquals(200, open("POST", "/shutdown").getResponseCode());
+		serveThread.join(5000);
+		assertEquals(1, result.getChildren().size());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if(serveThread.isAlive()) {
+			open("POST", "/shutdown").getResponseCode();
+			serveThread.join(5000);
+		}
+	}
+}
@@ -30,7 +30,7 @@ public class SetupTestMojo extends AbstractForgeTestMojo {
 		Properties props = AbstractForgeMojo.readForgeProperties();
 		forgePrefs.setOAuthClientId(props.getProperty("forge.oauth.clientID"));
 		forgePrefs.setOAuthClientSecret(props.getProperty("forge.oauth.clientSecret"));
-		String baseURL = System.getProperty("forge.base.url");
+		String baseURL = getForgeServiceURL();
 		forgePrefs.setBaseURL(baseURL + "v2/");
 		forgePrefs.setOAuthURL(baseURL + "oauth/token");
 		return forgePrefs;
@@ -40,8 +40,8 @@ public class SetupTestMojo extends AbstractForgeTestMojo {
 	public void createInitialModules() throws Exception {
 		// Login using the primary login (bob)
 		ForgePreferencesBean forgePrefs = createBasicForgePrefs();
-		forgePrefs.setLogin(System.getProperty("forge.login"));
-		forgePrefs.setPassword(System.getProperty("forge.password"));
+		forgePrefs.setLogin(getTestProperty("forge.login", "bob"));
+		forgePrefs.setPassword(getTestProperty("forge.password", "bobbobbob"));
 		Forge forge = new Forge(forgePrefs);
 
 		// Create the modules used in publishing tests
@@ -61,8 +61,8 @@ public class SetupTestMojo extends AbstractForgeTestMojo {
 
 		// Login using the second login (ben)
 		forgePrefs = createBasicForgePrefs();
-		forgePrefs.setLogin(System.getProperty("forge.login.second"));
-		forgePrefs.setPassword(System.getProperty("forge.password.second"));
+		forgePrefs.setLogin(getTestProperty("forge.login.second", "ben"));
+		forgePrefs.setPassword(getTestProperty("forge.password.second", "benbenben"));
 		forge = new Forge(forgePrefs);
 		Forge secondForge = new Forge(forgePrefs);
 		moduleService = secondForge.createModuleService();
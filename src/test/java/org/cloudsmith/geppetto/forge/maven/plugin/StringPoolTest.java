@@ -0,0 +1,31 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class StringPoolTest {
+	@Test
+	public void equalStringsShareOneInstance() {
+		StringPool pool = new StringPool();
+		String first = pool.intern(new String("modules/apache/manifests/init.pp"));
+		assertSame(first, pool.intern(new String("modules/apache/manifests/init.pp")));
+		assertNull(pool.intern(null));
+		assertEquals(1, pool.size());
+	}
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TarExtractorTest {
+	private static void putOctal(byte[] header, int offset, int length, long value) {
+		String octal = Long.toOctalString(value);
+		int pad = length - 1 - octal.length();
+		for(int idx = 0; idx < pad; ++idx)
+			header[offset + idx] = '0';
+		System.arraycopy(octal.getBytes(AbstractForgeMojo.UTF_8), 0, header, offset + pad, octal.length());
+	}
+
+	private static byte[] readAll(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buf = new byte[4096];
+			int cnt;
+			while((cnt = in.read(buf)) > 0)
+				out.write(buf, 0, cnt);
+			return out.toByteArray();
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private static void writeEntry(ByteArrayOutputStream out, String name, char type, int mode, byte[] content)
+			throws IOException {
+		byte[] header = new byte[512];
+		byte[] nameBytes = name.getBytes(AbstractForgeMojo.UTF_8);
+		System.arraycopy(nameBytes, 0, header, 0, Math.min(100, nameBytes.length));
+		putOctal(header, 100, 8, mode);
+		putOctal(header, 124, 12, content.length);
+		putOctal(header, 136, 12, 0);
+		header[156] = (byte) type;
+		System.arraycopy("ustar\00000".getBytes(AbstractForgeMojo.UTF_8), 0, header, 257, 8);
+		for(int idx = 148; idx < 156; ++idx)
+			header[idx] = ' ';
+		int checksum = 0;
+		for(byte b : header)
+			checksum += b & 0xff;
+		putOctal(header, 148, 7, checksum);
+		out.write(header);
+		out.write(content);
+		out.write(new byte[(512 - content.length % 512) % 512]);
+	}
+
+	private File destDir;
+
+	private InputStream gzip(ByteArrayOutputStream tar) throws IOException {
+		tar.write(new byte[1024]);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		GZIPOutputStream out = new GZIPOutputStream(bytes);
+		out.write(tar.toByteArray());
+		out.close();
+		return new ByteArrayInputStream(bytes.toByteArray());
+	}
+
+	@Test
+	public void extractsFilesAndDirectories() throws Exception {
+		byte[] manifest = "class test_module {}\n".getBytes(AbstractForgeMojo.UTF_8);
+		byte[] large = new byte[TarExtractor.BUFFER_SIZE * 2 + 17];
+		for(int idx = 0; idx < large.length; ++idx)
+			large[idx] = (byte) idx;
+		StringBuilder longName = new StringBuilder("bob-test_module-1.0.0/files");
+		while(longName.length() < 150)
+			longName.append("/deep");
+		longName.append("/data.bin");
+
+		ByteArrayOutputStream tar = new ByteArrayOutputStream();
+		writeEntry(tar, "bob-test_module-1.0.0/", '5', 0755, new byte[0]);
+		writeEntry(tar, "bob-test_module-1.0.0/manifests/init.pp", '0', 0644, manifest);
+		writeEntry(tar, "bob-test_module-1.0.0/bin/run.sh", '0', 0755, "#!/bin/sh\n".getBytes(AbstractForgeMojo.UTF_8));
+		byte[] longNameBytes = (longName + "\0").getBytes(AbstractForgeMojo.UTF_8);
+		writeEntry(tar, "././@LongLink", 'L', 0644, longNameBytes);
+		writeEntry(tar, longName.substring(0, 100), '0', 0644, large);
+		writeEntry(tar, "bob-test_module-1.0.0/link", '2', 0777, new byte[0]);
+
+		TarExtractor extractor = new TarExtractor();
+		extractor.extract(gzip(tar), destDir, true);
+
+		assertArrayEquals(manifest, readAll(new File(destDir, "manifests/init.pp")));
+		assertTrue(new File(destDir, "bin/run.sh").canExecute());
+		assertFalse(new File(destDir, "manifests/init.pp").canExecute());
+		assertArrayEquals(large, readAll(new File(destDir, longName.substring(longName.indexOf("/") + 1))));
+		assertFalse(new File(destDir, "link").exists());
+		assertEquals(3, extractor.getFileCount());
+	}
+
+	@Test
+	public void keepsTopFolderOnRequest() throws Exception {
+		ByteArrayOutputStream tar = new ByteArrayOutputStream();
+		writeEntry(tar, "bob-test_module-1.0.0/metadata.json", '0', 0644, "{}".getBytes(AbstractForgeMojo.UTF_8));
+		new TarExtractor().extract(gzip(tar), destDir, false);
+		assertTrue(new File(destDir, "bob-test_module-1.0.0/metadata.json").isFile());
+	}
+
+	@Test
+	public void rejectsEntriesOutsideOfDestination() throws Exception {
+		ByteArrayOutputStream tar = new ByteArrayOutputStream();
+		writeEntry(tar, "bob-test_module-1.0.0/../../escaped", '0', 0644, "x".getBytes(AbstractForgeMojo.UTF_8));
+		try {
+			new TarExtractor().extract(gzip(tar), destDir, false);
+			fail("An entry was extracted outside of the destination");
+		}
+		catch(IOException e) {
+			assertFalse(new File(destDir.getParentFile(), "escaped").exists());
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		destDir = File.createTempFile("extract", "");
+		destDir.delete();
+		destDir = new File(destDir, "module");
+	}
+
+	@After
+	public void tearDown() {
+		WorkspaceGenerator.delete(destDir.getParentFile());
+	}
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TarPackerTest {
+	private static byte[] readAll(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buf = new byte[4096];
+			int cnt;
+			while((cnt = in.read(buf)) > 0)
+				out.write(buf, 0, cnt);
+			return out.toByteArray();
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private static void write(File file, byte[] content) throws IOException {
+		file.getParentFile().mkdirs();
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	private File tmpDir;
+
+	@Test
+	public void packedContentIsExtracted() throws Exception {
+		File source = new File(tmpDir, "source");
+		byte[] manifest = "class test_module {}\n".getBytes(AbstractForgeMojo.UTF_8);
+		byte[] large = new byte[3 * 1024 + 7];
+		for(int idx = 0; idx < large.length; ++idx)
+			large[idx] = (byte) idx;
+		StringBuilder deep = new StringBuilder("files");
+		while(deep.length() < 120)
+			deep.append("/deep");
+		StringBuilder longName = new StringBuilder("templates/");
+		while(longName.length() < 130)
+			longName.append('x');
+
+		write(new File(source, "manifests/init.pp"), manifest);
+		write(new File(source, deep + "/data.bin"), large);
+		write(new File(source, longName.toString()), manifest);
+		write(new File(source, ".git/HEAD"), manifest);
+		write(new File(source, "bin/run.sh"), manifest);
+		new File(source, "bin/run.sh").setExecutable(true);
+
+		// A buffer smaller than the largest file so that the content is flushed in parts
+		TarPacker packer = new TarPacker(new ExcludeMatcher(Collections.singletonList(".git")), 1024);
+		File archive = new File(tmpDir, "bob-test_module-1.0.0.tar.gz");
+		packer.pack(source, "bob-test_module-1.0.0", archive);
+		assertEquals(4, packer.getFileCount());
+
+		File dest = new File(tmpDir, "dest");
+		InputStream in = new FileInputStream(archive);
+		try {
+			new TarExtractor().extract(in, dest, false);
+		}
+		finally {
+			in.close();
+		}
+		File module = new File(dest, "bob-test_module-1.0.0");
+		assertArrayEquals(manifest, readAll(new File(module, "manifests/init.pp")));
+		assertArrayEquals(large, readAll(new File(module, deep + "/data.bin")));
+		assertArrayEquals(manifest, readAll(new File(module, longName.toString())));
+		assertTrue(new File(module, "bin/run.sh").canExecute());
+		assertFalse(new File(module, ".git").exists());
+	}
+
+	@Test
+	public void packingIsRepeatable() throws Exception {
+		File source = new File(tmpDir, "source");
+		for(int idx = 0; idx < 20; ++idx)
+			write(new File(source, "manifests/class" + idx + ".pp"), ("class c" + idx + " {}\n").getBytes(
+				AbstractForgeMojo.UTF_8));
+
+		File first = new File(tmpDir, "first.tar.gz");
+		File second = new File(tmpDir, "second.tar.gz");
+		new TarPacker(null, TarPacker.DEFAULT_BUFFER_SIZE).pack(source, "bob-test_module-1.0.0", first);
+		new TarPacker(null, 512).pack(source, "bob-test_module-1.0.0", second);
+		assertArrayEquals(readAll(first), readAll(second));
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		tmpDir = File.createTempFile("pack", "");
+		tmpDir.delete();
+		tmpDir.mkdirs();
+	}
+
+	@After
+	public void tearDown() {
+		WorkspaceGenerator.delete(tmpDir);
+	}
+}
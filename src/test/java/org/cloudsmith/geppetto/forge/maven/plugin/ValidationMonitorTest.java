@@ -0,0 +1,66 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.cloudsmith.geppetto.validation.DiagnosticType;
+import org.junit.Test;
+
+public class ValidationMonitorTest {
+	private static Diagnostic diagnostic(int severity) {
+		return new Diagnostic(severity, DiagnosticType.GEPPETTO, "message");
+	}
+
+	@Test
+	public void cancelsWhenThresholdIsReached() {
+		ValidationMonitor monitor = new ValidationMonitor(2);
+		monitor.reported(diagnostic(Diagnostic.ERROR));
+		assertFalse(monitor.isCanceled());
+		monitor.reported(diagnostic(Diagnostic.ERROR));
+		assertTrue(monitor.isCanceled());
+		assertEquals(2, monitor.getErrorCount());
+	}
+
+	@Test
+	public void countsErrorsOnly() {
+		ValidationMonitor monitor = new ValidationMonitor(1);
+		monitor.reported(diagnostic(Diagnostic.WARNING));
+		monitor.reported(diagnostic(Diagnostic.INFO));
+		assertFalse(monitor.isCanceled());
+		assertEquals(0, monitor.getErrorCount());
+		monitor.reported(diagnostic(Diagnostic.FATAL));
+		assertTrue(monitor.isCanceled());
+		assertEquals(1, monitor.getErrorCount());
+	}
+
+	@Test
+	public void explicitCancel() {
+		ValidationMonitor monitor = new ValidationMonitor(10);
+		monitor.setCanceled(true);
+		assertTrue(monitor.isCanceled());
+		assertEquals(0, monitor.getErrorCount());
+	}
+
+	@Test
+	public void noThresholdNeverCancels() {
+		ValidationMonitor monitor = new ValidationMonitor(0);
+		for(int idx = 0; idx < 100; ++idx)
+			monitor.reported(diagnostic(Diagnostic.ERROR));
+		assertFalse(monitor.isCanceled());
+		assertEquals(100, monitor.getErrorCount());
+	}
+}
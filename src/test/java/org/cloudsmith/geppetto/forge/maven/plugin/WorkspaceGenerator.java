@@ -0,0 +1,194 @@
+/**
+ * Copyright 2013-, Cloudsmith Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.cloudsmith.geppetto.forge.maven.plugin;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Generates synthetic workspaces of Puppet modules for scale testing. All modules are owned by
+ * {@link #OWNER} and only depend on other modules in the same workspace so no remote resolution is
+ * needed. Dependencies always appoint modules with a higher index which keeps the dependency graph
+ * acyclic. The generated content is fully determined by the generator settings.
+ */
+public class WorkspaceGenerator {
+	public static final String OWNER = "scale";
+
+	static void delete(File file) {
+		File[] children = file.listFiles();
+		if(children != null)
+			for(File child : children)
+				delete(child);
+		file.delete();
+	}
+
+	public static String getModuleName(int idx) {
+		return String.format("module_%05d", idx);
+	}
+
+	private static void write(File file, CharSequence content) throws IOException {
+		Writer out = new OutputStreamWriter(new FileOutputStream(file), AbstractForgeMojo.UTF_8);
+		try {
+			out.append(content);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	private int moduleCount = 1000;
+
+	private int dependencyFanOut = 3;
+
+	private int manifestsPerModule = 3;
+
+	private int metadataJsonInterval = 2;
+
+	private int violationInterval = 10;
+
+	/**
+	 * Deletes the given directory if it exists and generates a new workspace in its place.
+	 * 
+	 * @param root
+	 *            The directory that will become the modules root
+	 * @throws IOException
+	 */
+	public void generate(File root) throws IOException {
+		delete(root);
+		for(int idx = 0; idx < moduleCount; ++idx)
+			generateModule(root, idx);
+	}
+
+	private void generateManifests(File manifestsDir, String name, int[] dependencies, boolean violations)
+			throws IOException {
+		StringBuilder bld = new StringBuilder();
+		for(int idx = 0; idx < manifestsPerModule; ++idx) {
+			bld.setLength(0);
+			String className = idx == 0
+					? name
+					: name + "::class_" + idx;
+			bld.append("class ").append(className).append(" {\n");
+			if(idx == 0) {
+				for(int dependency : dependencies)
+					bld.append("  include ").append(getModuleName(dependency)).append('\n');
+				for(int sub = 1; sub < manifestsPerModule; ++sub)
+					bld.append("  include ").append(name).append("::class_").append(sub).append('\n');
+			}
+			bld.append("  file { '/tmp/").append(name).append('_').append(idx).append("':\n");
+			bld.append("    ensure  => present,\n");
+			bld.append("    content => 'generated',\n");
+			bld.append("  }\n");
+			if(violations) {
+				// Warnings only: a double quoted string without variables, a line longer than 80
+				// characters, and an unquoted resource title
+				bld.append("  notify { \"").append(className).append("\": }\n");
+				bld.append("  file { '/tmp/");
+				for(int pad = 0; pad < 8; ++pad)
+					bld.append("a_rather_long_path_segment/");
+				bld.append(name).append('_').append(idx).append("': ensure => absent }\n");
+				bld.append("  exec { unquoted_").append(name).append('_').append(idx).append(
+					": command => '/bin/true' }\n");
+			}
+			bld.append("}\n");
+			write(new File(manifestsDir, idx == 0
+					? "init.pp"
+					: "class_" + idx + ".pp"), bld);
+		}
+	}
+
+	private void generateModule(File root, int idx) throws IOException {
+		String name = getModuleName(idx);
+		File moduleDir = new File(root, name);
+		File manifestsDir = new File(moduleDir, "manifests");
+		if(!manifestsDir.mkdirs())
+			throw new IOException("Unable to create directory " + manifestsDir);
+
+		int depCount = Math.min(dependencyFanOut, moduleCount - idx - 1);
+		int[] dependencies = new int[depCount];
+		for(int dep = 0; dep < depCount; ++dep)
+			dependencies[dep] = idx + dep + 1;
+
+		boolean json = metadataJsonInterval > 0 && idx % metadataJsonInterval == 0;
+		StringBuilder bld = new StringBuilder();
+		if(json) {
+			bld.append("{\n  \"name\": \"").append(OWNER).append('-').append(name).append("\",\n");
+			bld.append("  \"version\": \"1.0.0\",\n  \"author\": \"").append(OWNER).append("\",\n");
+			bld.append("  \"license\": \"Apache 2.0\",\n  \"project_page\": \"\",\n  \"source\": \"\",\n");
+			bld.append("  \"summary\": \"Generated module\",\n  \"description\": \"\",\n");
+			bld.append("  \"dependencies\": [");
+			for(int dep = 0; dep < depCount; ++dep) {
+				if(dep > 0)
+					bld.append(',');
+				bld.append("\n    { \"name\": \"").append(OWNER).append('/').append(getModuleName(dependencies[dep]));
+				bld.append("\", \"version_requirement\": \">=1.0.0\" }");
+			}
+			bld.append("\n  ]\n}\n");
+			write(new File(moduleDir, "metadata.json"), bld);
+		}
+		else {
+			bld.append("name '").append(OWNER).append('-').append(name).append("'\nversion '1.0.0'\n\n");
+			bld.append("author '").append(OWNER).append("'\nlicense 'Apache 2.0'\nsummary 'Generated module'\n");
+			for(int dep = 0; dep < depCount; ++dep)
+				bld.append("dependency '").append(OWNER).append('/').append(getModuleName(dependencies[dep])).append(
+					"', '>=1.0.0'\n");
+			write(new File(moduleDir, "Modulefile"), bld);
+		}
+		generateManifests(manifestsDir, name, dependencies, violationInterval > 0 && idx % violationInterval == 0);
+	}
+
+	/**
+	 * @param dependencyFanOut
+	 *            The number of modules that each module depends on
+	 */
+	public void setDependencyFanOut(int dependencyFanOut) {
+		this.dependencyFanOut = dependencyFanOut;
+	}
+
+	/**
+	 * @param manifestsPerModule
+	 *            The number of manifests in each module, including <tt>init.pp</tt>
+	 */
+	public void setManifestsPerModule(int manifestsPerModule) {
+		this.manifestsPerModule = Math.max(1, manifestsPerModule);
+	}
+
+	/**
+	 * @param metadataJsonInterval
+	 *            Every n:th module is described by a <tt>metadata.json</tt>, all others by a
+	 *            <tt>Modulefile</tt>. Zero or less means that no <tt>metadata.json</tt> files are generated
+	 */
+	public void setMetadataJsonInterval(int metadataJsonInterval) {
+		this.metadataJsonInterval = metadataJsonInterval;
+	}
+
+	/**
+	 * @param moduleCount
+	 *            The number of modules to generate
+	 */
+	public void setModuleCount(int moduleCount) {
+		this.moduleCount = moduleCount;
+	}
+
+	/**
+	 * @param violationInterval
+	 *            Every n:th module gets manifests with lint and style violations. Zero or less means no
+	 *            violations
+	 */
+	public void setViolationInterval(int violationInterval) {
+		this.violationInterval = violationInterval;
+	}
+}